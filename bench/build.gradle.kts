@@ -47,6 +47,7 @@ tasks.withType<JavaCompile>().configureEach {
 tasks.withType<JavaExec>().configureEach {
     jvmArgs = listOf(
         "--enable-preview",
+        "--enable-native-access=ALL-UNNAMED",
         "-XX:+UseNUMA",
         "-XX:+UseParallelGC",
         "-XX:-RestrictContended",
@@ -54,6 +55,10 @@ tasks.withType<JavaExec>().configureEach {
         "java.base/java.lang=ALL-UNNAMED",
         "-Djna.library.path=libs/",
     )
+    // emulated topology, e.g. gradle run -Dio.github.ricnorr.numa_locks.topology=nodes=4
+    System.getProperty("io.github.ricnorr.numa_locks.topology")?.let {
+        jvmArgs("-Dio.github.ricnorr.numa_locks.topology=$it")
+    }
 }
 
 group = "io.github.ricnorr"
@@ -73,9 +78,9 @@ dependencies {
     testImplementation("org.jetbrains.kotlinx:lincheck:2.16")
     testImplementation("org.junit.jupiter:junit-jupiter:5.7.1")
     implementation("com.github.oshi:oshi-dist:6.4.0")
-    implementation("org.openjdk.jmh:jmh-core:1.35")
+    implementation("org.openjdk.jmh:jmh-core:1.37")
     testImplementation("org.testng:testng:7.1.0")
-    annotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:1.35")
+    annotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:1.37")
     implementation("org.openjdk.jol:jol-core:0.9")
     implementation("com.fasterxml.jackson.core:jackson-databind:2.8.9")
     implementation("io.github.ricnorr:vthreads-numa-lock:0.0.3")
@@ -12,10 +12,16 @@ import java.util.concurrent.Phaser;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
+import io.github.ricnorr.numa_locks.AdaptiveNumaLock;
 import io.github.ricnorr.numa_locks.CLH;
 import io.github.ricnorr.numa_locks.CNA;
+import io.github.ricnorr.numa_locks.DelegationLock;
 import io.github.ricnorr.numa_locks.HCLH;
 import io.github.ricnorr.numa_locks.HMCSCcl;
 import io.github.ricnorr.numa_locks.HMCSCclNuma;
@@ -25,11 +31,17 @@ import io.github.ricnorr.numa_locks.HMCSNumaSupernuma;
 import io.github.ricnorr.numa_locks.HSPIN;
 import io.github.ricnorr.numa_locks.LockUtils;
 import io.github.ricnorr.numa_locks.MCS;
-import io.github.ricnorr.numa_locks.NumaMCS;
 import io.github.ricnorr.numa_locks.NumaReentrantLock;
+import io.github.ricnorr.numa_locks.NumaScheduler;
+import io.github.ricnorr.numa_locks.RecyclingVNA;
+import io.github.ricnorr.numa_locks.StampedVNA;
 import io.github.ricnorr.numa_locks.TAS;
 import io.github.ricnorr.numa_locks.TTAS;
 import io.github.ricnorr.numa_locks.Ticket;
+import io.github.ricnorr.numa_locks.TopologyLevel;
+import io.github.ricnorr.numa_locks.VNA;
+import io.github.ricnorr.numa_locks.VNALock;
+import io.github.ricnorr.numa_locks.VNAReadWriteLock;
 import io.github.ricnorr.numa_locks.VNA_2_Q;
 import io.github.ricnorr.numa_locks.VthreadNumaLock;
 import org.apache.commons.io.FileUtils;
@@ -71,17 +83,17 @@ public class BenchUtils {
             }
             // CNA
             case CNA_Q -> {
-                return new CNA(LockUtils::getNumaNodeId, false);
+                return new CNA(LockUtils::getCachedNumaNodeId, false);
             }
             case CNA_QSPIN -> {
-                return new CNA(LockUtils::getNumaNodeId, true);
+                return new CNA(LockUtils::getCachedNumaNodeId, true);
             }
             // HCLH
             case HCLH_CCL -> {
-                return new HCLH(LockUtils::getKunpengCCLId);
+                return new HCLH(LockUtils::getCachedClusterId, LockUtils.CLUSTERS_CNT);
             }
             case HCLH_NUMA -> {
-                return new HCLH(LockUtils::getNumaNodeId);
+                return new HCLH(LockUtils::getCachedNumaNodeId, LockUtils.NUMA_NODES_CNT);
             }
             // HMCS
             case HMCS_Q -> {
@@ -106,21 +118,82 @@ public class BenchUtils {
                 return new HMCSNumaSupernuma(false);
             }
             case VNA -> {
-                return new NumaMCS();
+                return new VNA();
+            }
+            case VNA_NO_COHORT -> {
+                return new VNA(false, 0);
+            }
+            case VNA_COMBINING -> {
+                return new VNA();
+            }
+            case DELEGATION -> {
+                return new DelegationLock();
             }
             case VNA_2_Q -> {
                 return new VNA_2_Q();
             }
+            case STAMPED_VNA -> {
+                return new StampedVNA();
+            }
+            case RECYCLING_VNA -> {
+                return new RecyclingVNA();
+            }
             case HSPIN_WITH_FAST -> {
                 return new HSPIN(true);
             }
             case HSPIN_WITHOUT_FAST -> {
                 return new HSPIN(false);
             }
+            case ADAPTIVE_NUMA -> {
+                return new AdaptiveNumaLock();
+            }
+            case ADAPTIVE_NUMA_TTAS -> {
+                return new AdaptiveNumaLock(TopologyLevel.NUMA_NODE, AdaptiveNumaLock.Mode.TTAS, false);
+            }
+            case ADAPTIVE_NUMA_QUEUE -> {
+                return new AdaptiveNumaLock(TopologyLevel.NUMA_NODE, AdaptiveNumaLock.Mode.QUEUE, false);
+            }
             default -> throw new BenchmarkException("Can't init lockType " + lockType.name());
         }
     }
 
+    public static ReadWriteLock initReadWriteLock(LockType lockType) {
+        switch (lockType) {
+            case VNA_RW -> {
+                return new VNAReadWriteLock();
+            }
+            case UNFAIR_REENTRANT_RW -> {
+                return new ReentrantReadWriteLock(false);
+            }
+            case FAIR_REENTRANT_RW -> {
+                return new ReentrantReadWriteLock(true);
+            }
+            // Exclusive locks, readers are serialized as writers
+            case VNA -> {
+                return new ExclusiveReadWriteLock(new VNALock());
+            }
+            case UNFAIR_REENTRANT -> {
+                return new ExclusiveReadWriteLock(new ReentrantLock(false));
+            }
+            case FAIR_REENTRANT -> {
+                return new ExclusiveReadWriteLock(new ReentrantLock(true));
+            }
+            default -> throw new BenchmarkException("Can't init read-write lockType " + lockType.name());
+        }
+    }
+
+    private record ExclusiveReadWriteLock(Lock lock) implements ReadWriteLock {
+        @Override
+        public Lock readLock() {
+            return lock;
+        }
+
+        @Override
+        public Lock writeLock() {
+            return lock;
+        }
+    }
+
     public static void pinVirtualThreadsToCores(int cores) {
         System.out.println("Pin virtual threads to cores");
         ThreadFactory threadFactory = Thread.ofVirtual().factory();
@@ -152,6 +225,32 @@ public class BenchUtils {
         System.out.println("Pinned virtual threads to cores");
     }
 
+    /**
+     * Runs virtual threads of the benchmark on carriers pinned to NUMA nodes, or pins carriers of the default
+     * scheduler to cores
+     *
+     * @param numaScheduler whether to use {@link NumaScheduler}
+     * @param threads       number of threads of the benchmark
+     * @return scheduler to close after the trial, {@code null} for the default scheduler
+     */
+    public static NumaScheduler initScheduler(boolean numaScheduler, int threads) {
+        if (!numaScheduler) {
+            pinVirtualThreadsToCores(Math.min(threads, CORES_CNT));
+            return null;
+        }
+        var scheduler = new NumaScheduler();
+        System.out.println("Run virtual threads on NUMA scheduler with " + scheduler.getNodesCnt() + " nodes");
+        return scheduler;
+    }
+
+    /**
+     * @param scheduler scheduler returned by {@link #initScheduler(boolean, int)}
+     * @return factory of virtual threads, assigned to NUMA nodes in round-robin order by {@link NumaScheduler}
+     */
+    public static ThreadFactory virtualThreadFactory(NumaScheduler scheduler) {
+        return scheduler != null ? scheduler.factory() : Thread.ofVirtual().factory();
+    }
+
     public static VthreadNumaLock initLock(LockType lockType) {
         return initLock(lockType, 0);
     }
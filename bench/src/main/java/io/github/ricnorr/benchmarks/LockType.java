@@ -88,8 +88,26 @@ public enum LockType {
 
     VNA,
 
+    /**
+     * VNA which releases the global flag on every unlock, without passing the lock inside NUMA node
+     */
+    VNA_NO_COHORT,
+
     VNA_2_Q,
 
+    RECYCLING_VNA,
+
+    /**
+     * VNA running critical sections by flat combining, benchmarks with small operations only
+     */
+    VNA_COMBINING,
+
+    /**
+     * Server thread running critical sections of clients, small operations run on the server in benchmarks
+     * with them
+     */
+    DELEGATION,
+
     NUMA_MCS_RUN_ON_THIS_CARRIER_FEATURE_ENABLED,
 
     NUMA_MCS_YIELD_IF_DOESNT_CHANGED_NUMA,
@@ -100,4 +118,29 @@ public enum LockType {
 
     HSPIN_WITHOUT_FAST,
 
+    /**
+     * Lock switching between TTAS and NUMA queues by contention, and the same lock fixed in one mode
+     */
+    ADAPTIVE_NUMA,
+
+    ADAPTIVE_NUMA_TTAS,
+
+    ADAPTIVE_NUMA_QUEUE,
+
+    /**
+     * Read-write locks
+     */
+    VNA_RW,
+
+    UNFAIR_REENTRANT_RW,
+
+    FAIR_REENTRANT_RW,
+
+    /**
+     * Locks with optimistic reads
+     */
+    STAMPED_VNA,
+
+    STAMPED_LOCK,
+
 }
@@ -12,6 +12,7 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import io.github.ricnorr.benchmarks.jmh.JmhBenchmarkRunner;
+import io.github.ricnorr.numa_locks.Topology;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.io.FileUtils;
@@ -33,9 +34,11 @@ public class Main {
   public static List<Integer> getProcessorsNumbersInNumaNodeOrder() {
     SystemInfo si = new SystemInfo();
     var logicalProcessors = si.getHardware().getProcessor().getLogicalProcessors();
-    return logicalProcessors.stream().sorted(Comparator.comparing(CentralProcessor.LogicalProcessor::getNumaNode)
-            .thenComparing(CentralProcessor.LogicalProcessor::getProcessorNumber))
-        .map(CentralProcessor.LogicalProcessor::getProcessorNumber).collect(Collectors.toList());
+    // emulated NUMA nodes are filled one by one too
+    var topology = Topology.get();
+    return logicalProcessors.stream().map(CentralProcessor.LogicalProcessor::getProcessorNumber)
+        .sorted(Comparator.comparing(topology::getNumaNodeId).thenComparing(Comparator.naturalOrder()))
+        .collect(Collectors.toList());
   }
 
   private static void print(CSVPrinter printer, BenchmarkResultsCsv resultsCsv) throws IOException {
@@ -9,7 +9,10 @@ import io.github.ricnorr.benchmarks.BenchmarkResultsCsv;
 import io.github.ricnorr.benchmarks.Main;
 import io.github.ricnorr.benchmarks.params.ConsumeCpuBenchmarkParameters;
 import io.github.ricnorr.benchmarks.params.MatrixMultiplicationBenchmarkParameters;
+import io.github.ricnorr.benchmarks.params.OptimisticReadBenchmarkParameters;
+import io.github.ricnorr.benchmarks.params.PhaseChangeBenchmarkParameters;
 import io.github.ricnorr.benchmarks.params.PriorityQueueBenchmarkParameters;
+import io.github.ricnorr.benchmarks.params.ReadWriteBenchmarkParameters;
 import io.github.ricnorr.benchmarks.params.TextStatBenchmarkParameter;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -85,6 +88,51 @@ public class JmhBenchmarkRunner {
           matrixMultiplicationBenchmarkParameters.threads = Main.autoThreadsInit();
         }
         paramList.addAll(matrixMultiplicationBenchmarkParameters.getOptions());
+      } else if (name.equals("read-write")) {
+        ReadWriteBenchmarkParameters readWriteBenchmarkParameters;
+        try {
+          readWriteBenchmarkParameters =
+              new ObjectMapper().readValue(payload.toJSONString(), ReadWriteBenchmarkParameters.class);
+        } catch (Exception e) {
+          throw new RuntimeException("Failed to parse payload of benchmark, err=" + e.getMessage());
+        }
+        if (readWriteBenchmarkParameters.skip) {
+          continue;
+        }
+        if (readWriteBenchmarkParameters.threads == null) {
+          readWriteBenchmarkParameters.threads = Main.autoThreadsInit();
+        }
+        paramList.addAll(readWriteBenchmarkParameters.getOptions());
+      } else if (name.equals("optimistic-read")) {
+        OptimisticReadBenchmarkParameters optimisticReadBenchmarkParameters;
+        try {
+          optimisticReadBenchmarkParameters =
+              new ObjectMapper().readValue(payload.toJSONString(), OptimisticReadBenchmarkParameters.class);
+        } catch (Exception e) {
+          throw new RuntimeException("Failed to parse payload of benchmark, err=" + e.getMessage());
+        }
+        if (optimisticReadBenchmarkParameters.skip) {
+          continue;
+        }
+        if (optimisticReadBenchmarkParameters.threads == null) {
+          optimisticReadBenchmarkParameters.threads = Main.autoThreadsInit();
+        }
+        paramList.addAll(optimisticReadBenchmarkParameters.getOptions());
+      } else if (name.equals("phase-change")) {
+        PhaseChangeBenchmarkParameters phaseChangeBenchmarkParameters;
+        try {
+          phaseChangeBenchmarkParameters =
+              new ObjectMapper().readValue(payload.toJSONString(), PhaseChangeBenchmarkParameters.class);
+        } catch (Exception e) {
+          throw new RuntimeException("Failed to parse payload of benchmark, err=" + e.getMessage());
+        }
+        if (phaseChangeBenchmarkParameters.skip) {
+          continue;
+        }
+        if (phaseChangeBenchmarkParameters.threads == null) {
+          phaseChangeBenchmarkParameters.threads = Main.autoThreadsInit();
+        }
+        paramList.addAll(phaseChangeBenchmarkParameters.getOptions());
       } else {
         throw new IllegalStateException("Benchmark name not found");
       }
@@ -0,0 +1,64 @@
+package io.github.ricnorr.benchmarks.jmh.allocation;
+
+import java.util.concurrent.TimeUnit;
+
+import io.github.ricnorr.benchmarks.BenchUtils;
+import io.github.ricnorr.benchmarks.LockType;
+import io.github.ricnorr.numa_locks.VthreadNumaLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * <p>Allocation rate of lock and unlock, with one thread the fast path is measured, with many threads - queueing.
+ * <p>Micro-benchmark, is not configured in settings.json. Run it from fatjar directory with
+ * <pre>
+ * java --enable-preview --enable-native-access=ALL-UNNAMED --add-opens java.base/java.lang=ALL-UNNAMED \
+ *   -cp bench.jar org.openjdk.jmh.Main JmhLockAllocationBenchmark -prof gc -t 1 \
+ *   -jvmArgsAppend -Djmh.executor=VIRTUAL
+ * </pre>
+ * and {@code -t 4} for the contended case, gc.alloc.rate.norm shows bytes per lock and unlock.
+ * {@code jmh.executor=VIRTUAL} runs benchmark threads as virtual threads, so carrier slots are used.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JmhLockAllocationBenchmark {
+
+  @Param({"VNA", "RECYCLING_VNA"})
+  public String lockType;
+
+  VthreadNumaLock lock;
+
+  long counter;
+
+  @Setup(Level.Trial)
+  public void init() {
+    lock = BenchUtils.initLock(LockType.valueOf(lockType));
+  }
+
+  @TearDown(Level.Trial)
+  public void closeLock() throws Exception {
+    if (lock instanceof AutoCloseable closeable) {
+      closeable.close();
+    }
+  }
+
+  @Benchmark
+  @SuppressWarnings("unchecked")
+  public long lockUnlock() {
+    var obj = lock.lock();
+    try {
+      return ++counter;
+    } finally {
+      lock.unlock(obj);
+    }
+  }
+}
@@ -7,8 +7,6 @@ import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BrokenBarrierException;
-import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -16,12 +14,18 @@ import java.util.stream.Collectors;
 import io.github.ricnorr.benchmarks.BenchUtils;
 import io.github.ricnorr.benchmarks.BenchmarkException;
 import io.github.ricnorr.benchmarks.LockType;
+import io.github.ricnorr.numa_locks.NumaBarrier;
+import io.github.ricnorr.numa_locks.NumaCarrierPool;
+import io.github.ricnorr.numa_locks.NumaScheduler;
+import io.github.ricnorr.numa_locks.VthreadNumaLock;
+import org.openjdk.jmh.annotations.AuxCounters;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
@@ -53,6 +57,26 @@ public class JmhParConsumeCpuTokensBenchmark {
   @Param("1")
   public int yieldsBefore;
 
+  /**
+   * Run virtual threads on carriers pinned to NUMA nodes, see {@link NumaScheduler}
+   */
+  @Param("false")
+  public boolean numaScheduler;
+
+  /**
+   * Idle time of a carrier before it steals from other NUMA nodes, {@code -1} to keep carriers of every node
+   * separate. Used with {@link #numaScheduler}, cross-node steals per second are reported as a secondary result,
+   * see {@link StealCounters}
+   */
+  @Param("-1")
+  public long remoteStealDelayMicros;
+
+  NumaScheduler scheduler;
+
+  VthreadNumaLock lock;
+
+  NumaCarrierPool carrierPool;
+
   List<Thread> threadList = new ArrayList<>();
 
   final Object obj = new Object();
@@ -68,7 +92,28 @@ public class JmhParConsumeCpuTokensBenchmark {
         System.getProperty("jdk.virtualThreadScheduler.parallelism"));
     System.out.println("Get system property jdk.virtualThreadScheduler.maxPoolSize=" +
         System.getProperty("jdk.virtualThreadScheduler.maxPoolSize"));
-    BenchUtils.pinVirtualThreadsToCores(Math.min(threads, BenchUtils.CORES_CNT));
+    if (numaScheduler && remoteStealDelayMicros >= 0) {
+      carrierPool = new NumaCarrierPool(0, remoteStealDelayMicros, TimeUnit.MICROSECONDS);
+      scheduler = new NumaScheduler(carrierPool);
+      System.out.println("Run virtual threads on NUMA scheduler with " + scheduler.getNodesCnt() +
+          " nodes, remote steal delay " + remoteStealDelayMicros + " us");
+    } else {
+      scheduler = BenchUtils.initScheduler(numaScheduler, threads);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void closeScheduler() {
+    if (scheduler != null) {
+      scheduler.close();
+    }
+  }
+
+  @TearDown(Level.Invocation)
+  public void closeLock() throws Exception {
+    if (lock instanceof AutoCloseable closeable) {
+      closeable.close();
+    }
   }
 
   @TearDown(Level.Invocation)
@@ -102,20 +147,15 @@ public class JmhParConsumeCpuTokensBenchmark {
     for (int i = 0; i < threads; i++) {
       latenciesForEachThread.get(benchmarkIteration).add(new ArrayList<>());
     }
-    var cyclicBarrier = new CyclicBarrier(threads);
+    var startBarrier = new NumaBarrier(threads);
     var threadLatencyNanosec = new ArrayList<Long>();
-    var lock = BenchUtils.initLock(LockType.valueOf(lockType), threads);
+    lock = BenchUtils.initLock(LockType.valueOf(lockType), threads);
+    ThreadFactory threadFactory = BenchUtils.virtualThreadFactory(scheduler);
     for (int i = 0; i < threads; i++) {
-      ThreadFactory threadFactory;
-      threadFactory = Thread.ofVirtual().factory();
       int finalI = i;
       var thread = threadFactory.newThread(
           () -> {
-            try {
-              cyclicBarrier.await();
-            } catch (InterruptedException | BrokenBarrierException e) {
-              throw new BenchmarkException("Fail waiting barrier", e);
-            }
+            startBarrier.arriveAndAwaitAdvance();
             Object nodeForLock = null;
             var work = actionsCount / threads;
             if (finalI == threads - 1) {
@@ -156,7 +196,9 @@ public class JmhParConsumeCpuTokensBenchmark {
   @Benchmark
   @BenchmarkMode({Mode.SingleShotTime})
   @OutputTimeUnit(TimeUnit.NANOSECONDS)
-  public void bench() {
+  public void bench(StealCounters stealCounters) {
+    long remoteStealsBefore = carrierPool != null ? carrierPool.getRemoteStealsCnt() : 0;
+    long startNanos = System.nanoTime();
     for (int i = 0; i < threads; i++) {
       threadList.get(i).start();
     }
@@ -167,5 +209,22 @@ public class JmhParConsumeCpuTokensBenchmark {
         throw new BenchmarkException("Fail to join thread " + e.getMessage(), e);
       }
     }
+    double seconds = (System.nanoTime() - startNanos) / 1e9;
+    long remoteSteals = carrierPool != null ? carrierPool.getRemoteStealsCnt() - remoteStealsBefore : 0;
+    stealCounters.crossNodeStealsPerSecond = remoteSteals / seconds;
+  }
+
+  /**
+   * Secondary result of an invocation, shown by JMH next to its time as {@code bench:crossNodeStealsPerSecond}
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class StealCounters {
+
+    /**
+     * Steals of carriers of {@link NumaCarrierPool} from other NUMA nodes per second of the invocation,
+     * {@code 0} without the pool
+     */
+    public double crossNodeStealsPerSecond;
   }
 }
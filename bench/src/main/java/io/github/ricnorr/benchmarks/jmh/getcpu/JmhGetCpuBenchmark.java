@@ -0,0 +1,49 @@
+package io.github.ricnorr.benchmarks.jmh.getcpu;
+
+import java.util.concurrent.TimeUnit;
+
+import io.github.ricnorr.numa_locks.GetCpu;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * <p>Cost of finding out NUMA node of the current thread: getcpu through JNA and through
+ * the Foreign Function &amp; Memory API.
+ * <p>Micro-benchmark, is not configured in settings.json. Run it from fatjar directory with
+ * <pre>
+ * java --enable-preview --enable-native-access=ALL-UNNAMED --add-opens java.base/java.lang=ALL-UNNAMED \
+ *   -cp bench.jar org.openjdk.jmh.Main JmhGetCpuBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JmhGetCpuBenchmark {
+
+  @Param({"JNA", "FOREIGN"})
+  public String getCpuType;
+
+  GetCpu getCpu;
+
+  @Setup(Level.Trial)
+  public void init() {
+    getCpu = getCpuType.equals("JNA") ? GetCpu.jna() : GetCpu.foreign();
+  }
+
+  @Benchmark
+  public int numaNodeId() {
+    return getCpu.getNumaNodeId();
+  }
+
+  @Benchmark
+  public int cpuId() {
+    return getCpu.getCpuId();
+  }
+}
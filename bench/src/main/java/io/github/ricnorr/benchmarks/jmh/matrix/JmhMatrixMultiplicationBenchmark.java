@@ -2,16 +2,15 @@ package io.github.ricnorr.benchmarks.jmh.matrix;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BrokenBarrierException;
-import java.util.concurrent.CyclicBarrier;
-import java.util.concurrent.Phaser;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 import io.github.ricnorr.benchmarks.BenchUtils;
-import io.github.ricnorr.benchmarks.BenchmarkException;
 import io.github.ricnorr.benchmarks.LockType;
+import io.github.ricnorr.numa_locks.NumaBarrier;
+import io.github.ricnorr.numa_locks.NumaScheduler;
+import io.github.ricnorr.numa_locks.VthreadNumaLock;
 import org.ejml.concurrency.EjmlConcurrency;
 import org.ejml.simple.SimpleMatrix;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -21,6 +20,7 @@ import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 
 import static org.openjdk.jmh.annotations.Scope.Benchmark;
 
@@ -39,9 +39,15 @@ public class JmhMatrixMultiplicationBenchmark {
   public String lockType;
   @Param("false")
   public boolean yieldInCrit;
+  @Param("false")
+  public boolean numaScheduler;
   List<Thread> threadList = new ArrayList<>();
 
-  Phaser phaser;
+  NumaBarrier onFinish;
+
+  VthreadNumaLock lock;
+
+  NumaScheduler scheduler;
 
   @Setup(Level.Trial)
   public void init() {
@@ -50,16 +56,23 @@ public class JmhMatrixMultiplicationBenchmark {
     System.out.println("Get system property jdk.virtualThreadScheduler.maxPoolSize=" +
         System.getProperty("jdk.virtualThreadScheduler.maxPoolSize"));
     EjmlConcurrency.USE_CONCURRENT = false;
-    BenchUtils.pinVirtualThreadsToCores(Math.min(threads, BenchUtils.CORES_CNT));
+    scheduler = BenchUtils.initScheduler(numaScheduler, threads);
+  }
+
+  @TearDown(Level.Trial)
+  public void closeScheduler() {
+    if (scheduler != null) {
+      scheduler.close();
+    }
   }
 
   @Setup(Level.Invocation)
   public void prepare() {
     threadList = new ArrayList<>();
-    var cyclicBarrier = new CyclicBarrier(threads);
-    var lock = BenchUtils.initLock(LockType.valueOf(lockType), threads);
-    ThreadFactory threadFactory = Thread.ofVirtual().factory();
-    phaser = new Phaser(threads + 1);
+    var startBarrier = new NumaBarrier(threads);
+    lock = BenchUtils.initLock(LockType.valueOf(lockType), threads);
+    ThreadFactory threadFactory = BenchUtils.virtualThreadFactory(scheduler);
+    onFinish = new NumaBarrier(threads + 1);
     for (int i = 0; i < threads; i++) {
       int finalI = i;
       var thread = threadFactory.newThread(
@@ -76,11 +89,7 @@ public class JmhMatrixMultiplicationBenchmark {
             SimpleMatrix inB =
                 SimpleMatrix.random_DDRM(inMatrixSize, inMatrixSize, Double.MIN_VALUE, Double.MAX_VALUE,
                     ThreadLocalRandom.current());
-            try {
-              cyclicBarrier.await();
-            } catch (InterruptedException | BrokenBarrierException e) {
-              throw new BenchmarkException("Fail waiting barrier", e);
-            }
+            startBarrier.arriveAndAwaitAdvance();
             var work = actionsCount / threads;
             if (finalI == threads - 1) {
               work += actionsCount % threads;
@@ -95,7 +104,7 @@ public class JmhMatrixMultiplicationBenchmark {
               }
               lock.unlock(nodeForLock);
             }
-            phaser.arrive();
+            onFinish.arrive();
           }
       );
       thread.setName("virtual-" + i);
@@ -103,6 +112,13 @@ public class JmhMatrixMultiplicationBenchmark {
     }
   }
 
+  @TearDown(Level.Invocation)
+  public void closeLock() throws Exception {
+    if (lock instanceof AutoCloseable closeable) {
+      closeable.close();
+    }
+  }
+
   @org.openjdk.jmh.annotations.Benchmark
   @BenchmarkMode({Mode.SingleShotTime})
   @OutputTimeUnit(TimeUnit.NANOSECONDS)
@@ -110,6 +126,6 @@ public class JmhMatrixMultiplicationBenchmark {
     for (int i = 0; i < threads; i++) {
       threadList.get(i).start();
     }
-    phaser.arriveAndAwaitAdvance();
+    onFinish.arriveAndAwaitAdvance();
   }
 }
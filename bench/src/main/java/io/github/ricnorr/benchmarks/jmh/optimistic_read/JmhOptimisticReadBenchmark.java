@@ -0,0 +1,205 @@
+package io.github.ricnorr.benchmarks.jmh.optimistic_read;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+import io.github.ricnorr.benchmarks.BenchUtils;
+import io.github.ricnorr.benchmarks.BenchmarkException;
+import io.github.ricnorr.benchmarks.LockType;
+import io.github.ricnorr.numa_locks.NumaBarrier;
+import io.github.ricnorr.numa_locks.NumaScheduler;
+import io.github.ricnorr.numa_locks.OptimisticReadNumaLock;
+import io.github.ricnorr.numa_locks.VthreadNumaLock;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import static org.openjdk.jmh.annotations.Scope.Benchmark;
+
+/**
+ * Virtual threads read and update a small array, {@code readPercent} of operations are reads.
+ * Locks with optimistic reads read without writing to shared memory and fall back to the lock
+ * if validation fails, other locks read under the lock.
+ */
+@State(Benchmark)
+public class JmhOptimisticReadBenchmark {
+
+  @Param("0")
+  public int actionsCount;
+
+  @Param("0")
+  public int threads;
+
+  @Param("")
+  public String lockType;
+
+  @Param("90")
+  public int readPercent;
+
+  @Param("8")
+  public int dataSize;
+
+  /**
+   * Run virtual threads on carriers pinned to NUMA nodes, see {@link NumaScheduler}
+   */
+  @Param("false")
+  public boolean numaScheduler;
+
+  VthreadNumaLock lock;
+
+  NumaScheduler scheduler;
+
+  StampedLock stampedLock;
+
+  NumaBarrier startBarrier;
+
+  List<Thread> threadList = new ArrayList<>();
+
+  long[] data;
+
+  // сумма прочитанных значений, чтобы JIT не выбросил чтения
+  long[] checksums;
+
+  @Setup(Level.Trial)
+  public void init() {
+    System.out.println("Get system property jdk.virtualThreadScheduler.parallelism=" +
+        System.getProperty("jdk.virtualThreadScheduler.parallelism"));
+    if (lockType.equals(LockType.STAMPED_LOCK.toString())) {
+      stampedLock = new StampedLock();
+    } else {
+      lock = BenchUtils.initLock(LockType.valueOf(lockType), threads);
+    }
+    scheduler = BenchUtils.initScheduler(numaScheduler, threads);
+  }
+
+  @TearDown(Level.Trial)
+  public void closeLock() throws Exception {
+    if (lock instanceof AutoCloseable closeable) {
+      closeable.close();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void closeScheduler() {
+    if (scheduler != null) {
+      scheduler.close();
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void prepare() {
+    data = new long[dataSize];
+    threadList = new ArrayList<>();
+    checksums = new long[threads];
+    startBarrier = new NumaBarrier(threads);
+    for (int i = 0; i < threads; i++) {
+      ThreadFactory threadFactory;
+      threadFactory = BenchUtils.virtualThreadFactory(scheduler);
+      int finalI = i;
+      var thread = threadFactory.newThread(
+          () -> {
+            startBarrier.arriveAndAwaitAdvance();
+            long checksum = 0;
+            for (int j = 0; j < actionsCount / threads; j++) {
+              Thread.yield();
+              var random = ThreadLocalRandom.current();
+              if (random.nextInt(100) < readPercent) {
+                checksum += read();
+              } else {
+                write(random.nextLong());
+              }
+            }
+            checksums[finalI] = checksum;
+          }
+      );
+      thread.setName("virtual-" + i);
+      threadList.add(thread);
+    }
+  }
+
+  private long read() {
+    if (stampedLock != null) {
+      long stamp = stampedLock.tryOptimisticRead();
+      long sum = sum();
+      if (!stampedLock.validate(stamp)) {
+        stamp = stampedLock.readLock();
+        try {
+          sum = sum();
+        } finally {
+          stampedLock.unlockRead(stamp);
+        }
+      }
+      return sum;
+    }
+    if (lock instanceof OptimisticReadNumaLock<?> optimisticLock) {
+      long stamp = optimisticLock.tryOptimisticRead();
+      long sum = sum();
+      if (optimisticLock.validate(stamp)) {
+        return sum;
+      }
+    }
+    var obj = lock.lock();
+    try {
+      return sum();
+    } finally {
+      lock.unlock(obj);
+    }
+  }
+
+  private void write(long value) {
+    if (stampedLock != null) {
+      long stamp = stampedLock.writeLock();
+      try {
+        fill(value);
+      } finally {
+        stampedLock.unlockWrite(stamp);
+      }
+      return;
+    }
+    var obj = lock.lock();
+    try {
+      fill(value);
+    } finally {
+      lock.unlock(obj);
+    }
+  }
+
+  private long sum() {
+    long sum = 0;
+    for (long value : data) {
+      sum += value;
+    }
+    return sum;
+  }
+
+  private void fill(long value) {
+    for (int i = 0; i < data.length; i++) {
+      data[i] = value;
+    }
+  }
+
+  @org.openjdk.jmh.annotations.Benchmark
+  @BenchmarkMode({Mode.SingleShotTime})
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void bench() {
+    for (int i = 0; i < threads; i++) {
+      threadList.get(i).start();
+    }
+    for (int i = 0; i < threads; i++) {
+      try {
+        threadList.get(i).join();
+      } catch (InterruptedException e) {
+        throw new BenchmarkException("Fail to join thread " + e.getMessage(), e);
+      }
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package io.github.ricnorr.benchmarks.jmh.phase_change;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import io.github.ricnorr.benchmarks.BenchUtils;
+import io.github.ricnorr.benchmarks.BenchmarkException;
+import io.github.ricnorr.benchmarks.LockType;
+import io.github.ricnorr.numa_locks.AdaptiveNumaLock;
+import io.github.ricnorr.numa_locks.NumaBarrier;
+import io.github.ricnorr.numa_locks.NumaScheduler;
+import io.github.ricnorr.numa_locks.VthreadNumaLock;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static org.openjdk.jmh.annotations.Scope.Benchmark;
+
+/**
+ * Load alternates between phases of low and high contention. In low contention phases threads do
+ * {@code lowContentionBeforeCpuTokens} of work outside the critical section, in high contention phases
+ * {@code highContentionBeforeCpuTokens}. Threads start every phase together.
+ */
+@State(Benchmark)
+public class JmhPhaseChangeBenchmark {
+
+  @Param("0")
+  public int actionsCount;
+
+  @Param("0")
+  public int threads;
+
+  @Param("")
+  public String lockType;
+
+  @Param("8")
+  public int phases;
+
+  @Param("0")
+  public long lowContentionBeforeCpuTokens;
+
+  @Param("0")
+  public long highContentionBeforeCpuTokens;
+
+  @Param("0")
+  public long inCpuTokens;
+
+  /**
+   * Run virtual threads on carriers pinned to NUMA nodes, see {@link NumaScheduler}
+   */
+  @Param("false")
+  public boolean numaScheduler;
+
+  VthreadNumaLock lock;
+
+  NumaScheduler scheduler;
+
+  List<Thread> threadList = new ArrayList<>();
+
+  @Setup(Level.Trial)
+  public void init() {
+    System.out.println("Get system property jdk.virtualThreadScheduler.parallelism=" +
+        System.getProperty("jdk.virtualThreadScheduler.parallelism"));
+    scheduler = BenchUtils.initScheduler(numaScheduler, threads);
+  }
+
+  @TearDown(Level.Trial)
+  public void closeScheduler() {
+    if (scheduler != null) {
+      scheduler.close();
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void prepare() {
+    threadList = new ArrayList<>();
+    lock = BenchUtils.initLock(LockType.valueOf(lockType), threads);
+    var startBarrier = new NumaBarrier(threads);
+    int actionsPerPhase = actionsCount / threads / phases;
+    for (int i = 0; i < threads; i++) {
+      ThreadFactory threadFactory;
+      threadFactory = BenchUtils.virtualThreadFactory(scheduler);
+      var thread = threadFactory.newThread(
+          () -> {
+            for (int phase = 0; phase < phases; phase++) {
+              startBarrier.arriveAndAwaitAdvance();
+              long beforeCpuTokens = phase % 2 == 0 ? lowContentionBeforeCpuTokens : highContentionBeforeCpuTokens;
+              for (int j = 0; j < actionsPerPhase; j++) {
+                Blackhole.consumeCPU(beforeCpuTokens);
+                Thread.yield();
+                var obj = lock.lock();
+                Blackhole.consumeCPU(inCpuTokens);
+                lock.unlock(obj);
+              }
+            }
+          }
+      );
+      thread.setName("virtual-" + i);
+      threadList.add(thread);
+    }
+  }
+
+  @TearDown(Level.Invocation)
+  public void printModeSwitches() {
+    if (lock instanceof AdaptiveNumaLock adaptiveLock) {
+      System.out.println("Mode switches: " + adaptiveLock.getModeSwitchesCnt());
+    }
+  }
+
+  @TearDown(Level.Invocation)
+  public void closeLock() throws Exception {
+    if (lock instanceof AutoCloseable closeable) {
+      closeable.close();
+    }
+  }
+
+  @org.openjdk.jmh.annotations.Benchmark
+  @BenchmarkMode({Mode.SingleShotTime})
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void bench() {
+    for (int i = 0; i < threads; i++) {
+      threadList.get(i).start();
+    }
+    for (int i = 0; i < threads; i++) {
+      try {
+        threadList.get(i).join();
+      } catch (InterruptedException e) {
+        throw new BenchmarkException("Fail to join thread " + e.getMessage(), e);
+      }
+    }
+  }
+}
@@ -10,8 +10,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.concurrent.BrokenBarrierException;
-import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
@@ -20,6 +18,9 @@ import java.util.stream.Collectors;
 import io.github.ricnorr.benchmarks.BenchUtils;
 import io.github.ricnorr.benchmarks.BenchmarkException;
 import io.github.ricnorr.benchmarks.LockType;
+import io.github.ricnorr.numa_locks.CombiningNumaLock;
+import io.github.ricnorr.numa_locks.NumaBarrier;
+import io.github.ricnorr.numa_locks.NumaScheduler;
 import io.github.ricnorr.numa_locks.VthreadNumaLock;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Level;
@@ -43,9 +44,20 @@ public class JmhPriorityQueueBenchmark {
 
   @Param("")
   public String lockType;
+
+  /**
+   * Run virtual threads on carriers pinned to NUMA nodes, see {@link NumaScheduler}
+   */
+  @Param("false")
+  public boolean numaScheduler;
+
   VthreadNumaLock lock;
 
-  CyclicBarrier cyclicBarrier;
+  NumaScheduler scheduler;
+
+  boolean combining;
+
+  NumaBarrier startBarrier;
 
   List<Thread> threadList = new ArrayList<>();
 
@@ -67,6 +79,31 @@ public class JmhPriorityQueueBenchmark {
     if (!lockType.equals(LockType.SYNCHRONIZED.toString())) {
       lock = BenchUtils.initLock(LockType.valueOf(lockType), threads);
     }
+    combining = lockType.equals(LockType.VNA_COMBINING.toString()) ||
+        lockType.equals(LockType.DELEGATION.toString());
+    scheduler = BenchUtils.initScheduler(numaScheduler, threads);
+  }
+
+  @TearDown(Level.Trial)
+  public void closeLock() throws Exception {
+    if (lock instanceof AutoCloseable closeable) {
+      closeable.close();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void closeScheduler() {
+    if (scheduler != null) {
+      scheduler.close();
+    }
+  }
+
+  private void updateQueue() {
+    if (ThreadLocalRandom.current().nextBoolean()) {
+      priorityQueue.add(ThreadLocalRandom.current().nextInt(0, 50_000));
+    } else {
+      priorityQueue.poll();
+    }
   }
 
   @TearDown(Level.Invocation)
@@ -101,32 +138,29 @@ public class JmhPriorityQueueBenchmark {
     for (int i = 0; i < threads; i++) {
       latenciesForEachThread.get(benchmarkIteration).add(new ArrayList<>());
     }
-    BenchUtils.pinVirtualThreadsToCores(Math.min(BenchUtils.CORES_CNT, threads));
-    cyclicBarrier = new CyclicBarrier(threads);
+    startBarrier = new NumaBarrier(threads);
     for (int i = 0; i < threads; i++) {
       ThreadFactory threadFactory;
-      threadFactory = Thread.ofVirtual().factory();
+      threadFactory = BenchUtils.virtualThreadFactory(scheduler);
       int finalI = i;
       var thread = threadFactory.newThread(
           () -> {
             List<Long> threadLatencyNanosec = new ArrayList<>();
-            try {
-              cyclicBarrier.await();
-            } catch (InterruptedException | BrokenBarrierException e) {
-              throw new BenchmarkException("Fail waiting barrier", e);
-            }
+            startBarrier.arriveAndAwaitAdvance();
             for (int j = 0; j < actionsCount / threads; j++) {
               Thread.yield();
               long startAcquireLockNanos = System.nanoTime();
+              if (combining) {
+                // combined operations must not yield, the latency includes the operation
+                ((CombiningNumaLock<?>) lock).execute(this::updateQueue);
+                threadLatencyNanosec.add(System.nanoTime() - startAcquireLockNanos);
+                continue;
+              }
               var obj = lock.lock();
               long lockAcquiredNanos = System.nanoTime();
               threadLatencyNanosec.add(lockAcquiredNanos - startAcquireLockNanos);
               Thread.yield();
-              if (ThreadLocalRandom.current().nextBoolean()) {
-                priorityQueue.add(ThreadLocalRandom.current().nextInt(0, 50_000));
-              } else {
-                priorityQueue.poll();
-              }
+              updateQueue();
               Thread.yield();
               lock.unlock(obj);
             }
@@ -0,0 +1,144 @@
+package io.github.ricnorr.benchmarks.jmh.read_write;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import io.github.ricnorr.benchmarks.BenchUtils;
+import io.github.ricnorr.benchmarks.BenchmarkException;
+import io.github.ricnorr.benchmarks.LockType;
+import io.github.ricnorr.numa_locks.NumaBarrier;
+import io.github.ricnorr.numa_locks.NumaScheduler;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import static org.openjdk.jmh.annotations.Scope.Benchmark;
+
+/**
+ * Virtual threads look up and update a shared map, {@code readPercent} of operations are lookups under read lock,
+ * the rest are updates under write lock.
+ */
+@State(Benchmark)
+public class JmhReadWriteBenchmark {
+
+  @Param("0")
+  public int actionsCount;
+
+  @Param("0")
+  public int threads;
+
+  @Param("")
+  public String lockType;
+
+  @Param("90")
+  public int readPercent;
+
+  @Param("1024")
+  public int mapSize;
+
+  /**
+   * Run virtual threads on carriers pinned to NUMA nodes, see {@link NumaScheduler}
+   */
+  @Param("false")
+  public boolean numaScheduler;
+
+  ReadWriteLock lock;
+
+  NumaScheduler scheduler;
+
+  NumaBarrier startBarrier;
+
+  List<Thread> threadList = new ArrayList<>();
+
+  Map<Integer, Integer> map = new HashMap<>();
+
+  // сумма прочитанных значений, чтобы JIT не выбросил чтения
+  long[] checksums;
+
+  @Setup(Level.Trial)
+  public void init() {
+    System.out.println("Get system property jdk.virtualThreadScheduler.parallelism=" +
+        System.getProperty("jdk.virtualThreadScheduler.parallelism"));
+    lock = BenchUtils.initReadWriteLock(LockType.valueOf(lockType));
+    scheduler = BenchUtils.initScheduler(numaScheduler, threads);
+  }
+
+  @TearDown(Level.Trial)
+  public void closeScheduler() {
+    if (scheduler != null) {
+      scheduler.close();
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void prepare() {
+    map.clear();
+    for (int i = 0; i < mapSize; i++) {
+      map.put(i, i);
+    }
+    threadList = new ArrayList<>();
+    checksums = new long[threads];
+    startBarrier = new NumaBarrier(threads);
+    for (int i = 0; i < threads; i++) {
+      ThreadFactory threadFactory;
+      threadFactory = BenchUtils.virtualThreadFactory(scheduler);
+      int finalI = i;
+      var thread = threadFactory.newThread(
+          () -> {
+            startBarrier.arriveAndAwaitAdvance();
+            long checksum = 0;
+            for (int j = 0; j < actionsCount / threads; j++) {
+              Thread.yield();
+              var random = ThreadLocalRandom.current();
+              int key = random.nextInt(mapSize);
+              if (random.nextInt(100) < readPercent) {
+                lock.readLock().lock();
+                try {
+                  checksum += map.get(key);
+                } finally {
+                  lock.readLock().unlock();
+                }
+              } else {
+                lock.writeLock().lock();
+                try {
+                  map.put(key, random.nextInt());
+                } finally {
+                  lock.writeLock().unlock();
+                }
+              }
+            }
+            checksums[finalI] = checksum;
+          }
+      );
+      thread.setName("virtual-" + i);
+      threadList.add(thread);
+    }
+  }
+
+  @org.openjdk.jmh.annotations.Benchmark
+  @BenchmarkMode({Mode.SingleShotTime})
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void bench() {
+    for (int i = 0; i < threads; i++) {
+      threadList.get(i).start();
+    }
+    for (int i = 0; i < threads; i++) {
+      try {
+        threadList.get(i).join();
+      } catch (InterruptedException e) {
+        throw new BenchmarkException("Fail to join thread " + e.getMessage(), e);
+      }
+    }
+  }
+}
@@ -5,15 +5,14 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
-import java.util.concurrent.BrokenBarrierException;
-import java.util.concurrent.CyclicBarrier;
-import java.util.concurrent.Phaser;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import io.github.ricnorr.benchmarks.BenchUtils;
-import io.github.ricnorr.benchmarks.BenchmarkException;
 import io.github.ricnorr.benchmarks.LockType;
+import io.github.ricnorr.numa_locks.CombiningNumaLock;
+import io.github.ricnorr.numa_locks.NumaBarrier;
+import io.github.ricnorr.numa_locks.NumaScheduler;
 import io.github.ricnorr.numa_locks.VthreadNumaLock;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Level;
@@ -22,6 +21,7 @@ import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 
 import static org.openjdk.jmh.annotations.Scope.Benchmark;
 
@@ -32,8 +32,12 @@ public class TextStatBenchmark {
   public int threads;
   @Param("")
   public String lockType;
+  @Param("false")
+  public boolean numaScheduler;
   List<Thread> threadList = new ArrayList<>();
-  Phaser onFinish;
+  List<VthreadNumaLock> locks = new ArrayList<>();
+  NumaBarrier onFinish;
+  NumaScheduler scheduler;
 
   @Setup(Level.Trial)
   public void init() {
@@ -41,15 +45,22 @@ public class TextStatBenchmark {
         System.getProperty("jdk.virtualThreadScheduler.parallelism"));
     System.out.println("Get system property jdk.virtualThreadScheduler.maxPoolSize=" +
         System.getProperty("jdk.virtualThreadScheduler.maxPoolSize"));
-    BenchUtils.pinVirtualThreadsToCores(Math.min(threads, BenchUtils.CORES_CNT));
+    scheduler = BenchUtils.initScheduler(numaScheduler, threads);
+  }
+
+  @TearDown(Level.Trial)
+  public void closeScheduler() {
+    if (scheduler != null) {
+      scheduler.close();
+    }
   }
 
   @Setup(Level.Invocation)
   public void prepare() {
     threadList = new ArrayList<>();
-    onFinish = new Phaser(threads + 1);
-    var cyclicBarrier = new CyclicBarrier(threads);
-    ThreadFactory threadFactory = Thread.ofVirtual().factory();
+    onFinish = new NumaBarrier(threads + 1);
+    var startBarrier = new NumaBarrier(threads);
+    ThreadFactory threadFactory = BenchUtils.virtualThreadFactory(scheduler);
     byte[] array = new byte[256];
     int wordsCnt = 1_000_00;
     var words = new String[wordsCnt];
@@ -60,7 +71,9 @@ public class TextStatBenchmark {
       }
       words[i] = new String(array, StandardCharsets.UTF_8);
     }
-    List<VthreadNumaLock> locks = new ArrayList<>();
+    boolean combining = lockType.equals(LockType.VNA_COMBINING.toString()) ||
+        lockType.equals(LockType.DELEGATION.toString());
+    locks = new ArrayList<>();
     List<HashMap<String, Integer>> maps = new ArrayList<>();
     int cores = Math.min(BenchUtils.CORES_CNT, threads);
     for (int i = 0; i < cores; i++) {
@@ -71,11 +84,7 @@ public class TextStatBenchmark {
       int finalI = i;
       var thread = threadFactory.newThread(
           () -> {
-            try {
-              cyclicBarrier.await();
-            } catch (InterruptedException | BrokenBarrierException e) {
-              throw new BenchmarkException("Fail waiting barrier", e);
-            }
+            startBarrier.arriveAndAwaitAdvance();
             int wordsPerThread = wordsCnt / threads;
             int additionWork = 0;
             if (finalI == threads - 1) {
@@ -84,6 +93,11 @@ public class TextStatBenchmark {
             for (int j = 0; j < wordsPerThread + additionWork; j++) {
               for (String x : words[finalI * wordsPerThread + j].split(" ")) {
                 var hashCode = Math.abs(x.hashCode()) % cores;
+                if (combining) {
+                  var map = maps.get(hashCode);
+                  ((CombiningNumaLock<?>) locks.get(hashCode)).execute(() -> map.merge(x, 1, Integer::sum));
+                  continue;
+                }
                 var obj = locks.get(hashCode).lock();
                 maps.get(hashCode).put(x, maps.get(hashCode).getOrDefault(x, 0) + 1);
                 locks.get(hashCode).unlock(obj);
@@ -98,6 +112,15 @@ public class TextStatBenchmark {
     }
   }
 
+  @TearDown(Level.Invocation)
+  public void closeLocks() throws Exception {
+    for (VthreadNumaLock lock : locks) {
+      if (lock instanceof AutoCloseable closeable) {
+        closeable.close();
+      }
+    }
+  }
+
   @org.openjdk.jmh.annotations.Benchmark
   @BenchmarkMode({Mode.SingleShotTime})
   @OutputTimeUnit(TimeUnit.NANOSECONDS)
@@ -24,6 +24,10 @@ public class ConsumeCpuBenchmarkParameters implements BenchmarkParameters {
 
   public Integer yieldsBefore;
 
+  public Boolean numaScheduler;
+
+  public Long remoteStealDelayMicros;
+
   public List<LockParam> locks;
 
   public Integer threadsFrom;
@@ -69,6 +73,9 @@ public class ConsumeCpuBenchmarkParameters implements BenchmarkParameters {
           options = options.param("threads", Long.toString(thread));
           options = options.param("yieldInCrit", Boolean.toString(yieldInCrit != null ? yieldInCrit : false));
           options = options.param("yieldsBefore", Integer.toString(yieldsBefore != null ? yieldsBefore : 1));
+          options = options.param("numaScheduler", Boolean.toString(numaScheduler != null ? numaScheduler : false));
+          options = options.param("remoteStealDelayMicros",
+              Long.toString(remoteStealDelayMicros != null ? remoteStealDelayMicros : -1));
           options = options.param("title", title);
           options = options.param("actionsCount", Integer.toString(actionsCount));
           String asyncProfilerParams = profilerParams.get("async");
@@ -30,6 +30,8 @@ public class MatrixMultiplicationBenchmarkParameters implements BenchmarkParamet
 
   public Integer actionsCount;
 
+  public Boolean numaScheduler;
+
   public Integer warmupIterations;
 
   public Integer measurementIterations;
@@ -65,6 +67,7 @@ public class MatrixMultiplicationBenchmarkParameters implements BenchmarkParamet
           options = options.param("beforeMatrixSize", Long.toString(beforeMatrixSize));
           options = options.param("inMatrixSize", Long.toString(inMatrixSize));
           options = options.param("threads", Long.toString(thread));
+          options = options.param("numaScheduler", Boolean.toString(numaScheduler != null ? numaScheduler : false));
           options = options.param("yieldInCrit", Boolean.toString(yieldInCrit != null ? yieldInCrit : true));
           options = options.param("title", title);
           options = options.param("actionsCount", Integer.toString(actionsCount));
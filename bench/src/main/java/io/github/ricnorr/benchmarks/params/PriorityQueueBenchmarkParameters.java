@@ -25,6 +25,8 @@ public class PriorityQueueBenchmarkParameters implements BenchmarkParameters {
 
   public Integer actionsCount;
 
+  public Boolean numaScheduler;
+
   public Integer warmupIterations;
 
   public Integer measurementIterations;
@@ -58,6 +60,7 @@ public class PriorityQueueBenchmarkParameters implements BenchmarkParameters {
                   Math.min(BenchUtils.CORES_CNT, thread));
           options = options.param("lockType", lock.name.name());
           options = options.param("threads", Long.toString(thread));
+          options = options.param("numaScheduler", Boolean.toString(numaScheduler != null ? numaScheduler : false));
           options = options.param("title", title);
           options = options.param("actionsCount", Integer.toString(actionsCount));
           String asyncProfilerParams = profilerParams.get("async");
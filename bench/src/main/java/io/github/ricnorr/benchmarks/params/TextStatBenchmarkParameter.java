@@ -21,6 +21,8 @@ public class TextStatBenchmarkParameter implements BenchmarkParameters {
 
   public List<Integer> threads;
 
+  public Boolean numaScheduler;
+
   public Integer warmupIterations;
 
   public Integer measurementIterations;
@@ -54,6 +56,7 @@ public class TextStatBenchmarkParameter implements BenchmarkParameters {
                   Math.min(BenchUtils.CORES_CNT, thread));
           options = options.param("lockType", lock.name.name());
           options = options.param("threads", Long.toString(thread));
+          options = options.param("numaScheduler", Boolean.toString(numaScheduler != null ? numaScheduler : false));
           options = options.param("title", title);
           String asyncProfilerParams = profilerParams.get("async");
           if (asyncProfilerParams != null) {
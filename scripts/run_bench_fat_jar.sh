@@ -9,7 +9,7 @@ sdk use java 19.0.2-open
 
 cp bench/settings/settings.json fatjar/settings/settings.json
 cd fatjar
-java -XX:+UseParallelGC -XX:+UseNUMA -XX:-RestrictContended --add-opens java.base/java.lang=ALL-UNNAMED  --enable-preview -Djdk.trackAllThreads=true -Djdk.tracePinnedThreads=true  -Djna.library.path=../bench/libs/ -jar bench.jar
+java -XX:+UseParallelGC -XX:+UseNUMA -XX:-RestrictContended --add-opens java.base/java.lang=ALL-UNNAMED  --enable-preview --enable-native-access=ALL-UNNAMED -Djdk.trackAllThreads=true -Djdk.tracePinnedThreads=true  -Djna.library.path=../bench/libs/ ${NUMA_LOCKS_TOPOLOGY:+-Dio.github.ricnorr.numa_locks.topology=$NUMA_LOCKS_TOPOLOGY} -jar bench.jar
 cp ./results/benchmark_results.csv ../results/benchmark_results.csv
 rm -rf ./results/benchmark_results.csv
 cd ../scripts/
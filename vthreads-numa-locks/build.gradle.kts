@@ -98,6 +98,7 @@ tasks.withType<Javadoc> {
 tasks.withType<JavaExec>().configureEach {
     jvmArgs = listOf(
         "--enable-preview",
+        "--enable-native-access=ALL-UNNAMED",
         "-XX:+UseNUMA",
         "-XX:+UseParallelGC",
         "-XX:-RestrictContended",
@@ -107,6 +108,17 @@ tasks.withType<JavaExec>().configureEach {
     )
 }
 
+tasks.withType<Test>().configureEach {
+    useJUnitPlatform()
+    jvmArgs = listOf(
+        "--enable-preview",
+        "--enable-native-access=ALL-UNNAMED",
+        "-XX:-RestrictContended",
+        "--add-opens",
+        "java.base/java.lang=ALL-UNNAMED",
+    )
+}
+
 group = "io.github.ricnorr"
 version = "2.0"
 
@@ -117,4 +129,5 @@ repositories {
 dependencies {
     implementation("net.java.dev.jna:jna:5.12.1")
     implementation("com.github.oshi:oshi-dist:6.4.0")
+    testImplementation("org.junit.jupiter:junit-jupiter:5.9.2")
 }
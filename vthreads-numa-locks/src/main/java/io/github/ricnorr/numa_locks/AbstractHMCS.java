@@ -0,0 +1,329 @@
+package io.github.ricnorr.numa_locks;
+
+import java.lang.reflect.Array;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+import static io.github.ricnorr.numa_locks.HMCSQNode.ACQUIRE_PARENT;
+import static io.github.ricnorr.numa_locks.HMCSQNode.COHORT_START;
+import static io.github.ricnorr.numa_locks.HMCSQNode.LOCKED;
+import static io.github.ricnorr.numa_locks.HMCSQNode.UNLOCKED;
+import static io.github.ricnorr.numa_locks.HMCSQNode.WAIT;
+
+public abstract class AbstractHMCS extends AbstractNumaLock<AbstractHMCS.InfoToUnlockHMCS>
+    implements ObservableNumaLock<AbstractHMCS.InfoToUnlockHMCS>, TryNumaLock<AbstractHMCS.InfoToUnlockHMCS> {
+
+
+  protected final HNode[] leafs;
+
+  private final boolean useFlag;
+
+  private final GlobalFlag flag = new GlobalFlag();
+
+  /**
+   * Default number of acquisitions by a cohort in a row, see {@link #setCohortLimit(int)}
+   */
+  public static final int DEFAULT_COHORT_LIMIT = 100;
+
+  /**
+   * {@code null} until {@link #enableStats()}
+   */
+  private LockStats stats;
+
+  /**
+   * Read by the owner on release, may be changed at runtime
+   */
+  private volatile int cohortLimit = DEFAULT_COHORT_LIMIT;
+
+  public AbstractHMCS(Supplier<HMCSQNode> qNodeSupplier, IntSupplier clusterIdSupplier, int leafsCnt,
+                      boolean useFlag) {
+    this(qNodeSupplier, clusterIdSupplier, leafsCnt, useFlag, SpinPolicy.PARK);
+  }
+
+  @SuppressWarnings("unchecked")
+  public AbstractHMCS(Supplier<HMCSQNode> qNodeSupplier, IntSupplier clusterIdSupplier, int leafsCnt,
+                      boolean useFlag, SpinPolicy spinPolicy) {
+    super(clusterIdSupplier, spinPolicy);
+    this.leafs = (HNode[]) Array.newInstance(HNode.class, leafsCnt);
+    this.useFlag = useFlag;
+  }
+
+  @Override
+  public InfoToUnlockHMCS lock() {
+    HMCSQNode node = new HMCSQNode();
+    int clusterId = getClusterId();
+    var stats = this.stats;
+    if (useFlag) {
+      if (flag.tryAcquire()) {
+        if (stats != null) {
+          stats.recordFastPath();
+        }
+        return new InfoToUnlockHMCS(node, clusterId, true);
+      }
+    }
+    var event = LockEvents.beginContendedAcquisition();
+    long start = stats != null ? System.nanoTime() : 0L;
+    boolean track = stats != null || LockEvents.isContendedAcquisitionEnabled();
+    var leaf = leafs[clusterId];
+    lockH(node, leaf, track);
+    if (useFlag) {
+      flag.acquire(this);
+    }
+    if (track) {
+      leaf.headTicket = node.ticket;
+    }
+    if (stats != null) {
+      stats.recordQueued(node.queueDepth, System.nanoTime() - start);
+    }
+    if (event != null) {
+      event.finish(this, clusterId, node.queueDepth);
+    }
+    return new InfoToUnlockHMCS(node, clusterId, false);
+  }
+
+  /**
+   * Takes the global flag if the lock has it. Otherwise enqueues only into empty queues from the leaf up to
+   * the root, by a CAS on the tail of every level, and leaves the queues taken if an upper one is not empty.
+   */
+  @Override
+  public InfoToUnlockHMCS tryLock() {
+    int clusterId = getClusterId();
+    var stats = this.stats;
+    if (useFlag) {
+      if (!flag.tryAcquire()) {
+        return null;
+      }
+      if (stats != null) {
+        stats.recordFastPath();
+      }
+      return new InfoToUnlockHMCS(new HMCSQNode(), clusterId, true);
+    }
+    var leaf = leafs[clusterId];
+    var node = new HMCSQNode();
+    if (!tryLockH(node, leaf)) {
+      return null;
+    }
+    // the first node of the empty queue is numbered 0
+    leaf.headTicket = 0;
+    if (stats != null) {
+      stats.recordQueued(0, 0L);
+    }
+    return new InfoToUnlockHMCS(node, clusterId, false);
+  }
+
+  @Override
+  public void unlock(InfoToUnlockHMCS infoToUnlock) {
+    if (!infoToUnlock.fastPath) {
+      unlockH(leafs[infoToUnlock.clusterId], infoToUnlock.node, true);
+    }
+    if (useFlag) {
+      flag.release();
+    }
+  }
+
+  @Override
+  public synchronized LockStats enableStats() {
+    if (stats == null) {
+      stats = new LockStats();
+    }
+    return stats;
+  }
+
+  @Override
+  public LockStats getStats() {
+    return stats;
+  }
+
+  /**
+   * @return approximate numbers of threads in the leaf queues, valid only while statistics are enabled
+   */
+  @Override
+  public int[] getQueueLengths() {
+    int[] lengths = new int[leafs.length];
+    for (int i = 0; i < lengths.length; i++) {
+      var tail = leafs[i].tail.get();
+      lengths[i] = tail == null ? 0 : Math.max(1, tail.ticket - leafs[i].headTicket + 1);
+    }
+    return lengths;
+  }
+
+  public int getCohortLimit() {
+    return cohortLimit;
+  }
+
+  /**
+   * Changes the cohort limit at runtime, the owner sees the new limit on one of the next releases.
+   *
+   * @param cohortLimit how many acquisitions in a row a group of any level can make before the lock goes
+   *                    to the upper level, {@code 1} to pass the lock up on every release
+   */
+  public void setCohortLimit(int cohortLimit) {
+    if (cohortLimit < 1) {
+      throw new IllegalArgumentException("Cohort limit must be positive: " + cohortLimit);
+    }
+    this.cohortLimit = cohortLimit;
+  }
+
+  /**
+   * @param track whether to number the node for the queue depth, only in leafs
+   */
+  private void lockH(HMCSQNode qNode, HNode hNode, boolean track) {
+    if (hNode.parent == null) {
+      qNode.setNextAtomically(null);
+      qNode.setStatusAtomically(LOCKED);
+      qNode.thread = Thread.currentThread();
+      HMCSQNode pred = hNode.tail.getAndSet(qNode);
+      if (pred == null) {
+        qNode.setStatusAtomically(UNLOCKED);
+      } else {
+        pred.setNextAtomically(qNode);
+        int spins = 0;
+        while (qNode.getStatus() == LOCKED) {
+          spins = waitStep(spins);
+        }
+      }
+    } else {
+      qNode.setNextAtomically(null);
+      qNode.setStatusAtomically(WAIT);
+      qNode.thread = Thread.currentThread();
+      HMCSQNode pred = hNode.tail.getAndSet(qNode);
+      if (track) {
+        onEnqueue(qNode, pred, hNode);
+      }
+      if (pred != null) {
+        pred.setNextAtomically(qNode);
+        int spins = 0;
+        while (qNode.getStatus() == WAIT) {
+          spins = waitStep(spins);
+        }
+        if (qNode.getStatus() < ACQUIRE_PARENT) {
+          return;
+        }
+      }
+      qNode.setStatusAtomically(COHORT_START);
+      lockH(hNode.node, hNode.parent, false);
+    }
+  }
+
+  /**
+   * Enqueues into the queue of {@code hNode} and the queues of its ancestors only if they are empty.
+   *
+   * @return whether the lock is taken, otherwise the node has left all queues
+   */
+  private boolean tryLockH(HMCSQNode qNode, HNode hNode) {
+    qNode.setNextAtomically(null);
+    qNode.thread = Thread.currentThread();
+    if (hNode.parent == null) {
+      qNode.setStatusAtomically(UNLOCKED);
+      return hNode.tail.compareAndSet(null, qNode);
+    }
+    qNode.setStatusAtomically(COHORT_START);
+    if (!hNode.tail.compareAndSet(null, qNode)) {
+      return false;
+    }
+    if (tryLockH(hNode.node, hNode.parent)) {
+      return true;
+    }
+    // successors enqueued meanwhile acquire the parent themselves
+    releaseHelper(hNode, qNode, ACQUIRE_PARENT);
+    return false;
+  }
+
+  /**
+   * Numbers the node in the leaf queue for the queue depth in {@link #stats}
+   * and the queue position in {@link LockEvents.ContendedAcquisition}
+   */
+  private static void onEnqueue(HMCSQNode qNode, HMCSQNode pred, HNode hNode) {
+    if (pred == null) {
+      qNode.ticket = 0;
+      qNode.queueDepth = 0;
+    } else {
+      qNode.ticket = pred.ticket + 1;
+      // the queue may have been empty since the head got the lock, but the predecessor is ahead anyway
+      qNode.queueDepth = Math.max(1, qNode.ticket - hNode.headTicket);
+    }
+  }
+
+  /**
+   * Passing the lock inside a leaf cohort is a local handoff, passing it at an upper level is a remote one.
+   *
+   * @param leaf whether {@code hNode} is a leaf
+   */
+  private void unlockH(HNode hNode, HMCSQNode qNode, boolean leaf) {
+    if (hNode.parent == null) { // top hierarchy
+      if (releaseHelper(hNode, qNode, UNLOCKED)) {
+        recordHandoff(leaf);
+      }
+      return;
+    }
+    int curCount = qNode.getStatus();
+    if (curCount >= cohortLimit) {
+      unlockH(hNode.parent, hNode.node, false);
+      releaseHelper(hNode, qNode, ACQUIRE_PARENT);
+      return;
+    }
+    HMCSQNode succ = qNode.getNext();
+    if (succ != null) {
+      recordHandoff(leaf);
+      succ.setStatusAtomically(curCount + 1);
+      LockSupport.unpark(succ.thread);
+      return;
+    }
+    unlockH(hNode.parent, hNode.node, false);
+    releaseHelper(hNode, qNode, ACQUIRE_PARENT);
+  }
+
+  private void recordHandoff(boolean local) {
+    var stats = this.stats;
+    if (stats != null) {
+      stats.recordHandoff(local);
+    }
+  }
+
+  /**
+   * @return whether there was a successor
+   */
+  private boolean releaseHelper(HNode l, HMCSQNode i, int val) {
+    HMCSQNode succ = i.getNext();
+    if (succ != null) {
+      succ.setStatusAtomically(val);
+    } else {
+      if (l.tail.compareAndSet(i, null)) {
+        return false;
+      }
+      do {
+        succ = i.getNext();
+      } while (succ == null);
+      succ.setStatusAtomically(val);
+    }
+    LockSupport.unpark(succ.thread);
+    return true;
+  }
+
+  record InfoToUnlockHMCS(
+      HMCSQNode node,
+      int clusterId,
+
+      boolean fastPath
+  ) {
+  }
+
+  public static class HNode {
+    private final AtomicReference<HMCSQNode> tail;
+    private final HNode parent;
+    HMCSQNode node;
+
+    /**
+     * Ticket of the last node of the queue which got the lock, for the queue depth
+     */
+    int headTicket;
+
+    public HNode(HNode parent, HMCSQNode qNode) {
+      this.parent = parent;
+      this.tail = new AtomicReference<>(null);
+      this.node = qNode;
+    }
+  }
+}
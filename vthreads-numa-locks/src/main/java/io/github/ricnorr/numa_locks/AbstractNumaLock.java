@@ -0,0 +1,57 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+
+abstract class AbstractNumaLock<T> implements VthreadNumaLock<T> {
+
+  /**
+   * With {@link SpinPolicy#SPIN} the waiter yields once per this number of spins
+   */
+  static final int SPINS_PER_YIELD = 30;
+
+  /**
+   * Should be cheap, it is called on every acquisition, e.g. {@link LockUtils#getCachedNumaNodeId()}
+   */
+  protected final IntSupplier clusterIdSupplier;
+
+  protected final SpinPolicy spinPolicy;
+
+  public AbstractNumaLock(IntSupplier clusterIdSupplier) {
+    this(clusterIdSupplier, SpinPolicy.PARK);
+  }
+
+  public AbstractNumaLock(IntSupplier clusterIdSupplier, SpinPolicy spinPolicy) {
+    this.clusterIdSupplier = clusterIdSupplier;
+    this.spinPolicy = spinPolicy;
+  }
+
+  protected int getClusterId() {
+    return clusterIdSupplier.getAsInt();
+  }
+
+  /**
+   * One iteration of a wait loop according to {@link #spinPolicy}, the waiter must be unparked when its turn comes.
+   * <pre> {@code
+   *   int spins = 0;
+   *   while (node.status == WAIT) {
+   *     spins = waitStep(spins);
+   *   }
+   * }</pre>
+   *
+   * @param spins value returned by the previous step, {@code 0} at first
+   * @return value for the next step
+   */
+  protected int waitStep(int spins) {
+    if (spinPolicy != SpinPolicy.SPIN) {
+      LockSupport.park(this);
+      return 0;
+    }
+    if (++spins == SPINS_PER_YIELD) {
+      Thread.yield();
+      return 0;
+    }
+    Thread.onSpinWait();
+    return spins;
+  }
+}
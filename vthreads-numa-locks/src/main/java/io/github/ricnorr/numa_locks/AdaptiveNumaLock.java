@@ -0,0 +1,329 @@
+package io.github.ricnorr.numa_locks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import jdk.internal.vm.annotation.Contended;
+
+/**
+ * <p>NUMA-aware lock switching between test-and-test-and-set and queueing at runtime by the measured contention.
+ * <p>In {@link Mode#TTAS} mode a thread spins on the global flag and yields the carrier from time to time.
+ * At low contention the lock costs a single CAS and queues are not touched.
+ * <p>In {@link Mode#QUEUE} mode a thread which failed to take the flag joins the MCS queue of its NUMA node,
+ * like in {@link VNA_2_Q}, and only leaders of the queues spin on the flag. At high contention the flag is
+ * contended by at most one thread per node and waiters park.
+ * <p>Both modes take the same global flag, and release depends only on how the lock was taken, not on the current
+ * mode. So the mode can be switched at any moment without draining: threads already waiting finish in their mode,
+ * new threads take the new one.
+ * <p>Contention is measured by the owner of every acquisition from two values, both averaged exponentially:
+ * <ul>
+ *   <li>the rate of failed fast path CAS, how often the lock is found held;</li>
+ *   <li>the queue depth, the number of threads waiting ahead of the acquiring one: spinning on the flag
+ *   in {@link Mode#TTAS} mode or queued on the same node in {@link Mode#QUEUE} mode, {@code 0} for the fast path.
+ *   </li>
+ * </ul>
+ * The lock starts queueing when more than half of the fast path CAS fail and more than one thread waits ahead
+ * on average, so a pair of threads taking turns keeps spinning. It returns to TTAS when less than a quarter
+ * of the fast path CAS fail. The mode is switched at most once per {@code 256} acquisitions.
+ * <p>How to use:
+ * <pre> {@code
+ *   AdaptiveNumaLock lock = new AdaptiveNumaLock();
+ *   // ...
+ *   var unlockInfo = lock.lock();
+ *   try {
+ *     // ... method body
+ *   } finally {
+ *     lock.unlock(unlockInfo);
+ *   }
+ * }</pre>
+ */
+public class AdaptiveNumaLock implements TryNumaLock<AdaptiveNumaLock.UnlockInfo> {
+
+  private static final VarHandle GLOBAL_LOCK;
+  private static final VarHandle SPINNERS_CNT;
+
+  /**
+   * Averages are kept with this number of fractional bits
+   */
+  private static final int FRACTION_SHIFT = 8;
+
+  /**
+   * Weight of a new sample is {@code 1 / 2^EWMA_SHIFT}
+   */
+  private static final int EWMA_SHIFT = 4;
+
+  /**
+   * Deeper queues count as this depth, so a burst does not outweigh the rest of the average
+   */
+  private static final int MAX_DEPTH = 16;
+
+  private static final int TO_QUEUE_FAIL_RATE = (1 << FRACTION_SHIFT) / 2;
+
+  private static final int TO_QUEUE_DEPTH = 1 << FRACTION_SHIFT;
+
+  private static final int TO_TTAS_FAIL_RATE = (1 << FRACTION_SHIFT) / 4;
+
+  private static final int MIN_ACQUISITIONS_PER_MODE = 256;
+
+  private static final int SPINS_PER_YIELD = 30;
+
+  private static final int SPINS_BEFORE_PARK = 1024;
+
+  private static final UnlockInfo FLAG_ONLY_UNLOCK_INFO = new UnlockInfo(-1, null);
+
+  static {
+    try {
+      MethodHandles.Lookup l = MethodHandles.lookup();
+      GLOBAL_LOCK = l.findVarHandle(AdaptiveNumaLock.class, "globalLock", Boolean.TYPE);
+      SPINNERS_CNT = l.findVarHandle(AdaptiveNumaLock.class, "spinnersCnt", Integer.TYPE);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  public enum Mode {
+    TTAS,
+    QUEUE
+  }
+
+  @Contended("flag")
+  private volatile boolean globalLock = false;
+
+  /**
+   * Threads spinning on the flag in {@link Mode#TTAS} mode
+   */
+  @Contended("spinners")
+  private volatile int spinnersCnt;
+
+  /**
+   * Read by every thread which failed the fast path, written rarely
+   */
+  @Contended("mode")
+  private volatile Mode mode;
+
+  /**
+   * Average of failed fast path CAS, written by the owner under the lock
+   */
+  @Contended("stats")
+  private int failRate;
+
+  /**
+   * Average number of threads waiting ahead, written by the owner under the lock
+   */
+  @Contended("stats")
+  private int queueDepth;
+
+  @Contended("stats")
+  private int acquisitionsInMode;
+
+  @Contended("stats")
+  private volatile int modeSwitchesCnt;
+
+  private final AtomicReferenceArray<Node> localQueues;
+
+  /**
+   * Threads in the local queues, not owning the lock yet
+   */
+  private final AtomicIntegerArray queueLengths;
+
+  private final TopologyLevel level;
+
+  private final boolean adaptive;
+
+  /**
+   * Creates lock with a local queue per NUMA node, starting in {@link Mode#TTAS} mode.
+   */
+  public AdaptiveNumaLock() {
+    this(TopologyLevel.NUMA_NODE);
+  }
+
+  /**
+   * Creates lock starting in {@link Mode#TTAS} mode.
+   *
+   * @param level level of the local queues
+   */
+  public AdaptiveNumaLock(TopologyLevel level) {
+    this(level, Mode.TTAS, true);
+  }
+
+  /**
+   * Creates lock.
+   *
+   * @param level       level of the local queues
+   * @param initialMode mode to start in
+   * @param adaptive    whether to switch the mode by contention, {@code false} to keep {@code initialMode}
+   */
+  public AdaptiveNumaLock(TopologyLevel level, Mode initialMode, boolean adaptive) {
+    this.level = level;
+    this.mode = initialMode;
+    this.adaptive = adaptive;
+    this.localQueues = new AtomicReferenceArray<>(level.count());
+    this.queueLengths = new AtomicIntegerArray(level.count());
+  }
+
+  private boolean casGlobalLock() {
+    return GLOBAL_LOCK.compareAndSet(this, false, true);
+  }
+
+  @Override
+  public UnlockInfo lock() {
+    if (casGlobalLock()) {
+      onAcquire(false, 0);
+      return FLAG_ONLY_UNLOCK_INFO;
+    }
+    if (mode == Mode.TTAS) {
+      int spinnersAhead = (int) SPINNERS_CNT.getAndAdd(this, 1);
+      boolean acquired = spinForGlobalLock(true);
+      SPINNERS_CNT.getAndAdd(this, -1);
+      if (acquired) {
+        onAcquire(true, spinnersAhead);
+        return FLAG_ONLY_UNLOCK_INFO;
+      }
+      // switched to queueing while spinning
+    }
+    var queueId = level.getCachedId();
+    var node = new Node();
+    int queuedAhead = queueLengths.getAndIncrement(queueId);
+    var pred = localQueues.getAndSet(queueId, node);
+    if (pred != null) {
+      pred.next = node;
+      waitForLeadership(node);
+    }
+    spinForGlobalLock(false);
+    queueLengths.getAndDecrement(queueId);
+    onAcquire(true, queuedAhead);
+    return new UnlockInfo(queueId, node);
+  }
+
+  /**
+   * Test-and-test-and-set on the global flag, yielding the carrier, so the owner can be scheduled.
+   *
+   * @param untilQueueMode whether to give up when the lock switches to {@link Mode#QUEUE}
+   * @return {@code false} if gave up
+   */
+  private boolean spinForGlobalLock(boolean untilQueueMode) {
+    int spins = 0;
+    while (true) {
+      if (!globalLock && casGlobalLock()) {
+        return true;
+      }
+      if (++spins < SPINS_PER_YIELD) {
+        Thread.onSpinWait();
+        continue;
+      }
+      spins = 0;
+      if (untilQueueMode && mode == Mode.QUEUE) {
+        return false;
+      }
+      Thread.yield();
+    }
+  }
+
+  private void waitForLeadership(Node node) {
+    int spins = 0;
+    boolean interrupted = false;
+    while (node.waiting) {
+      if (spins < SPINS_BEFORE_PARK) {
+        spins++;
+        Thread.onSpinWait();
+        continue;
+      }
+      LockSupport.park(this);
+      // park returns at once while interrupted, waiter would keep the carrier busy
+      interrupted |= Thread.interrupted();
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * @param failed whether the fast path CAS failed
+   * @param depth  number of threads waiting ahead
+   */
+  private void onAcquire(boolean failed, int depth) {
+    failRate += (((failed ? 1 : 0) << FRACTION_SHIFT) - failRate) >> EWMA_SHIFT;
+    queueDepth += ((Math.min(depth, MAX_DEPTH) << FRACTION_SHIFT) - queueDepth) >> EWMA_SHIFT;
+    if (!adaptive) {
+      return;
+    }
+    if (acquisitionsInMode < MIN_ACQUISITIONS_PER_MODE) {
+      acquisitionsInMode++;
+      return;
+    }
+    var current = mode;
+    if (current == Mode.TTAS && failRate > TO_QUEUE_FAIL_RATE && queueDepth > TO_QUEUE_DEPTH) {
+      switchMode(Mode.QUEUE);
+    } else if (current == Mode.QUEUE && failRate < TO_TTAS_FAIL_RATE) {
+      switchMode(Mode.TTAS);
+    }
+  }
+
+  private void switchMode(Mode newMode) {
+    mode = newMode;
+    acquisitionsInMode = 0;
+    modeSwitchesCnt++;
+  }
+
+  @Override
+  public UnlockInfo tryLock() {
+    if (casGlobalLock()) {
+      onAcquire(false, 0);
+      return FLAG_ONLY_UNLOCK_INFO;
+    }
+    return null;
+  }
+
+  @Override
+  public void unlock(UnlockInfo unlockInfo) {
+    globalLock = false;
+    var node = unlockInfo.node;
+    if (node == null) {
+      return;
+    }
+    var next = node.next;
+    if (next == null) {
+      if (localQueues.compareAndSet(unlockInfo.queueId, node, null)) {
+        return;
+      }
+      while ((next = node.next) == null) {
+        Thread.onSpinWait();
+      }
+    }
+    next.waiting = false;
+    LockSupport.unpark(next.thread);
+  }
+
+  /**
+   * @return mode new waiters take now
+   */
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * @return how many times the mode was switched
+   */
+  public int getModeSwitchesCnt() {
+    return modeSwitchesCnt;
+  }
+
+  record UnlockInfo(
+      int queueId,
+      Node node
+  ) {
+  }
+
+  @Contended
+  private static class Node {
+
+    final Thread thread = Thread.currentThread();
+
+    volatile boolean waiting = true;
+
+    volatile Node next;
+  }
+}
@@ -0,0 +1,150 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>Spin budget of a lock, chosen from recent critical section and handoff durations.
+ * <p>Waiter spins while the lock is expected to come soon and parks otherwise, so short critical sections
+ * do not pay for park and unpark, and long ones do not keep carrier threads busy.
+ * <p>Durations are sampled and averaged exponentially. Samples are recorded by the lock owner,
+ * so there is one writer at a time; waiters read the estimates racily. Start times of the current samples
+ * are written only by the owner, so they are plain.
+ */
+final class AdaptiveSpin {
+
+  /**
+   * One of this number of acquisitions is timed on average, {@link System#nanoTime()} is not free
+   */
+  static final int SAMPLE_PERIOD = 16;
+
+  /**
+   * Rough cost of parking and unparking a virtual thread: submitting it to the scheduler and mounting
+   */
+  static final long PARK_COST_NANOS = 10_000;
+
+  static final long MAX_SPIN_NANOS = 2 * PARK_COST_NANOS;
+
+  /**
+   * Weight of a new sample is {@code 1 / 2^EWMA_SHIFT}
+   */
+  private static final int EWMA_SHIFT = 3;
+
+  private volatile long holdNanos = PARK_COST_NANOS / 4;
+
+  private volatile long handoffNanos = PARK_COST_NANOS / 4;
+
+  private volatile long maxSpinNanos = MAX_SPIN_NANOS;
+
+  /**
+   * Start of the sampled hold and release time of the sampled handoff, {@code 0} if not sampled
+   */
+  private long holdSampleStart;
+  private long handoffSampleStart;
+
+  /**
+   * @return start of a sample or {@code 0} if this acquisition is not sampled
+   */
+  private static long sampleStart() {
+    if (ThreadLocalRandom.current().nextInt(SAMPLE_PERIOD) != 0) {
+      return 0L;
+    }
+    long now = System.nanoTime();
+    // 0 means no sample
+    return now == 0L ? 1L : now;
+  }
+
+  /**
+   * Starts the hold sample, called by the new owner.
+   *
+   * @param free whether the lock was taken free, then it is not a handoff
+   */
+  void onAcquire(boolean free) {
+    if (free) {
+      handoffSampleStart = 0L;
+    }
+    holdSampleStart = sampleStart();
+  }
+
+  /**
+   * Records the sampled hold and starts the handoff sample, called by the owner on release.
+   */
+  void onRelease() {
+    long holdStart = holdSampleStart;
+    if (holdStart != 0L) {
+      long now = System.nanoTime();
+      recordHold(now - holdStart);
+      holdSampleStart = 0L;
+      handoffSampleStart = now;
+    }
+  }
+
+  /**
+   * Records the sampled handoff, called by a waiter which got the lock.
+   * Handoff to a parked waiter includes its wakeup, which is the cost of parking, not of the handoff,
+   * otherwise the estimate would keep waiters parking.
+   */
+  void onHandoff(boolean parked) {
+    long start = handoffSampleStart;
+    if (start != 0L) {
+      handoffSampleStart = 0L;
+      if (!parked) {
+        recordHandoff(System.nanoTime() - start);
+      }
+    }
+  }
+
+  /**
+   * @param nanos time the lock was held, called by the owner
+   */
+  void recordHold(long nanos) {
+    holdNanos = average(holdNanos, nanos);
+  }
+
+  /**
+   * @param nanos time from release of the lock to acquisition by a waiter, called by the new owner
+   */
+  void recordHandoff(long nanos) {
+    handoffNanos = average(handoffNanos, nanos);
+  }
+
+  private static long average(long average, long sample) {
+    return average + ((Math.max(sample, 0L) - average) >> EWMA_SHIFT);
+  }
+
+  /**
+   * Waiter next to the owner waits for the rest of the critical section and the handoff.
+   * If it is shorter than half of the spin budget, the waiter spins for twice that time, otherwise parks right away.
+   * By default the budget is twice the cost of parking, so waiter spins only if it is cheaper than parking.
+   *
+   * @return how long to spin before parking
+   */
+  long spinNanos() {
+    long expected = holdNanos + handoffNanos;
+    if (2 * expected >= maxSpinNanos) {
+      return 0L;
+    }
+    return 2 * expected;
+  }
+
+  long getMaxSpinNanos() {
+    return maxSpinNanos;
+  }
+
+  /**
+   * @param maxSpinNanos spin budget, {@code 0} to park right away
+   */
+  void setMaxSpinNanos(long maxSpinNanos) {
+    if (maxSpinNanos < 0) {
+      throw new IllegalArgumentException("Negative spin budget: " + maxSpinNanos);
+    }
+    this.maxSpinNanos = maxSpinNanos;
+  }
+
+  long getHoldNanos() {
+    return holdNanos;
+  }
+
+  long getHandoffNanos() {
+    return handoffNanos;
+  }
+}
@@ -7,4 +7,6 @@ interface CLibrary extends Library {
   CLibrary INSTANCE = Native.load("c", CLibrary.class);
 
   int syscall(int number, Object... args);
+
+  int sched_setaffinity(int pid, long cpusetsize, long[] cpuset);
 }
\ No newline at end of file
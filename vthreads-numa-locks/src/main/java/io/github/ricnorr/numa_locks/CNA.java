@@ -0,0 +1,281 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+
+public class CNA extends AbstractNumaLock<CNA.CNANode>
+    implements ObservableNumaLock<CNA.CNANode>, TryNumaLock<CNA.CNANode> {
+
+  CNALockCore cnaLockCore = new CNALockCore();
+
+  final GlobalFlag flag = new GlobalFlag();
+
+  final boolean useFlag;
+
+  /**
+   * {@code null} until {@link #enableStats()}
+   */
+  private LockStats stats;
+
+  public CNA(IntSupplier threadClusterSupplier, boolean useFlag) {
+    this(threadClusterSupplier, useFlag, SpinPolicy.PARK);
+  }
+
+  /**
+   * @param threadClusterSupplier supplier of the group of the current thread, successors from the same group
+   *                              are preferred
+   * @param useFlag               whether to try to take the global flag first
+   * @param spinPolicy            {@link SpinPolicy#PARK} or {@link SpinPolicy#SPIN}
+   */
+  public CNA(IntSupplier threadClusterSupplier, boolean useFlag, SpinPolicy spinPolicy) {
+    super(threadClusterSupplier, spinPolicy);
+    this.useFlag = useFlag;
+  }
+
+  @Override
+  public CNANode lock() {
+    int clusterId = getClusterId();
+    CNANode node = new CNANode();
+    node.socket = clusterId;
+    var stats = this.stats;
+    if (useFlag) {
+      if (flag.tryAcquire()) {
+        node.fastPath = true;
+        if (stats != null) {
+          stats.recordFastPath();
+        }
+        return node;
+      }
+    }
+    var event = LockEvents.beginContendedAcquisition();
+    long start = stats != null ? System.nanoTime() : 0L;
+    boolean track = stats != null || LockEvents.isContendedAcquisitionEnabled();
+    cnaLockCore.lock(node, track);
+    if (useFlag) {
+      flag.acquire(this);
+    }
+    if (track) {
+      cnaLockCore.headTicket = node.ticket;
+    }
+    if (stats != null) {
+      stats.recordQueued(node.queueDepth, System.nanoTime() - start);
+    }
+    if (event != null) {
+      event.finish(this, clusterId, node.queueDepth);
+    }
+    return node;
+  }
+
+  /**
+   * Takes the global flag if the lock has it, otherwise enqueues only into the empty queue.
+   */
+  @Override
+  public CNANode tryLock() {
+    CNANode node = new CNANode();
+    node.socket = getClusterId();
+    var stats = this.stats;
+    if (useFlag) {
+      if (!flag.tryAcquire()) {
+        return null;
+      }
+      node.fastPath = true;
+      if (stats != null) {
+        stats.recordFastPath();
+      }
+      return node;
+    }
+    if (!cnaLockCore.tryLock(node)) {
+      return null;
+    }
+    // the first node of the empty queue is numbered 0
+    cnaLockCore.headTicket = 0;
+    if (stats != null) {
+      stats.recordQueued(0, 0L);
+    }
+    return node;
+  }
+
+  @Override
+  public void unlock(CNANode node) {
+    if (!node.fastPath) {
+      cnaLockCore.unlock(node);
+    }
+    if (useFlag) {
+      flag.release();
+    }
+  }
+
+  @Override
+  public synchronized LockStats enableStats() {
+    if (stats == null) {
+      stats = new LockStats();
+    }
+    return stats;
+  }
+
+  @Override
+  public LockStats getStats() {
+    return stats;
+  }
+
+  /**
+   * @return approximate number of threads in the queue, valid only while statistics are enabled
+   */
+  @Override
+  public int[] getQueueLengths() {
+    var tail = cnaLockCore.tail.get();
+    return new int[] {tail == null ? 0 : Math.max(1, tail.ticket - cnaLockCore.headTicket + 1)};
+  }
+
+  private void recordHandoff(boolean local) {
+    var stats = this.stats;
+    if (stats != null) {
+      stats.recordHandoff(local);
+    }
+  }
+
+  public class CNALockCore {
+
+    public CNANode TRUE_VALUE = new CNANode();
+
+    private final AtomicReference<CNANode> tail;
+
+    /**
+     * Ticket of the last node which got the lock, for the queue depth. Successors are reordered
+     * by sockets, so the depth is approximate.
+     */
+    int headTicket;
+
+    public CNALockCore() {
+      tail = new AtomicReference<>(null);
+    }
+
+    public void lock(CNANode me) {
+      lock(me, false);
+    }
+
+    /**
+     * @param track whether to number the node for the queue depth
+     */
+    void lock(CNANode me, boolean track) {
+      me.next = null;
+      me.spin = null;
+      me.secTail.set(null);
+
+      CNANode prevTail = tail.getAndSet(me);
+      if (track) {
+        me.ticket = prevTail == null ? 0 : prevTail.ticket + 1;
+        me.queueDepth = prevTail == null ? 0 : Math.max(1, me.ticket - headTicket);
+      }
+
+      if (prevTail == null) {
+        me.spin = TRUE_VALUE;
+        return;
+      }
+
+      prevTail.next = me;
+      int spins = 0;
+      while (me.spin == null) {
+        spins = waitStep(spins);
+      }
+    }
+
+    /**
+     * @return whether the queue was empty and the node took the lock
+     */
+    boolean tryLock(CNANode me) {
+      me.next = null;
+      me.spin = TRUE_VALUE;
+      me.secTail.set(null);
+      return tail.compareAndSet(null, me);
+    }
+
+    public void unlock(CNANode me) {
+      if (me.next == null) {
+        if (me.spin == TRUE_VALUE) {
+          if (tail.compareAndSet(me, null)) {
+            return;
+          }
+        } else { // у нас есть secondary queue
+          CNANode secHead = me.spin;
+          if (tail.compareAndSet(me, secHead.secTail.get())) {
+            recordHandoff(false);
+            secHead.spin = TRUE_VALUE;
+            LockSupport.unpark(secHead.thread);
+            return;
+          }
+        }
+
+        /* Wait for successor to appear */
+        while (me.next == null) {
+          Thread.onSpinWait();
+        }
+      }
+      CNANode succ = null;
+      if ((succ = find_successor(me)) != null) {
+        recordHandoff(true);
+        succ.spin = me.spin;
+      } else if (me.spin != TRUE_VALUE) {
+        recordHandoff(false);
+        succ = me.spin;
+        succ.secTail.get().next = me.next;
+        succ.spin = TRUE_VALUE;
+      } else {
+        recordHandoff(false);
+        succ = me.next;
+        succ.spin = TRUE_VALUE;
+      }
+      LockSupport.unpark(succ.thread);
+    }
+
+    private CNANode find_successor(CNANode me) {
+      CNANode next = me.next;
+      int mySocket = me.socket;
+
+      if (next.socket == mySocket) {
+        return next;
+      }
+
+      CNANode secHead = next;
+      CNANode secTail = next;
+      CNANode cur = next.next;
+
+      while (cur != null) {
+        int curSocket = cur.socket;
+        if (curSocket == mySocket) {
+          if (me.spin != TRUE_VALUE) {
+            me.spin.secTail.get().next = secHead;
+          } else {
+            me.spin = secHead;
+          }
+          secTail.next = null;
+          me.spin.secTail.set(secTail);
+          return cur;
+        }
+        secTail = cur;
+        cur = cur.next;
+      }
+      return null;
+    }
+  }
+
+  public static class CNANode {
+    private final AtomicReference<CNANode> secTail = new AtomicReference<>(null);
+
+    private final Thread thread = Thread.currentThread();
+
+    public volatile int socket = -1;
+    private volatile CNANode spin = null;
+    private volatile CNANode next = null;
+
+    private boolean fastPath = false;
+
+    /**
+     * Statistics of the acquisition, set only if statistics of the lock or contention events are enabled
+     */
+    private int ticket;
+    private int queueDepth;
+
+  }
+}
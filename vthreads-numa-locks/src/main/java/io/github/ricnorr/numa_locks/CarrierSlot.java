@@ -0,0 +1,190 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>CPU, cluster, NUMA node and package of a carrier thread, cached for all locks, and per carrier state of locks.
+ * <p>Slots of carrier threads are kept in a table indexed by thread id, so the slot of the current carrier
+ * is found with plain loads, without reflective access to thread locals of the carrier. Platform threads,
+ * which are their own carriers, keep the slot in a thread local.
+ * <p>Slot is used only by threads running on its carrier, one at a time, so fields are plain.
+ * Virtual thread can't be unmounted in the middle of a lookup.
+ */
+final class CarrierSlot {
+
+  /**
+   * Cached ids are refreshed after this number of lookups, carrier thread may be moved by OS
+   */
+  static final int REFRESH_PERIOD = 10_000;
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private static final ThreadLocal<CarrierSlot> PLATFORM_SLOTS =
+      ThreadLocal.withInitial(() -> new CarrierSlot(Thread.currentThread()));
+
+  /**
+   * Open addressing by thread id, entries are only added under the class lock
+   */
+  private static volatile CarrierSlot[] table = new CarrierSlot[INITIAL_CAPACITY];
+
+  private static final AtomicInteger NEXT_STRIPE = new AtomicInteger();
+
+  final Thread carrier;
+
+  /**
+   * Index of cells of the carrier in striped counters, e.g. {@link LockStats}
+   */
+  final int stripe = NEXT_STRIPE.getAndIncrement();
+
+  private int cpuId;
+
+  private int clusterId;
+
+  private int numaId;
+
+  private int packageId;
+
+  private int lookups;
+
+  /**
+   * Free queue nodes of {@link RecyclingVNA}
+   */
+  RecyclingVNA.Node freeNodes;
+
+  int freeNodesCnt;
+
+  /**
+   * Native memory for results of getcpu, see {@link ForeignGetCpu}
+   */
+  ForeignGetCpu.Results getcpuResults;
+
+  private CarrierSlot(Thread carrier) {
+    this.carrier = carrier;
+    // ids are read on the first lookup, getcpu itself needs the slot
+    this.lookups = REFRESH_PERIOD - 1;
+  }
+
+  /**
+   * @return slot of the carrier thread of the current thread
+   */
+  static CarrierSlot current() {
+    if (!Thread.currentThread().isVirtual()) {
+      return PLATFORM_SLOTS.get();
+    }
+    Thread carrier = LockUtils.getCurrentCarrierThread();
+    CarrierSlot[] slots = table;
+    int mask = slots.length - 1;
+    for (int i = index(carrier, mask); ; i = (i + 1) & mask) {
+      CarrierSlot slot = slots[i];
+      if (slot == null) {
+        return register(carrier);
+      }
+      if (slot.carrier == carrier) {
+        return slot;
+      }
+    }
+  }
+
+  private static int index(Thread carrier, int mask) {
+    return (int) carrier.threadId() & mask;
+  }
+
+  private static synchronized CarrierSlot register(Thread carrier) {
+    CarrierSlot[] slots = table;
+    int occupied = 0;
+    int alive = 0;
+    for (CarrierSlot slot : slots) {
+      if (slot == null) {
+        continue;
+      }
+      if (slot.carrier == carrier) {
+        return slot;
+      }
+      occupied++;
+      if (slot.carrier.isAlive()) {
+        alive++;
+      }
+    }
+    var newSlot = new CarrierSlot(carrier);
+    // lookup stops at an empty entry, so at least half of entries are kept empty
+    if ((occupied + 1) * 2 > slots.length) {
+      int capacity = slots.length;
+      while ((alive + 1) * 4 > capacity) {
+        capacity *= 2;
+      }
+      // slots of terminated carriers are dropped
+      table = rehash(slots, capacity, newSlot);
+    } else {
+      put(slots, slots.length - 1, newSlot);
+    }
+    return newSlot;
+  }
+
+  private static CarrierSlot[] rehash(CarrierSlot[] slots, int capacity, CarrierSlot newSlot) {
+    var newSlots = new CarrierSlot[capacity];
+    int mask = capacity - 1;
+    for (CarrierSlot slot : slots) {
+      if (slot != null && slot.carrier.isAlive()) {
+        put(newSlots, mask, slot);
+      }
+    }
+    put(newSlots, mask, newSlot);
+    return newSlots;
+  }
+
+  private static void put(CarrierSlot[] slots, int mask, CarrierSlot slot) {
+    int i = index(slot.carrier, mask);
+    while (slots[i] != null) {
+      i = (i + 1) & mask;
+    }
+    slots[i] = slot;
+  }
+
+  private void refresh() {
+    lookups = 0;
+    cpuId = LockUtils.getCpuId();
+    var topology = Topology.get();
+    clusterId = topology.getClusterId(cpuId);
+    numaId = topology.getNumaNodeId(cpuId);
+    packageId = topology.getPackageId(cpuId);
+  }
+
+  private void countLookup() {
+    lookups++;
+    if (lookups >= REFRESH_PERIOD) {
+      refresh();
+    }
+  }
+
+  /**
+   * @return cached NUMA node of the carrier
+   */
+  int getNumaId() {
+    countLookup();
+    return numaId;
+  }
+
+  /**
+   * @return cached CPU of the carrier
+   */
+  int getCpuId() {
+    countLookup();
+    return cpuId;
+  }
+
+  /**
+   * @return cached cluster of the carrier
+   */
+  int getClusterId() {
+    countLookup();
+    return clusterId;
+  }
+
+  /**
+   * @return cached package of the carrier
+   */
+  int getPackageId() {
+    countLookup();
+    return packageId;
+  }
+}
@@ -0,0 +1,45 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.function.Supplier;
+
+/**
+ * NUMA-aware lock for Virtual Threads which can run short critical sections by flat combining.
+ *
+ * <p>Operations of threads of one NUMA node are published to the node and run in a batch by a single combiner
+ * under the lock, so the protected data moves between nodes once per batch instead of once per operation.
+ * The caller waits until its operation is run, by itself or by another thread of the node.
+ * <p>Operations run on the thread of the combiner: they must be short, must not block, must not depend
+ * on the identity or thread locals of the calling thread and must not acquire this lock.
+ * Mixing operations with {@link #lock()} and {@link #unlock(Object)} on the same lock is allowed.
+ * <p>How to use:
+ * <pre> {@code
+ *   lock.execute(() -> queue.add(x));
+ *   Integer head = lock.apply(queue::poll);
+ * }</pre>
+ *
+ * @param <T> info for unlocking
+ */
+public interface CombiningNumaLock<T> extends VthreadNumaLock<T> {
+
+  /**
+   * Runs the operation under the lock.
+   *
+   * @param op operation, exception thrown by it is rethrown to the caller
+   */
+  default void execute(Runnable op) {
+    apply(() -> {
+      op.run();
+      return null;
+    });
+  }
+
+  /**
+   * Runs the operation under the lock.
+   *
+   * @param op  operation, exception thrown by it is rethrown to the caller
+   * @param <R> type of the result
+   * @return result of the operation
+   */
+  <R> R apply(Supplier<R> op);
+
+}
@@ -0,0 +1,33 @@
+package io.github.ricnorr.numa_locks;
+
+/**
+ * CPU affinity of platform threads through {@code sched_setaffinity}, Linux only.
+ */
+final class CpuAffinity {
+
+  private CpuAffinity() {
+  }
+
+  /**
+   * Pins the current platform thread, e.g. a carrier thread, to the CPUs.
+   *
+   * @param cpus CPUs to run on
+   * @return {@code false} if the thread can't be pinned, e.g. not on Linux
+   */
+  static boolean pinCurrentThread(int[] cpus) {
+    int maxCpu = 0;
+    for (int cpu : cpus) {
+      maxCpu = Math.max(maxCpu, cpu);
+    }
+    long[] mask = new long[maxCpu / Long.SIZE + 1];
+    for (int cpu : cpus) {
+      mask[cpu / Long.SIZE] |= 1L << (cpu % Long.SIZE);
+    }
+    try {
+      // pid 0 is the calling thread
+      return CLibrary.INSTANCE.sched_setaffinity(0, (long) mask.length * Long.BYTES, mask) == 0;
+    } catch (LinkageError e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,395 @@
+package io.github.ricnorr.numa_locks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import jdk.internal.vm.annotation.Contended;
+
+/**
+ * <p>Lock with a server thread running critical sections of clients, like remote core locking.
+ * <p>Every NUMA node has a batch of request slots, each on its own cache line. Client claims a free slot of its node,
+ * posts the operation and waits on the slot only, clients finding no free slot park until a slot of their node
+ * is freed. The server scans the slots node by node, runs posted operations
+ * and writes results back, so the protected data stays in the caches of the server.
+ * <p>{@link #lock()} posts a request to hold the lock: the server grants it to the client and waits until
+ * {@link #unlock(Slot)}, so existing code can use the lock as any {@link VthreadNumaLock}, but then the critical
+ * section runs on the client and the data moves to it.
+ * <p>Operations of {@link #execute(Runnable)} and {@link #apply(Supplier)} run on the server: they must be short,
+ * must not block and must not acquire this lock, see {@link CombiningNumaLock}.
+ * <p>Waiting clients and the idle server spin for a while and park then. The server is a platform thread pinned
+ * to the CPUs of its NUMA node or a thread of the given factory, e.g. a virtual thread of {@link NumaScheduler}.
+ * It is stopped by {@link #close()}.
+ * <p>How to use:
+ * <pre> {@code
+ *   try (var lock = new DelegationLock()) {
+ *     lock.execute(() -> queue.add(x));
+ *     Integer head = lock.apply(queue::poll);
+ *   }
+ * }</pre>
+ */
+public final class DelegationLock implements CombiningNumaLock<DelegationLock.Slot>, AutoCloseable {
+
+  private static final VarHandle STATE;
+
+  /**
+   * Slot states: free, being filled by a client, posted to the server, operation done, lock granted to the client
+   */
+  private static final int FREE = 0;
+  private static final int CLAIMED = 1;
+  private static final int POSTED = 2;
+  private static final int DONE = 3;
+  private static final int GRANTED = 4;
+
+  /**
+   * Default request slots per CPU of a NUMA node, virtual threads waiting for the server keep their slots
+   */
+  public static final int DEFAULT_SLOTS_PER_CPU = 4;
+
+  private static final int MIN_SLOTS_PER_NODE = 16;
+
+  private static final int SPINS_BEFORE_PARK = 1024;
+
+  static {
+    try {
+      STATE = MethodHandles.lookup().findVarHandle(Slot.class, "state", Integer.TYPE);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  /**
+   * Request slots by NUMA node
+   */
+  private final Slot[][] slots;
+
+  /**
+   * Clients waiting for a free slot by NUMA node
+   */
+  private final List<ConcurrentLinkedQueue<Thread>> slotWaiters;
+
+  private final Thread server;
+
+  private volatile boolean serverParked;
+
+  private volatile boolean closed;
+
+  /**
+   * Creates lock with the server on NUMA node 0.
+   */
+  public DelegationLock() {
+    this(0);
+  }
+
+  /**
+   * Creates lock with the server in a platform thread pinned to the CPUs of the NUMA node.
+   *
+   * @param serverNumaId NUMA node of the server
+   */
+  public DelegationLock(int serverNumaId) {
+    this(pinnedServerFactory(serverNumaId));
+  }
+
+  /**
+   * Creates lock with the default number of request slots.
+   *
+   * @param serverFactory factory of the server thread, e.g. {@code numaScheduler.factory(numaId)}
+   */
+  public DelegationLock(ThreadFactory serverFactory) {
+    this(serverFactory, Math.max(MIN_SLOTS_PER_NODE,
+        DEFAULT_SLOTS_PER_CPU * Topology.get().getCpusCnt() / LockUtils.NUMA_NODES_CNT));
+  }
+
+  /**
+   * Creates lock.
+   *
+   * @param serverFactory factory of the server thread, e.g. {@code numaScheduler.factory(numaId)}
+   * @param slotsPerNode  request slots of every NUMA node, clients park while all slots of their node are taken
+   */
+  public DelegationLock(ThreadFactory serverFactory, int slotsPerNode) {
+    if (slotsPerNode <= 0) {
+      throw new IllegalArgumentException("Number of slots must be positive: " + slotsPerNode);
+    }
+    int nodesCnt = LockUtils.NUMA_NODES_CNT;
+    this.slots = new Slot[nodesCnt][slotsPerNode];
+    this.slotWaiters = new ArrayList<>();
+    for (int node = 0; node < nodesCnt; node++) {
+      for (int i = 0; i < slotsPerNode; i++) {
+        slots[node][i] = new Slot(node);
+      }
+      slotWaiters.add(new ConcurrentLinkedQueue<>());
+    }
+    this.server = serverFactory.newThread(this::serve);
+    server.start();
+  }
+
+  private static ThreadFactory pinnedServerFactory(int serverNumaId) {
+    var topology = Topology.get();
+    if (serverNumaId < 0 || serverNumaId >= topology.getNumaNodesCnt()) {
+      throw new IllegalArgumentException("Invalid NUMA node: " + serverNumaId);
+    }
+    int[] cpus = topology.getCpusOfNumaNode(serverNumaId);
+    return task -> {
+      var thread = new Thread(() -> {
+        if (cpus.length > 0) {
+          CpuAffinity.pinCurrentThread(cpus);
+        }
+        task.run();
+      });
+      thread.setName("delegation-server-" + serverNumaId);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  @Override
+  public Slot lock() {
+    var slot = post(null);
+    awaitServer(slot, POSTED);
+    return slot;
+  }
+
+  @Override
+  public void unlock(Slot slot) {
+    free(slot);
+    if (serverParked) {
+      LockSupport.unpark(server);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <R> R apply(Supplier<R> op) {
+    var slot = post(op);
+    awaitServer(slot, POSTED);
+    var result = slot.result;
+    var failure = slot.failure;
+    slot.result = null;
+    slot.failure = null;
+    free(slot);
+    if (failure instanceof RuntimeException e) {
+      throw e;
+    }
+    if (failure instanceof Error e) {
+      throw e;
+    }
+    if (failure != null) {
+      throw new IllegalStateException(failure);
+    }
+    return (R) result;
+  }
+
+  /**
+   * @param op operation, {@code null} to hold the lock
+   * @return posted slot of the NUMA node of the current thread
+   */
+  private Slot post(Supplier<?> op) {
+    if (closed) {
+      throw new IllegalStateException("Lock is closed");
+    }
+    var slot = claim(getNumaId());
+    slot.op = op;
+    slot.client = Thread.currentThread();
+    slot.state = POSTED;
+    if (serverParked) {
+      LockSupport.unpark(server);
+    }
+    return slot;
+  }
+
+  private Slot claim(int numaId) {
+    var nodeSlots = slots[numaId];
+    int start = CarrierSlot.current().stripe;
+    var slot = tryClaim(nodeSlots, start);
+    if (slot != null) {
+      return slot;
+    }
+    // all slots of the node are taken by clients waiting for the server
+    var waiters = slotWaiters.get(numaId);
+    var current = Thread.currentThread();
+    while (true) {
+      waiters.add(current);
+      // slot is freed before waiters are polled, retry after joining them
+      slot = tryClaim(nodeSlots, start);
+      if (slot == null) {
+        LockSupport.park(this);
+      }
+      waiters.remove(current);
+      if (slot != null) {
+        return slot;
+      }
+      slot = tryClaim(nodeSlots, start);
+      if (slot != null) {
+        return slot;
+      }
+    }
+  }
+
+  private static Slot tryClaim(Slot[] nodeSlots, int start) {
+    for (int i = 0; i < nodeSlots.length; i++) {
+      var slot = nodeSlots[Math.floorMod(start + i, nodeSlots.length)];
+      if (slot.state == FREE && STATE.compareAndSet(slot, FREE, CLAIMED)) {
+        return slot;
+      }
+    }
+    return null;
+  }
+
+  private void free(Slot slot) {
+    slot.state = FREE;
+    var waiter = slotWaiters.get(slot.numaId).poll();
+    if (waiter != null) {
+      LockSupport.unpark(waiter);
+    }
+  }
+
+  private void awaitServer(Slot slot, int pendingState) {
+    int spins = 0;
+    while (slot.state == pendingState) {
+      if (++spins < SPINS_BEFORE_PARK) {
+        Thread.onSpinWait();
+        continue;
+      }
+      slot.clientParked = true;
+      // server changes the state before it checks the flag
+      if (slot.state == pendingState) {
+        LockSupport.park(this);
+      }
+      slot.clientParked = false;
+    }
+  }
+
+  private void serve() {
+    int idleSpins = 0;
+    while (true) {
+      boolean served = false;
+      for (Slot[] nodeSlots : slots) {
+        for (Slot slot : nodeSlots) {
+          if (slot.state == POSTED) {
+            serve(slot);
+            served = true;
+          }
+        }
+      }
+      if (served) {
+        idleSpins = 0;
+        continue;
+      }
+      if (closed) {
+        return;
+      }
+      if (++idleSpins < SPINS_BEFORE_PARK) {
+        Thread.onSpinWait();
+      } else {
+        parkServer(this::hasPosted);
+      }
+    }
+  }
+
+  private void serve(Slot slot) {
+    var op = slot.op;
+    if (op == null) {
+      slot.state = GRANTED;
+      wakeClient(slot);
+      int spins = 0;
+      while (slot.state == GRANTED) {
+        if (++spins < SPINS_BEFORE_PARK) {
+          Thread.onSpinWait();
+        } else {
+          parkServer(() -> slot.state != GRANTED);
+        }
+      }
+      return;
+    }
+    slot.op = null;
+    try {
+      slot.result = op.get();
+    } catch (Throwable e) {
+      slot.failure = e;
+    }
+    slot.state = DONE;
+    wakeClient(slot);
+  }
+
+  private void parkServer(BooleanSupplier ready) {
+    serverParked = true;
+    // clients change a slot before they check the flag
+    if (!ready.getAsBoolean() && !closed) {
+      LockSupport.park(this);
+    }
+    serverParked = false;
+  }
+
+  private boolean hasPosted() {
+    for (Slot[] nodeSlots : slots) {
+      for (Slot slot : nodeSlots) {
+        if (slot.state == POSTED) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static void wakeClient(Slot slot) {
+    if (slot.clientParked) {
+      LockSupport.unpark(slot.client);
+    }
+  }
+
+  /**
+   * Stops the server after it runs the posted requests. The lock must not be used concurrently with close.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    LockSupport.unpark(server);
+    boolean interrupted = false;
+    while (true) {
+      try {
+        server.join();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  int getNumaId() {
+    return LockUtils.getCachedNumaNodeId();
+  }
+
+  /**
+   * Request slot held by the client between {@link #lock()} and {@link #unlock(Slot)}, opaque to the client
+   */
+  @Contended
+  public static final class Slot {
+
+    final int numaId;
+
+    volatile int state = FREE;
+
+    /**
+     * Written by the client before the slot is posted, by the server before the operation is done
+     */
+    Supplier<?> op;
+    Object result;
+    Throwable failure;
+    Thread client;
+
+    volatile boolean clientParked;
+
+    private Slot(int numaId) {
+      this.numaId = numaId;
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import jdk.internal.vm.annotation.Contended;
+
+/**
+ * <p>Flat combining over a NUMA-aware lock, see {@link CombiningNumaLock}.
+ * <p>Every NUMA node has a stack of published requests and a combiner flag. The thread which sets the flag takes
+ * the lock, runs the published requests of its node in arrival order until none are left or
+ * {@link #MAX_COMBINED_OPS} are run, releases the lock and completes the requests. The lock goes
+ * to the combiner of another node then, if it waits. Other threads spin and park until their request is completed
+ * or the flag is free.
+ *
+ * @param <T> info for unlocking of the lock
+ */
+final class FlatCombiner<T> {
+
+  /**
+   * Operations run in one batch at most, so combiners of other nodes can't starve
+   */
+  static final int MAX_COMBINED_OPS = 256;
+
+  private static final int SPINS_BEFORE_PARK = 128;
+
+  private static final int PENDING = 0;
+  private static final int DONE = 1;
+
+  private final VthreadNumaLock<T> lock;
+
+  private final Slot[] slots;
+
+  FlatCombiner(VthreadNumaLock<T> lock, int nodesCnt) {
+    this.lock = lock;
+    this.slots = new Slot[nodesCnt];
+    for (int i = 0; i < nodesCnt; i++) {
+      slots[i] = new Slot();
+    }
+  }
+
+  <R> R apply(Supplier<R> op, int numaId) {
+    var slot = slots[numaId];
+    var request = new Request(op);
+    slot.push(request);
+    int spins = 0;
+    while (request.status == PENDING) {
+      if (!slot.combining.get() && slot.combining.compareAndSet(false, true)) {
+        // requests taken by the previous combiner are completed before it cleared the flag,
+        // so the own request is either completed or still on the stack
+        combine(slot);
+        break;
+      }
+      if (++spins < SPINS_BEFORE_PARK) {
+        Thread.onSpinWait();
+      } else {
+        LockSupport.park(this);
+      }
+    }
+    return request.result();
+  }
+
+  private void combine(Slot slot) {
+    Request completed = null;
+    int combined = 0;
+    var unlockInfo = lock.lock();
+    try {
+      while (combined < MAX_COMBINED_OPS) {
+        var batch = reverse(slot.head.getAndSet(null));
+        if (batch == null) {
+          break;
+        }
+        while (batch != null) {
+          var next = batch.next;
+          batch.run();
+          batch.next = completed;
+          completed = batch;
+          batch = next;
+          combined++;
+        }
+      }
+    } finally {
+      lock.unlock(unlockInfo);
+    }
+    while (completed != null) {
+      var next = completed.next;
+      completed.complete();
+      completed = next;
+    }
+    slot.combining.set(false);
+    // requests published during the last batch need a new combiner
+    var waiting = slot.head.get();
+    if (waiting != null) {
+      LockSupport.unpark(waiting.thread);
+    }
+  }
+
+  private static Request reverse(Request head) {
+    Request reversed = null;
+    while (head != null) {
+      var next = head.next;
+      head.next = reversed;
+      reversed = head;
+      head = next;
+    }
+    return reversed;
+  }
+
+  @Contended
+  private static final class Slot {
+
+    final AtomicReference<Request> head = new AtomicReference<>();
+
+    final AtomicBoolean combining = new AtomicBoolean();
+
+    void push(Request request) {
+      while (true) {
+        var current = head.get();
+        request.next = current;
+        if (head.compareAndSet(current, request)) {
+          return;
+        }
+      }
+    }
+  }
+
+  private static final class Request {
+
+    final Thread thread = Thread.currentThread();
+
+    final Supplier<?> op;
+
+    /**
+     * Written by the combiner before {@link #status}
+     */
+    Object result;
+    Throwable failure;
+
+    Request next;
+
+    volatile int status = PENDING;
+
+    Request(Supplier<?> op) {
+      this.op = op;
+    }
+
+    void run() {
+      try {
+        result = op.get();
+      } catch (Throwable e) {
+        failure = e;
+      }
+    }
+
+    void complete() {
+      status = DONE;
+      if (thread != Thread.currentThread()) {
+        LockSupport.unpark(thread);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    <R> R result() {
+      if (failure instanceof RuntimeException e) {
+        throw e;
+      }
+      if (failure instanceof Error e) {
+        throw e;
+      }
+      if (failure != null) {
+        throw new IllegalStateException(failure);
+      }
+      return (R) result;
+    }
+  }
+}
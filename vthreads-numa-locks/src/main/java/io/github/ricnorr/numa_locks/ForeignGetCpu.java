@@ -0,0 +1,109 @@
+package io.github.ricnorr.numa_locks;
+
+import java.lang.foreign.Addressable;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryAddress;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.MemorySession;
+import java.lang.invoke.MethodHandle;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+/**
+ * <p>getcpu through the Foreign Function &amp; Memory API, sched_getcpu if the C library has no getcpu.
+ * <p>getcpu writes the CPU to native memory of the carrier thread, kept in its {@link CarrierSlot}, so a call
+ * does not allocate and does not access thread locals of the carrier. Virtual thread can't be unmounted between
+ * the call and reading the result, so virtual threads on the same carrier do not overwrite results of each other.
+ * <p>NUMA node is the dense id of {@link Topology} for the CPU, like with {@link JnaGetCpu}, not the id
+ * of the kernel, which may be sparse.
+ * <p>Downcall handles are constants, so the JIT compiles a call to a direct native call.
+ */
+final class ForeignGetCpu implements GetCpu {
+
+  private static final MethodHandle GETCPU =
+      link("getcpu", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS));
+
+  /**
+   * Linked only if getcpu is not, returns the CPU without writing to memory
+   */
+  private static final MethodHandle SCHED_GETCPU = GETCPU != null ? null :
+      link("sched_getcpu", FunctionDescriptor.of(JAVA_INT));
+
+  private static final ForeignGetCpu INSTANCE = new ForeignGetCpu();
+
+  private ForeignGetCpu() {
+  }
+
+  /**
+   * @return implementation or {@code null} if neither getcpu nor sched_getcpu can be linked
+   */
+  static ForeignGetCpu create() {
+    return GETCPU != null || SCHED_GETCPU != null ? INSTANCE : null;
+  }
+
+  private static MethodHandle link(String name, FunctionDescriptor descriptor) {
+    try {
+      var linker = Linker.nativeLinker();
+      return linker.defaultLookup().lookup(name)
+          .map(symbol -> linker.downcallHandle(symbol, descriptor))
+          .orElse(null);
+    } catch (RuntimeException | LinkageError e) {
+      return null;
+    }
+  }
+
+  @Override
+  public int getCpuId() {
+    return GETCPU != null ? getcpu() : schedGetcpu();
+  }
+
+  @Override
+  public int getNumaNodeId() {
+    return Topology.get().getNumaNodeId(getCpuId());
+  }
+
+  private static int getcpu() {
+    var slot = CarrierSlot.current();
+    var results = slot.getcpuResults;
+    if (results == null) {
+      results = new Results();
+      slot.getcpuResults = results;
+    }
+    int res;
+    try {
+      res = (int) GETCPU.invokeExact((Addressable) results.cpu, (Addressable) MemoryAddress.NULL,
+          (Addressable) MemoryAddress.NULL);
+    } catch (Throwable e) {
+      throw new IllegalStateException("Cannot call getcpu", e);
+    }
+    if (res < 0) {
+      throw new IllegalStateException("Cannot call getcpu");
+    }
+    return results.cpu.get(JAVA_INT, 0);
+  }
+
+  private static int schedGetcpu() {
+    int cpu;
+    try {
+      cpu = (int) SCHED_GETCPU.invokeExact();
+    } catch (Throwable e) {
+      throw new IllegalStateException("Cannot call sched_getcpu", e);
+    }
+    if (cpu < 0) {
+      throw new IllegalStateException("Cannot call sched_getcpu");
+    }
+    return cpu;
+  }
+
+  static final class Results {
+    final MemorySegment cpu;
+
+    Results() {
+      // freed when the carrier thread and its slot are gone
+      var session = MemorySession.openImplicit();
+      cpu = MemorySegment.allocateNative(JAVA_INT, session);
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package io.github.ricnorr.numa_locks;
+
+/**
+ * Way to find out the CPU and the NUMA node where the current thread is running
+ */
+public interface GetCpu {
+
+  /**
+   * Get id of CPU where current thread is running
+   *
+   * @return id of CPU
+   */
+  int getCpuId();
+
+  /**
+   * Returns id of NUMA node where current thread is running. Ids are dense ids of {@link Topology},
+   * in {@code [0, Topology.get().getNumaNodesCnt())}, not the possibly sparse ids of the kernel.
+   *
+   * @return numa id for thread
+   */
+  int getNumaNodeId();
+
+  /**
+   * getcpu syscall through JNA, every call allocates
+   *
+   * @return JNA implementation
+   */
+  static GetCpu jna() {
+    return new JnaGetCpu();
+  }
+
+  /**
+   * getcpu or sched_getcpu through the Foreign Function &amp; Memory API, calls do not allocate
+   *
+   * @return foreign implementation, JNA implementation if neither function can be linked
+   */
+  static GetCpu foreign() {
+    GetCpu getCpu = ForeignGetCpu.create();
+    return getCpu != null ? getCpu : jna();
+  }
+}
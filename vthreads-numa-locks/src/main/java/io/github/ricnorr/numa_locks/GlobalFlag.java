@@ -0,0 +1,50 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Global flag of a hierarchical lock with the fast path: the owner holds the flag, a thread on the fast path
+ * takes it by a single CAS, the head of the queue waits for it.
+ * <p>Only the head of the queue waits for the flag, it waits according to the spin policy of the lock
+ * and is unparked on release, like the leaders of {@link VNA}.
+ */
+final class GlobalFlag {
+
+  private final AtomicBoolean held = new AtomicBoolean(false);
+
+  /**
+   * Head of the queue waiting for the flag, {@code null} if none
+   */
+  private volatile Thread waiter;
+
+  /**
+   * @return whether the flag was free and is taken
+   */
+  boolean tryAcquire() {
+    return held.compareAndSet(false, true);
+  }
+
+  /**
+   * Waits for the flag as the head of the queue of the lock.
+   *
+   * @param lock lock waiting by its {@link AbstractNumaLock#waitStep(int)}
+   */
+  void acquire(AbstractNumaLock<?> lock) {
+    // published before the flag is read, release reads it after the flag is cleared
+    waiter = Thread.currentThread();
+    int spins = 0;
+    while (held.get() || !held.compareAndSet(false, true)) {
+      spins = lock.waitStep(spins);
+    }
+    waiter = null;
+  }
+
+  void release() {
+    held.set(false);
+    var waiter = this.waiter;
+    if (waiter != null) {
+      LockSupport.unpark(waiter);
+    }
+  }
+}
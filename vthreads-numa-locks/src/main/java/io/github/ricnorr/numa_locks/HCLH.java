@@ -2,16 +2,20 @@ package io.github.ricnorr.numa_locks;
 
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.AtomicReferenceArray;
-import java.util.function.Supplier;
+import java.util.function.IntSupplier;
 
 import jdk.internal.vm.annotation.Contended;
 
 public class HCLH extends AbstractNumaLock<HCLH.HCLHLockCore.HCLHNode> {
   private final HCLHLockCore lockCore;
 
-  public HCLH(Supplier<Integer> clusterIdSupplier) {
-    super(clusterIdSupplier);
-    this.lockCore = new HCLHLockCore();
+  /**
+   * @param clusterIdSupplier supplier of cluster id of the current thread
+   * @param clustersCnt       the number of clusters, ids are in {@code [0, clustersCnt)}
+   */
+  public HCLH(IntSupplier clusterIdSupplier, int clustersCnt) {
+    super(clusterIdSupplier, SpinPolicy.SPIN);
+    this.lockCore = new HCLHLockCore(clustersCnt);
   }
 
   @Override
@@ -29,12 +33,11 @@ public class HCLH extends AbstractNumaLock<HCLH.HCLHLockCore.HCLHNode> {
   }
 
   public static class HCLHLockCore {
-    static final int MAX_CLUSTERS = 35;
     final AtomicReferenceArray<HCLHNode> localQueues;
     final AtomicReference<HCLHNode> globalQueue;
 
-    public HCLHLockCore() {
-      localQueues = new AtomicReferenceArray<>(MAX_CLUSTERS);
+    public HCLHLockCore(int clustersCnt) {
+      localQueues = new AtomicReferenceArray<>(clustersCnt);
       HCLHNode head = new HCLHNode();
       globalQueue = new AtomicReference<>(head);
     }
@@ -0,0 +1,61 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.List;
+
+/**
+ * <p>HMCS lock with a queue per group of each given {@link TopologyLevel} and the global queue on top.
+ * <p>Waiter enqueues in the group of the finest level it runs on, the first waiter of a group enqueues in the
+ * group of the next level and so on. A group takes the lock up to {@link #DEFAULT_COHORT_LIMIT} times in a row before it goes up.
+ * <p>How to use:
+ * <pre> {@code
+ *   HMCS lock = new HMCS(List.of(TopologyLevel.CLUSTER, TopologyLevel.NUMA_NODE), false);
+ *   // ...
+ *   var unlockInfo = lock.lock();
+ *   try {
+ *     // ... method body
+ *   } finally {
+ *     lock.unlock(unlockInfo);
+ *   }
+ * }</pre>
+ */
+public class HMCS extends AbstractHMCS {
+
+  /**
+   * @param levels  levels of the hierarchy from the finest to the coarsest, not empty
+   * @param useFlag whether to try to take the global flag first, see {@link NumaLocks.Builder#fastPath(boolean)}
+   */
+  public HMCS(List<TopologyLevel> levels, boolean useFlag) {
+    this(levels, useFlag, SpinPolicy.PARK);
+  }
+
+  /**
+   * @param levels     levels of the hierarchy from the finest to the coarsest, not empty
+   * @param useFlag    whether to try to take the global flag first, see {@link NumaLocks.Builder#fastPath(boolean)}
+   * @param spinPolicy {@link SpinPolicy#PARK} or {@link SpinPolicy#SPIN}
+   */
+  public HMCS(List<TopologyLevel> levels, boolean useFlag, SpinPolicy spinPolicy) {
+    super(HMCSQNode::new, leaf(levels)::getCachedId, leaf(levels).count(), useFlag, spinPolicy);
+    for (int i = 1; i < levels.size(); i++) {
+      if (levels.get(i).compareTo(levels.get(i - 1)) <= 0) {
+        throw new IllegalArgumentException("Levels must go from the finest to the coarsest: " + levels);
+      }
+    }
+    HNode[] parents = {new HNode(null, new HMCSQNode())};
+    for (int i = levels.size() - 1; i >= 0; i--) {
+      var level = levels.get(i);
+      var nodes = i == 0 ? leafs : new HNode[level.count()];
+      for (int id = 0; id < nodes.length; id++) {
+        var parent = i == levels.size() - 1 ? parents[0] : parents[level.getParentId(id, levels.get(i + 1))];
+        nodes[id] = new HNode(parent, new HMCSQNode());
+      }
+      parents = nodes;
+    }
+  }
+
+  private static TopologyLevel leaf(List<TopologyLevel> levels) {
+    if (levels.isEmpty()) {
+      throw new IllegalArgumentException("No levels");
+    }
+    return levels.get(0);
+  }
+}
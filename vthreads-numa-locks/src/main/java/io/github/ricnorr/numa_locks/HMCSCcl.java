@@ -0,0 +1,10 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.List;
+
+public class HMCSCcl extends HMCS {
+
+  public HMCSCcl(boolean useFlag) {
+    super(List.of(TopologyLevel.CLUSTER), useFlag);
+  }
+}
@@ -0,0 +1,10 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.List;
+
+public class HMCSCclNuma extends HMCS {
+
+  public HMCSCclNuma(boolean useFlag) {
+    super(List.of(TopologyLevel.CLUSTER, TopologyLevel.NUMA_NODE), useFlag);
+  }
+}
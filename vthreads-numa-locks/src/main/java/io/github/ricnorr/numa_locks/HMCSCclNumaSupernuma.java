@@ -0,0 +1,14 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.List;
+
+/**
+ * Взять лок на CCL, затем на нума ноде, затем на супер-нума ноде (сокете), затем глобальный
+ * На 48 корной машинке нет смысла считать, только на 96 и 128
+ */
+public class HMCSCclNumaSupernuma extends HMCS {
+
+  public HMCSCclNumaSupernuma(boolean useFlag) {
+    super(List.of(TopologyLevel.CLUSTER, TopologyLevel.NUMA_NODE, TopologyLevel.PACKAGE), useFlag);
+  }
+}
@@ -0,0 +1,11 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.List;
+
+public class HMCSNuma extends HMCS {
+
+
+  public HMCSNuma(boolean useFlag) {
+    super(List.of(TopologyLevel.NUMA_NODE), useFlag);
+  }
+}
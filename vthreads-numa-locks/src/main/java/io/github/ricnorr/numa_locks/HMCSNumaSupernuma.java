@@ -0,0 +1,11 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.List;
+
+public class HMCSNumaSupernuma extends HMCS {
+
+
+  public HMCSNumaSupernuma(boolean useFlag) {
+    super(List.of(TopologyLevel.NUMA_NODE, TopologyLevel.PACKAGE), useFlag);
+  }
+}
@@ -19,6 +19,12 @@ class HMCSQNode {
   @Contended("gr2")
   public volatile Thread thread = null;
 
+  /**
+   * Statistics of the acquisition, set only if statistics of the lock or contention events are enabled
+   */
+  int ticket;
+  int queueDepth;
+
   public void setNextAtomically(HMCSQNode hmcsQNode) {
     next = hmcsQNode;
   }
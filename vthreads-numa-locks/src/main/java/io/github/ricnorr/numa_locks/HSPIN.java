@@ -4,21 +4,27 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-public class HSPIN implements VthreadNumaLock<HSPIN.HSPINInfo> {
+public class HSPIN implements TryNumaLock<HSPIN.HSPINInfo> {
     private List<AtomicBoolean> numaSpinLocks = new ArrayList<>();
 
     private final AtomicBoolean globalLock = new AtomicBoolean(false);
     private final boolean useFastPath;
 
-
-    ThreadLocal<Integer> numaNodeThreadLocal = ThreadLocal.withInitial(LockUtils::getNumaNodeId);
-
-    ThreadLocal<Integer> lockAcquiresThreadLocal = ThreadLocal.withInitial(() -> 0);
+    private final TopologyLevel level;
 
 
     public HSPIN(boolean useFastPath) {
+        this(TopologyLevel.NUMA_NODE, useFastPath);
+    }
+
+    /**
+     * @param level       level of the local spin locks
+     * @param useFastPath whether to try to take the global spin lock first
+     */
+    public HSPIN(TopologyLevel level, boolean useFastPath) {
+        this.level = level;
         this.numaSpinLocks = new ArrayList<>();
-        for (int i = 0; i < 4; i++) {
+        for (int i = 0; i < level.count(); i++) {
             numaSpinLocks.add(new AtomicBoolean(false));
         }
         this.useFastPath = useFastPath;
@@ -33,16 +39,7 @@ public class HSPIN implements VthreadNumaLock<HSPIN.HSPINInfo> {
 
     @Override
     public HSPINInfo lock() {
-        var numaId = LockUtils.getByThreadFromThreadLocal(numaNodeThreadLocal, LockUtils.getCurrentCarrierThread());
-        var lockAcquires =
-                LockUtils.getByThreadFromThreadLocal(lockAcquiresThreadLocal, LockUtils.getCurrentCarrierThread());
-        lockAcquires++;
-        if (lockAcquires >= 10_000) {
-            lockAcquires = 1;
-            LockUtils.setByThreadToThreadLocal(numaNodeThreadLocal, LockUtils.getCurrentCarrierThread(),
-                    LockUtils.getNumaNodeId());
-        }
-        LockUtils.setByThreadToThreadLocal(lockAcquiresThreadLocal, LockUtils.getCurrentCarrierThread(), lockAcquires);
+        var numaId = level.getCachedId();
         if (useFastPath) {
             if (globalLock.compareAndSet(false, true)) {
                 return new HSPINInfo(numaId, true);
@@ -67,6 +64,14 @@ public class HSPIN implements VthreadNumaLock<HSPIN.HSPINInfo> {
         return new HSPINInfo(numaId, false);
     }
 
+    @Override
+    public HSPINInfo tryLock() {
+        if (globalLock.compareAndSet(false, true)) {
+            return new HSPINInfo(level.getCachedId(), true);
+        }
+        return null;
+    }
+
     @Override
     public void unlock(HSPINInfo unlockInfo) {
         if (!unlockInfo.fastPath) {
@@ -0,0 +1,38 @@
+package io.github.ricnorr.numa_locks;
+
+import com.sun.jna.Platform;
+import com.sun.jna.ptr.IntByReference;
+
+/**
+ * getcpu syscall through JNA, NUMA node is the dense id of {@link Topology} for the CPU
+ */
+final class JnaGetCpu implements GetCpu {
+
+  private final static int GET_CPU_ARM_SYSCALL = 168;
+  private final static int GET_CPU_x86_SYSCALL = 309;
+
+  @Override
+  public int getCpuId() {
+    final IntByReference numaNode = new IntByReference();
+    final IntByReference cpu = new IntByReference();
+    getcpu(cpu, numaNode);
+    return cpu.getValue();
+  }
+
+  @Override
+  public int getNumaNodeId() {
+    return Topology.get().getNumaNodeId(getCpuId());
+  }
+
+  private static void getcpu(IntByReference cpu, IntByReference numaNode) {
+    int res;
+    if (Platform.isARM()) {
+      res = CLibrary.INSTANCE.syscall(GET_CPU_ARM_SYSCALL, cpu, numaNode, null);
+    } else {
+      res = CLibrary.INSTANCE.syscall(GET_CPU_x86_SYSCALL, cpu, numaNode, null);
+    }
+    if (res < 0) {
+      throw new IllegalStateException("Cannot make syscall getcpu");
+    }
+  }
+}
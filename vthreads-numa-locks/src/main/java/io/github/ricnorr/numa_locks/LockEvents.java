@@ -0,0 +1,169 @@
+package io.github.ricnorr.numa_locks;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * <p>Java Flight Recorder events of the locks, so lock convoys can be seen next to GC and scheduler events
+ * of the same recording.
+ * <p>Events are created only after the fast path failed, an uncontended acquisition does not touch them, and only
+ * while they are enabled in a recording, so contended acquisitions do not allocate them without JFR.
+ * Events are committed only if they last longer than the threshold, {@code 1 ms} by default. The threshold
+ * is set in the recording settings, e.g.
+ * {@code -XX:StartFlightRecording:+io.github.ricnorr.numa_locks.ContendedAcquisition#threshold=100us}
+ * or in a custom {@code .jfc} file.
+ */
+final class LockEvents {
+
+  static final String CATEGORY = "NUMA Locks";
+
+  private static final EventType CONTENDED_ACQUISITION = EventType.getEventType(ContendedAcquisition.class);
+  private static final EventType CROSS_NODE_HANDOFF = EventType.getEventType(CrossNodeHandoff.class);
+  private static final EventType GLOBAL_SPIN = EventType.getEventType(GlobalSpin.class);
+
+  private LockEvents() {
+  }
+
+  /**
+   * Whether waiters should track their queue position for {@link ContendedAcquisition}. The settings may change
+   * while threads wait, then the position of these threads is not reliable.
+   */
+  static boolean isContendedAcquisitionEnabled() {
+    return CONTENDED_ACQUISITION.isEnabled();
+  }
+
+  /**
+   * @return started event, {@code null} if it is disabled
+   */
+  static ContendedAcquisition beginContendedAcquisition() {
+    if (!CONTENDED_ACQUISITION.isEnabled()) {
+      return null;
+    }
+    var event = new ContendedAcquisition();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * @return started event, {@code null} if it is disabled
+   */
+  static CrossNodeHandoff beginCrossNodeHandoff() {
+    if (!CROSS_NODE_HANDOFF.isEnabled()) {
+      return null;
+    }
+    var event = new CrossNodeHandoff();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * @return started event, {@code null} if it is disabled
+   */
+  static GlobalSpin beginGlobalSpin() {
+    if (!GLOBAL_SPIN.isEnabled()) {
+      return null;
+    }
+    var event = new GlobalSpin();
+    event.begin();
+    return event;
+  }
+
+  @Name("io.github.ricnorr.numa_locks.ContendedAcquisition")
+  @Label("Contended Lock Acquisition")
+  @Description("Acquisition of a NUMA lock which failed the fast path, from the failure to getting the lock")
+  @Category(CATEGORY)
+  @Threshold("1 ms")
+  static final class ContendedAcquisition extends Event {
+
+    @Label("Lock Class")
+    Class<?> lockClass;
+
+    @Label("Node Id")
+    @Description("NUMA node or cluster of the local queue")
+    int nodeId;
+
+    @Label("Queue Position")
+    @Description("Waiters and the owner ahead in the local queue at enqueue, approximate")
+    int queuePosition;
+
+    /**
+     * Ends and commits the event if it lasted longer than the threshold.
+     */
+    void finish(Object lock, int nodeId, int queuePosition) {
+      end();
+      if (shouldCommit()) {
+        this.lockClass = lock.getClass();
+        this.nodeId = nodeId;
+        this.queuePosition = queuePosition;
+        commit();
+      }
+    }
+  }
+
+  @Name("io.github.ricnorr.numa_locks.CrossNodeHandoff")
+  @Label("Cross-Node Lock Handoff")
+  @Description("Leader of a local queue got the lock passed from the owner on another NUMA node, "
+      + "from the start of waiting for the global flag to the handoff")
+  @Category(CATEGORY)
+  @Threshold("1 ms")
+  static final class CrossNodeHandoff extends Event {
+
+    @Label("Lock Class")
+    Class<?> lockClass;
+
+    @Label("From Node Id")
+    int fromNodeId;
+
+    @Label("To Node Id")
+    int toNodeId;
+
+    @Label("Parked")
+    @Description("Whether the leader parked before the handoff")
+    boolean parked;
+
+    void finish(Object lock, int fromNodeId, int toNodeId, boolean parked) {
+      end();
+      if (shouldCommit()) {
+        this.lockClass = lock.getClass();
+        this.fromNodeId = fromNodeId;
+        this.toNodeId = toNodeId;
+        this.parked = parked;
+        commit();
+      }
+    }
+  }
+
+  @Name("io.github.ricnorr.numa_locks.GlobalSpin")
+  @Label("Global Lock Spin")
+  @Description("Leader of a local queue waited for the global flag and took it or got it from the owner "
+      + "on the same NUMA node")
+  @Category(CATEGORY)
+  @Threshold("1 ms")
+  static final class GlobalSpin extends Event {
+
+    @Label("Lock Class")
+    Class<?> lockClass;
+
+    @Label("Node Id")
+    int nodeId;
+
+    @Label("Parked")
+    @Description("Whether the leader gave up spinning and parked")
+    boolean parked;
+
+    void finish(Object lock, int nodeId, boolean parked) {
+      end();
+      if (shouldCommit()) {
+        this.lockClass = lock.getClass();
+        this.nodeId = nodeId;
+        this.parked = parked;
+        commit();
+      }
+    }
+  }
+}
@@ -0,0 +1,207 @@
+package io.github.ricnorr.numa_locks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * <p>Contention statistics of a lock: fast path and queued acquisitions, local and remote handoffs,
+ * migrations of owners, queue depth at enqueue and wait time histograms.
+ * <p>Counters are striped by carrier thread, see {@link CarrierSlot}. Every carrier adds to its own cells,
+ * padded from the cells of other carriers, so recording does not make the lock line contended.
+ * Carriers may share cells if there are more carriers than stripes, adds are atomic for that.
+ * <p>{@link #snapshot()} sums the stripes without stopping the lock, so counters of one snapshot
+ * may be a few acquisitions apart.
+ *
+ * @see ObservableNumaLock
+ */
+public final class LockStats {
+
+  /**
+   * Bucket {@code 0} counts zero values, bucket {@code i} values in {@code [2^(i-1), 2^i)}, the last bucket
+   * the rest
+   */
+  public static final int QUEUE_DEPTH_BUCKETS = 16;
+
+  /**
+   * Buckets of wait time in nanoseconds, like {@link #QUEUE_DEPTH_BUCKETS}
+   */
+  public static final int WAIT_NANOS_BUCKETS = 40;
+
+  private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(long[].class);
+
+  private static final int FAST_PATH = 0;
+  private static final int QUEUED = 1;
+  private static final int LOCAL_HANDOFFS = 2;
+  private static final int REMOTE_HANDOFFS = 3;
+  private static final int WAIT_NANOS = 4;
+  private static final int MIGRATIONS = 5;
+  private static final int QUEUE_DEPTHS = 6;
+  private static final int WAITS = QUEUE_DEPTHS + QUEUE_DEPTH_BUCKETS;
+
+  /**
+   * 128 bytes between cells of different stripes, two cache lines for adjacent line prefetch
+   */
+  private static final int PADDING = 16;
+
+  private static final int STRIDE = WAITS + WAIT_NANOS_BUCKETS + PADDING;
+
+  private final long[] cells;
+
+  private final int mask;
+
+  public LockStats() {
+    int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+    this.mask = stripes - 1;
+    this.cells = new long[PADDING + stripes * STRIDE];
+  }
+
+  private int base() {
+    return PADDING + (CarrierSlot.current().stripe & mask) * STRIDE;
+  }
+
+  private void add(int index, long value) {
+    CELLS.getAndAdd(cells, index, value);
+  }
+
+  /**
+   * Records acquisition by the fast path, without waiting.
+   */
+  void recordFastPath() {
+    add(base() + FAST_PATH, 1L);
+  }
+
+  /**
+   * Records acquisition through a queue.
+   *
+   * @param queueDepth waiters and the owner ahead in the queue at enqueue
+   * @param waitNanos  time from enqueue to acquisition
+   */
+  void recordQueued(int queueDepth, long waitNanos) {
+    int base = base();
+    add(base + QUEUED, 1L);
+    add(base + WAIT_NANOS, waitNanos);
+    add(base + QUEUE_DEPTHS + bucket(queueDepth, QUEUE_DEPTH_BUCKETS), 1L);
+    add(base + WAITS + bucket(waitNanos, WAIT_NANOS_BUCKETS), 1L);
+  }
+
+  /**
+   * Records the lock passed directly to a waiter.
+   *
+   * @param local whether the waiter is in the same group as the owner, e.g. the same NUMA node
+   */
+  void recordHandoff(boolean local) {
+    add(base() + (local ? LOCAL_HANDOFFS : REMOTE_HANDOFFS), 1L);
+  }
+
+  /**
+   * Records the owner released the lock on another NUMA node than it acquired the lock on.
+   */
+  void recordMigration() {
+    add(base() + MIGRATIONS, 1L);
+  }
+
+  static int bucket(long value, int buckets) {
+    return Math.min(64 - Long.numberOfLeadingZeros(Math.max(value, 0L)), buckets - 1);
+  }
+
+  /**
+   * @return sums of the counters of all stripes
+   */
+  public Snapshot snapshot() {
+    long[] sums = new long[WAITS + WAIT_NANOS_BUCKETS];
+    for (int base = PADDING; base < cells.length; base += STRIDE) {
+      for (int i = 0; i < sums.length; i++) {
+        sums[i] += (long) CELLS.getOpaque(cells, base + i);
+      }
+    }
+    long[] queueDepths = new long[QUEUE_DEPTH_BUCKETS];
+    System.arraycopy(sums, QUEUE_DEPTHS, queueDepths, 0, QUEUE_DEPTH_BUCKETS);
+    long[] waits = new long[WAIT_NANOS_BUCKETS];
+    System.arraycopy(sums, WAITS, waits, 0, WAIT_NANOS_BUCKETS);
+    return new Snapshot(sums[FAST_PATH], sums[QUEUED], sums[LOCAL_HANDOFFS], sums[REMOTE_HANDOFFS],
+        sums[WAIT_NANOS], sums[MIGRATIONS], queueDepths, waits);
+  }
+
+  /**
+   * Zeroes the counters. Acquisitions recorded concurrently may be lost or counted partially.
+   */
+  public void reset() {
+    for (int i = 0; i < cells.length; i++) {
+      CELLS.setOpaque(cells, i, 0L);
+    }
+  }
+
+  /**
+   * @param fastPathAcquisitions acquisitions without waiting
+   * @param queuedAcquisitions   acquisitions through a queue
+   * @param localHandoffs        the lock passed to a waiter of the same group, e.g. NUMA node or cluster
+   * @param remoteHandoffs       the lock passed to another group or released to the upper level of the hierarchy
+   * @param totalWaitNanos       wait time of queued acquisitions
+   * @param migrations           releases on another NUMA node than the acquisition, e.g. after a yield
+   * @param queueDepthHistogram  queue depth at enqueue, see {@link #QUEUE_DEPTH_BUCKETS}
+   * @param waitNanosHistogram   wait time of queued acquisitions, see {@link #WAIT_NANOS_BUCKETS}
+   */
+  public record Snapshot(
+      long fastPathAcquisitions,
+      long queuedAcquisitions,
+      long localHandoffs,
+      long remoteHandoffs,
+      long totalWaitNanos,
+      long migrations,
+      long[] queueDepthHistogram,
+      long[] waitNanosHistogram
+  ) {
+
+    public long acquisitions() {
+      return fastPathAcquisitions + queuedAcquisitions;
+    }
+
+    /**
+     * @return share of acquisitions by the fast path, {@code 0} if there were no acquisitions
+     */
+    public double fastPathRatio() {
+      long acquisitions = acquisitions();
+      return acquisitions == 0 ? 0 : (double) fastPathAcquisitions / acquisitions;
+    }
+
+    /**
+     * @return share of local handoffs, {@code 0} if there were no handoffs
+     */
+    public double localHandoffRatio() {
+      long handoffs = localHandoffs + remoteHandoffs;
+      return handoffs == 0 ? 0 : (double) localHandoffs / handoffs;
+    }
+
+    /**
+     * @return average wait time of queued acquisitions
+     */
+    public double averageWaitNanos() {
+      return queuedAcquisitions == 0 ? 0 : (double) totalWaitNanos / queuedAcquisitions;
+    }
+
+    /**
+     * @param earlier snapshot of the same statistics taken before this one, not across {@link #reset()}
+     * @return counters recorded between the snapshots
+     */
+    public Snapshot since(Snapshot earlier) {
+      return new Snapshot(
+          fastPathAcquisitions - earlier.fastPathAcquisitions,
+          queuedAcquisitions - earlier.queuedAcquisitions,
+          localHandoffs - earlier.localHandoffs,
+          remoteHandoffs - earlier.remoteHandoffs,
+          totalWaitNanos - earlier.totalWaitNanos,
+          migrations - earlier.migrations,
+          minus(queueDepthHistogram, earlier.queueDepthHistogram),
+          minus(waitNanosHistogram, earlier.waitNanosHistogram)
+      );
+    }
+
+    private static long[] minus(long[] histogram, long[] earlier) {
+      long[] result = new long[histogram.length];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = histogram[i] - earlier[i];
+      }
+      return result;
+    }
+  }
+}
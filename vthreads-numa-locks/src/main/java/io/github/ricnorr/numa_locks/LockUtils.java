@@ -3,12 +3,6 @@ package io.github.ricnorr.numa_locks;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
-import java.util.stream.Collectors;
-
-import com.sun.jna.Platform;
-import com.sun.jna.ptr.IntByReference;
-import oshi.SystemInfo;
-import oshi.hardware.CentralProcessor;
 
 /**
  * Utilities for implementing locks
@@ -22,22 +16,35 @@ public class LockUtils {
   private static final MethodHandle GET_BY_THREAD_FROM_THREAD_LOCAL_METHOD_HANDLE;
 
   private static final MethodHandle SET_BY_THREAD_TO_THREAD_LOCAL_METHOD_HANDLE;
-  private final static int GET_CPU_ARM_SYSCALL = 168;
-  private final static int GET_CPU_x86_SYSCALL = 309;
 
-  private static final int CCL_SIZE = 4;
+  /**
+   * getcpu through the Foreign Function &amp; Memory API, JNA if it can't be linked
+   */
+  private static final GetCpu GET_CPU = GetCpu.foreign();
+
   /**
    * The number of NUMA nodes available in the system
    */
-  public static int NUMA_NODES_CNT = getNumaNodesCnt();
+  public static int NUMA_NODES_CNT = Topology.get().getNumaNodesCnt();
+
+  /**
+   * The number of clusters in the system, see {@link Topology}
+   */
+  public static int CLUSTERS_CNT = Topology.get().getClustersCnt();
+
+  /**
+   * The number of packages (sockets) in the system
+   */
+  public static int PACKAGES_CNT = Topology.get().getPackagesCnt();
 
   /**
    * <p>The number of CCL groups in the system (for Kunpeng-920)
    *
    * @see <a href="https://jianbinfang.github.io/files/2021-09-02-jcst.pdf">CCL</a>
+   * @deprecated CCL is the cluster of Kunpeng-920, use {@link #CLUSTERS_CNT}
    */
-  public static int CCL_CNT = Runtime.getRuntime().availableProcessors() / CCL_SIZE;
-  private static int CCL_PER_NUMA = CCL_CNT / NUMA_NODES_CNT;
+  @Deprecated
+  public static int CCL_CNT = CLUSTERS_CNT;
 
   static {
     GET_CARRIER_THREAD_METHOD_HANDLE = getMethodHandle(Thread.class, "currentCarrierThread");
@@ -45,12 +52,6 @@ public class LockUtils {
     SET_BY_THREAD_TO_THREAD_LOCAL_METHOD_HANDLE = getMethodHandle(ThreadLocal.class, "set", Thread.class, Object.class);
   }
 
-  private static int getNumaNodesCnt() {
-    return new SystemInfo().getHardware().getProcessor().getLogicalProcessors()
-        .stream().map(CentralProcessor.LogicalProcessor::getNumaNode)
-        .collect(Collectors.toSet()).size();
-  }
-
   private static MethodHandle getMethodHandle(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
     Method method;
     MethodHandles.Lookup lookup = MethodHandles.lookup();
@@ -71,21 +72,10 @@ public class LockUtils {
    * Returns id of NUMA node where current thread is running
    * Supports virtual and platform threads
    *
-   * @return numa id for thread
+   * @return numa id for thread, dense id of {@link Topology}
    */
   public static int getNumaNodeId() {
-    int res;
-    final IntByReference numaNode = new IntByReference();
-    final IntByReference cpu = new IntByReference();
-    if (Platform.isARM()) {
-      res = CLibrary.INSTANCE.syscall(GET_CPU_ARM_SYSCALL, cpu, numaNode, null);
-    } else {
-      res = CLibrary.INSTANCE.syscall(GET_CPU_x86_SYSCALL, cpu, numaNode, null);
-    }
-    if (res < 0) {
-      throw new IllegalStateException("Cannot make syscall getcpu");
-    }
-    return numaNode.getValue();
+    return Topology.get().getNumaNodeId(GET_CPU.getCpuId());
   }
 
   /**
@@ -95,28 +85,55 @@ public class LockUtils {
    * @return id of CPU
    */
   public static int getCpuId() {
-    int res;
-    final IntByReference numaNode = new IntByReference();
-    final IntByReference cpu = new IntByReference();
-    if (Platform.isARM()) {
-      res = CLibrary.INSTANCE.syscall(GET_CPU_ARM_SYSCALL, cpu, numaNode, null);
-    } else {
-      res = CLibrary.INSTANCE.syscall(GET_CPU_x86_SYSCALL, cpu, numaNode, null);
-    }
-    if (res < 0) {
-      throw new IllegalStateException("Cannot make syscall getcpu");
-    }
-    return cpu.getValue();
+    return GET_CPU.getCpuId();
+  }
+
+  /**
+   * Returns id of cluster where current thread is running, see {@link Topology}
+   *
+   * @return cluster id for thread
+   */
+  public static int getClusterId() {
+    return Topology.get().getClusterId(GET_CPU.getCpuId());
   }
 
   /**
    * Special function for Kunpeng-920
    *
    * @return CCL id of the thread (special for Kunpeng-920)
+   * @deprecated CCL is the cluster of Kunpeng-920, use {@link #getClusterId()}
    */
+  @Deprecated
   public static int getKunpengCCLId() {
-    int cpuId = getCpuId();
-    return cpuId / CCL_SIZE;
+    return getClusterId();
+  }
+
+  /**
+   * Returns id of NUMA node of the carrier thread, cached for the carrier and refreshed from time to time.
+   * Much cheaper than {@link #getNumaNodeId()}, but may be stale if OS moved the carrier to another node.
+   *
+   * @return cached numa id for thread
+   */
+  public static int getCachedNumaNodeId() {
+    return CarrierSlot.current().getNumaId();
+  }
+
+  /**
+   * Cached version of {@link #getClusterId()}
+   *
+   * @return cached cluster id for thread
+   */
+  public static int getCachedClusterId() {
+    return CarrierSlot.current().getClusterId();
+  }
+
+  /**
+   * Returns id of package (socket) of the carrier thread, cached like {@link #getCachedNumaNodeId()}
+   *
+   * @return cached package id for thread
+   */
+  public static int getCachedPackageId() {
+    return CarrierSlot.current().getPackageId();
   }
 
   /**
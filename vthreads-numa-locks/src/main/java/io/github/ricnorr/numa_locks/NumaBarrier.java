@@ -0,0 +1,217 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import jdk.internal.vm.annotation.Contended;
+
+/**
+ * <p>Reusable barrier for a fixed number of parties with arrivals combined by a tree shaped like {@link Topology}.
+ * <p>Leaves of the tree are clusters, their parents are NUMA nodes and the root is global. Arrival adds to the counter
+ * of the cluster of the thread. The arrival which finds the counter empty takes all arrivals accumulated
+ * in it and adds them to the parent the same way, so the counters of NUMA nodes and the root see a few combined adds
+ * instead of an add per party. The arrival which completes the root starts the next phase and releases it down
+ * the tree: it writes the phase to every node and unparks the waiters of every leaf. Waiters spin and park
+ * on the leaf of their cluster only.
+ * <p>Methods follow {@link java.util.concurrent.Phaser}, without registration and termination. Every party arrives
+ * once per phase.
+ * <p>How to use:
+ * <pre> {@code
+ *   var start = new NumaBarrier(threads);
+ *   // in every thread
+ *   start.arriveAndAwaitAdvance();
+ * }</pre>
+ */
+public class NumaBarrier {
+
+  private static final int SPINS_BEFORE_PARK = 1024;
+
+  private final int parties;
+
+  private final TreeNode root;
+
+  /**
+   * Tree nodes of clusters
+   */
+  private final TreeNode[] leaves;
+
+  /**
+   * Tree nodes from the root down to the leaves, the order of release
+   */
+  private final TreeNode[] releaseOrder;
+
+  /**
+   * Creates barrier.
+   *
+   * @param parties number of arrivals completing a phase
+   */
+  public NumaBarrier(int parties) {
+    this(parties, Topology.get());
+  }
+
+  /**
+   * @param topology topology the tree is shaped like, {@link #getClusterId()} must return its cluster ids
+   */
+  NumaBarrier(int parties, Topology topology) {
+    if (parties <= 0) {
+      throw new IllegalArgumentException("Number of parties must be positive: " + parties);
+    }
+    this.parties = parties;
+    this.root = new TreeNode(null);
+    int nodesCnt = topology.getNumaNodesCnt();
+    int clustersCnt = topology.getClustersCnt();
+    // NUMA node level is skipped if every node is a single cluster
+    boolean nodeLevel = nodesCnt > 1 && clustersCnt > nodesCnt;
+    var numaNodes = new TreeNode[nodeLevel ? nodesCnt : 0];
+    for (int i = 0; i < numaNodes.length; i++) {
+      numaNodes[i] = new TreeNode(root);
+    }
+    this.leaves = new TreeNode[clustersCnt];
+    for (int i = 0; i < clustersCnt; i++) {
+      leaves[i] = new TreeNode(nodeLevel ? numaNodes[topology.getNumaNodeOfCluster(i)] : root);
+    }
+    this.releaseOrder = new TreeNode[1 + numaNodes.length + leaves.length];
+    releaseOrder[0] = root;
+    System.arraycopy(numaNodes, 0, releaseOrder, 1, numaNodes.length);
+    System.arraycopy(leaves, 0, releaseOrder, 1 + numaNodes.length, leaves.length);
+  }
+
+  /**
+   * @return number of arrivals completing a phase
+   */
+  public int getParties() {
+    return parties;
+  }
+
+  /**
+   * @return current phase, starting from {@code 0}
+   */
+  public int getPhase() {
+    return root.phase;
+  }
+
+  /**
+   * Arrives without waiting for others.
+   *
+   * @return arrival phase
+   */
+  public int arrive() {
+    int phase = root.phase;
+    combine(leaf(), 1);
+    return phase;
+  }
+
+  /**
+   * Arrives and waits until all parties arrive. Interrupt does not stop waiting.
+   *
+   * @return arrival phase
+   */
+  public int arriveAndAwaitAdvance() {
+    var leaf = leaf();
+    int phase = root.phase;
+    combine(leaf, 1);
+    awaitAdvance(leaf, phase);
+    return phase;
+  }
+
+  /**
+   * Waits until the phase is completed, returns immediately if it is already.
+   *
+   * @param phase phase to wait for, e.g. returned by {@link #arrive()}
+   * @return next phase
+   */
+  public int awaitAdvance(int phase) {
+    awaitAdvance(leaf(), phase);
+    return phase + 1;
+  }
+
+  private TreeNode leaf() {
+    return leaves[getClusterId()];
+  }
+
+  int getClusterId() {
+    return TopologyLevel.CLUSTER.getCachedId();
+  }
+
+  private void combine(TreeNode node, int arrivals) {
+    while (node != root) {
+      if (node.pending.getAndAdd(arrivals) != 0) {
+        // the arrivals are taken by the thread which found the counter empty
+        return;
+      }
+      arrivals = node.pending.getAndSet(0);
+      node = node.parent;
+    }
+    if (root.pending.addAndGet(arrivals) == parties) {
+      root.pending.addAndGet(-parties);
+      release(root.phase + 1);
+    }
+  }
+
+  private void release(int phase) {
+    for (TreeNode node : releaseOrder) {
+      node.phase = phase;
+      for (var waiter = node.waiters.getAndSet(null); waiter != null; waiter = waiter.next) {
+        LockSupport.unpark(waiter.thread);
+      }
+    }
+  }
+
+  private void awaitAdvance(TreeNode leaf, int phase) {
+    int spins = 0;
+    // phase of the leaf may lag behind the root, wrap-safe comparison
+    while (leaf.phase - phase <= 0) {
+      if (++spins < SPINS_BEFORE_PARK) {
+        Thread.onSpinWait();
+        continue;
+      }
+      var waiter = new Waiter(Thread.currentThread());
+      do {
+        waiter.next = leaf.waiters.get();
+      } while (!leaf.waiters.compareAndSet(waiter.next, waiter));
+      // release writes the phase before it takes the waiters
+      if (leaf.phase - phase <= 0) {
+        LockSupport.park(this);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "[phase = " + getPhase() + " parties = " + parties + "]";
+  }
+
+  @Contended
+  private static final class TreeNode {
+
+    final TreeNode parent;
+
+    /**
+     * Arrivals not passed to the parent yet, arrivals of the phase for the root
+     */
+    final AtomicInteger pending = new AtomicInteger();
+
+    volatile int phase;
+
+    /**
+     * Parked threads, leaves only
+     */
+    final AtomicReference<Waiter> waiters = new AtomicReference<>();
+
+    TreeNode(TreeNode parent) {
+      this.parent = parent;
+    }
+  }
+
+  private static final class Waiter {
+
+    final Thread thread;
+
+    Waiter next;
+
+    Waiter(Thread thread) {
+      this.thread = thread;
+    }
+  }
+}
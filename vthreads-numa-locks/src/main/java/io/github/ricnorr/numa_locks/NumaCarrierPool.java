@@ -0,0 +1,374 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Pool of carrier threads for virtual threads with stealing ordered by topology.
+ * <p>Carriers are assigned to clusters of {@link Topology} and pinned to the CPUs of their cluster. Every carrier has
+ * its own queue. Task submitted by a carrier of the target node goes to the queue of that carrier, otherwise
+ * to the queues of the node's carriers in round-robin order.
+ * <p>Idle carrier steals from carriers of its cluster first, then from carriers of its NUMA node. Carriers of
+ * other nodes are robbed only after the carrier has been idle for the remote steal delay, so a short gap of work
+ * does not move a virtual thread, its queue nodes of locks and the data of its critical sections to another node.
+ * Remote nodes of the same package are robbed before the others.
+ * <p>Idle carriers park for short periods, a carrier of the node is unparked when work is submitted to the node.
+ * Carriers idle for the remote steal delay park for the delay, but not shorter than the short period, and
+ * one of them is unparked when work is submitted to a node without idle carriers.
+ * <p>How to use:
+ * <pre> {@code
+ *   var pool = new NumaCarrierPool(0, 1, TimeUnit.MILLISECONDS);
+ *   try (var scheduler = new NumaScheduler(pool)) {
+ *     scheduler.factory().newThread(task).start();
+ *     // ...
+ *   }
+ *   System.out.println(pool.getRemoteStealsCnt());
+ * }</pre>
+ */
+public final class NumaCarrierPool implements AutoCloseable {
+
+  /**
+   * Default idle time before stealing from other NUMA nodes
+   */
+  public static final long DEFAULT_REMOTE_STEAL_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  /**
+   * Idle carrier wakes up at least this often to steal from other carriers of the node
+   */
+  private static final long MAX_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private final Carrier[] carriers;
+
+  /**
+   * Carriers of every NUMA node
+   */
+  private final Carrier[][] nodeCarriers;
+
+  private final AtomicInteger[] nextCarrier;
+
+  private final long remoteStealDelayNanos;
+
+  private volatile boolean shutdown;
+
+  /**
+   * Creates pool with a carrier per CPU and the default remote steal delay.
+   */
+  public NumaCarrierPool() {
+    this(0, DEFAULT_REMOTE_STEAL_DELAY_NANOS, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Creates pool.
+   *
+   * @param carriersPerNode  carriers of every NUMA node, spread over its clusters, {@code 0} for a carrier per CPU
+   * @param remoteStealDelay idle time before stealing from other NUMA nodes, {@link Long#MAX_VALUE}
+   *                         to never steal from them
+   * @param unit             unit of {@code remoteStealDelay}
+   */
+  public NumaCarrierPool(int carriersPerNode, long remoteStealDelay, TimeUnit unit) {
+    if (carriersPerNode < 0) {
+      throw new IllegalArgumentException("Negative number of carriers: " + carriersPerNode);
+    }
+    if (remoteStealDelay < 0) {
+      throw new IllegalArgumentException("Negative remote steal delay: " + remoteStealDelay);
+    }
+    this.remoteStealDelayNanos = unit.toNanos(remoteStealDelay);
+    var topology = Topology.get();
+    int nodesCnt = topology.getNumaNodesCnt();
+    this.nodeCarriers = new Carrier[nodesCnt][];
+    this.nextCarrier = new AtomicInteger[nodesCnt];
+    List<Carrier> all = new ArrayList<>();
+    for (int node = 0; node < nodesCnt; node++) {
+      List<int[]> clusters = clustersOfNode(topology, node);
+      int cpusCnt = clusters.stream().mapToInt(cpus -> cpus.length).sum();
+      int carriersCnt = carriersPerNode == 0 ? Math.max(1, cpusCnt) : carriersPerNode;
+      nodeCarriers[node] = new Carrier[carriersCnt];
+      nextCarrier[node] = new AtomicInteger();
+      for (int i = 0; i < carriersCnt; i++) {
+        int[] cpus = clusters.isEmpty() ? new int[0] : clusters.get(i % clusters.size());
+        int clusterId = cpus.length == 0 ? -1 : topology.getClusterId(cpus[0]);
+        var carrier = new Carrier(this, node, clusterId, cpus);
+        carrier.setName("numa-carrier-" + node + "-" + i);
+        nodeCarriers[node][i] = carrier;
+        all.add(carrier);
+      }
+    }
+    this.carriers = all.toArray(new Carrier[0]);
+    for (Carrier carrier : carriers) {
+      carrier.victims = victimsOf(carrier, topology);
+    }
+    for (Carrier carrier : carriers) {
+      carrier.start();
+    }
+  }
+
+  private static List<int[]> clustersOfNode(Topology topology, int node) {
+    List<int[]> clusters = new ArrayList<>();
+    for (int cluster = 0; cluster < topology.getClustersCnt(); cluster++) {
+      if (topology.getNumaNodeOfCluster(cluster) != node) {
+        continue;
+      }
+      int clusterId = cluster;
+      int[] cpus = Arrays.stream(topology.getCpusOfNumaNode(node))
+          .filter(cpu -> topology.getClusterId(cpu) == clusterId)
+          .toArray();
+      if (cpus.length > 0) {
+        clusters.add(cpus);
+      }
+    }
+    return clusters;
+  }
+
+  /**
+   * Carriers to steal from in order: same cluster, same NUMA node, same package, others
+   */
+  private Carrier[] victimsOf(Carrier thief, Topology topology) {
+    int thiefPackage = topology.getPackageOfNumaNode(thief.numaId);
+    List<Carrier> victims = new ArrayList<>();
+    for (Carrier carrier : carriers) {
+      if (carrier != thief) {
+        victims.add(carrier);
+      }
+    }
+    victims.sort(Comparator.comparingInt(victim -> {
+      if (victim.numaId != thief.numaId) {
+        return topology.getPackageOfNumaNode(victim.numaId) == thiefPackage ? 2 : 3;
+      }
+      return victim.clusterId == thief.clusterId ? 0 : 1;
+    }));
+    thief.localVictimsCnt = (int) victims.stream().filter(victim -> victim.numaId == thief.numaId).count();
+    return victims.toArray(new Carrier[0]);
+  }
+
+  /**
+   * @return number of NUMA nodes
+   */
+  public int getNodesCnt() {
+    return nodeCarriers.length;
+  }
+
+  /**
+   * @param numaId NUMA node to run tasks on
+   * @return executor running tasks on carriers of the node, unless they are stolen by another node
+   */
+  public Executor executor(int numaId) {
+    var nodeCarriers = this.nodeCarriers[numaId];
+    var next = nextCarrier[numaId];
+    return task -> {
+      if (shutdown) {
+        throw new RejectedExecutionException("Carrier pool is closed");
+      }
+      Carrier target;
+      if (Thread.currentThread() instanceof Carrier carrier && carrier.pool == this && carrier.numaId == numaId) {
+        target = carrier;
+      } else {
+        target = nodeCarriers[Math.floorMod(next.getAndIncrement(), nodeCarriers.length)];
+      }
+      target.queue.offer(task);
+      signal(target, nodeCarriers);
+    };
+  }
+
+  /**
+   * Wakes up the target carrier or, if it is busy, another parked carrier of the node to steal the task.
+   * If all carriers of the node are busy, the task piles up in the queue, so a carrier of another node
+   * which has been idle for the remote steal delay is woken up to steal it.
+   */
+  private static void signal(Carrier target, Carrier[] nodeCarriers) {
+    if (target.parked) {
+      LockSupport.unpark(target);
+      return;
+    }
+    for (Carrier carrier : nodeCarriers) {
+      if (carrier.parked) {
+        LockSupport.unpark(carrier);
+        return;
+      }
+    }
+    var victims = target.victims;
+    for (int i = target.localVictimsCnt; i < victims.length; i++) {
+      var thief = victims[i];
+      if (thief.parked && thief.stealsRemote) {
+        LockSupport.unpark(thief);
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return tasks stolen from carriers of the same NUMA node
+   */
+  public long getLocalStealsCnt() {
+    long steals = 0;
+    for (Carrier carrier : carriers) {
+      steals += carrier.localSteals;
+    }
+    return steals;
+  }
+
+  /**
+   * @return tasks stolen from carriers of other NUMA nodes
+   */
+  public long getRemoteStealsCnt() {
+    long steals = 0;
+    for (Carrier carrier : carriers) {
+      steals += carrier.remoteSteals;
+    }
+    return steals;
+  }
+
+  /**
+   * Stops the carriers after their queues are empty. Virtual threads of the pool should be terminated before,
+   * a parked thread can't be scheduled again after close.
+   */
+  @Override
+  public void close() {
+    shutdown = true;
+    boolean interrupted = false;
+    for (Carrier carrier : carriers) {
+      LockSupport.unpark(carrier);
+    }
+    for (Carrier carrier : carriers) {
+      while (true) {
+        try {
+          carrier.join();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static final class Carrier extends Thread {
+
+    final NumaCarrierPool pool;
+
+    final int numaId;
+
+    final int clusterId;
+
+    private final int[] cpus;
+
+    final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Carriers of the same NUMA node go first
+     */
+    Carrier[] victims;
+
+    int localVictimsCnt;
+
+    volatile boolean parked;
+
+    /**
+     * Whether the carrier has been idle for the remote steal delay and steals from other NUMA nodes
+     */
+    volatile boolean stealsRemote;
+
+    /**
+     * Written only by this carrier
+     */
+    volatile long localSteals;
+    volatile long remoteSteals;
+
+    Carrier(NumaCarrierPool pool, int numaId, int clusterId, int[] cpus) {
+      this.pool = pool;
+      this.numaId = numaId;
+      this.clusterId = clusterId;
+      this.cpus = cpus;
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      if (cpus.length > 0) {
+        CpuAffinity.pinCurrentThread(cpus);
+      }
+      long idleSince = 0L;
+      while (true) {
+        var task = queue.poll();
+        if (task == null) {
+          task = stealLocal();
+        }
+        if (task == null && idleSince != 0L && System.nanoTime() - idleSince >= pool.remoteStealDelayNanos) {
+          stealsRemote = true;
+          task = stealRemote();
+        }
+        if (task != null) {
+          idleSince = 0L;
+          stealsRemote = false;
+          runTask(task);
+          continue;
+        }
+        if (pool.shutdown) {
+          return;
+        }
+        long now = System.nanoTime();
+        if (idleSince == 0L) {
+          idleSince = now;
+        }
+        parked = true;
+        // submitter offers the task before it checks the flag, recheck after the flag is set
+        if (queue.isEmpty()) {
+          LockSupport.parkNanos(this, parkNanos(now - idleSince));
+        }
+        parked = false;
+      }
+    }
+
+    /**
+     * Until the remote steal delay the carrier parks for short periods to steal from its node, then for the delay,
+     * submitters unpark it when work piles up on another node.
+     */
+    private long parkNanos(long idleNanos) {
+      long delay = pool.remoteStealDelayNanos;
+      long remoteIn = delay - idleNanos;
+      if (remoteIn > 0L) {
+        return Math.min(MAX_PARK_NANOS, remoteIn);
+      }
+      return Math.max(MAX_PARK_NANOS, delay);
+    }
+
+    private Runnable stealLocal() {
+      for (int i = 0; i < localVictimsCnt; i++) {
+        var task = victims[i].queue.poll();
+        if (task != null) {
+          localSteals++;
+          return task;
+        }
+      }
+      return null;
+    }
+
+    private Runnable stealRemote() {
+      for (int i = localVictimsCnt; i < victims.length; i++) {
+        var task = victims[i].queue.poll();
+        if (task != null) {
+          remoteSteals++;
+          return task;
+        }
+      }
+      return null;
+    }
+
+    private void runTask(Runnable task) {
+      try {
+        task.run();
+      } catch (Throwable e) {
+        getUncaughtExceptionHandler().uncaughtException(this, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>{@link Lock} on top of a {@link TryNumaLock}, info for unlocking is kept inside like in {@link VNALock}.
+ * <p>The underlying locks can't abandon a queue, so the lock is not reentrant, waiting in {@link #lock()} and
+ * {@link #lockInterruptibly()} is not interruptible and {@link #newCondition()} is not supported.
+ * <p>{@link #tryLock()} is {@link TryNumaLock#tryLock()}. Timed {@link #tryLock(long, TimeUnit)} polls it, spinning
+ * and then parking for growing periods, since nobody unparks threads which are not in a queue.
+ *
+ * @param <T> info for unlocking of the underlying lock
+ */
+final class NumaLockAdapter<T> implements Lock {
+
+  private static final int SPINS_BEFORE_PARK = 1024;
+
+  private static final long MIN_PARK_NANOS = 1_000;
+
+  private static final long MAX_PARK_NANOS = 1_000_000;
+
+  private final TryNumaLock<T> lock;
+
+  /**
+   * Written and read only by the thread holding {@link #lock}
+   */
+  private Thread owner;
+
+  private T unlockInfo;
+
+  NumaLockAdapter(TryNumaLock<T> lock) {
+    this.lock = lock;
+  }
+
+  @Override
+  public void lock() {
+    var info = lock.lock();
+    owner = Thread.currentThread();
+    unlockInfo = info;
+  }
+
+  /**
+   * Checks the interrupt status only before waiting. Waiting itself is not interruptible: the thread stays
+   * in the queue until it gets the lock, its interrupt status is kept.
+   */
+  @Override
+  public void lockInterruptibly() throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    lock();
+  }
+
+  @Override
+  public boolean tryLock() {
+    var info = lock.tryLock();
+    if (info == null) {
+      return false;
+    }
+    owner = Thread.currentThread();
+    unlockInfo = info;
+    return true;
+  }
+
+  @Override
+  public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    long deadline = System.nanoTime() + unit.toNanos(time);
+    int spins = 0;
+    long parkNanos = MIN_PARK_NANOS;
+    while (!tryLock()) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return false;
+      }
+      if (++spins < SPINS_BEFORE_PARK) {
+        Thread.onSpinWait();
+        continue;
+      }
+      LockSupport.parkNanos(this, Math.min(parkNanos, remaining));
+      parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void unlock() {
+    if (owner != Thread.currentThread()) {
+      throw new IllegalMonitorStateException();
+    }
+    var info = unlockInfo;
+    owner = null;
+    unlockInfo = null;
+    lock.unlock(info);
+  }
+
+  @Override
+  public Condition newCondition() {
+    throw new UnsupportedOperationException();
+  }
+}
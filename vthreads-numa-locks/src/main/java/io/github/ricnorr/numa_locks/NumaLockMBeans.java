@@ -0,0 +1,74 @@
+package io.github.ricnorr.numa_locks;
+
+import java.lang.management.ManagementFactory;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * <p>Registers named locks in the platform MBean server, so JMX monitoring can watch their contention
+ * and tune them without a restart, see {@link NumaLockMXBean}.
+ * <p>Registration enables statistics of the lock, see {@link ObservableNumaLock}.
+ * <p>How to use:
+ * <pre> {@code
+ *   VNA lock = new VNA();
+ *   NumaLockMBeans.register("orders", lock);
+ *   // io.github.ricnorr.numa_locks:type=NumaLock,name="orders" is visible in JConsole
+ * }</pre>
+ */
+public final class NumaLockMBeans {
+
+  public static final String DOMAIN = "io.github.ricnorr.numa_locks";
+
+  private NumaLockMBeans() {
+  }
+
+  /**
+   * @param name unique name of the lock
+   * @param lock lock to register
+   * @return name of the registered MBean
+   * @throws IllegalArgumentException if a lock with the name is already registered
+   */
+  public static ObjectName register(String name, ObservableNumaLock<?> lock) {
+    var objectName = objectName(name);
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(new NumaLockMXBeanImpl(name, lock), objectName);
+    } catch (InstanceAlreadyExistsException e) {
+      throw new IllegalArgumentException("Lock is already registered: " + name, e);
+    } catch (JMException e) {
+      throw new IllegalStateException(e);
+    }
+    return objectName;
+  }
+
+  /**
+   * Unregisters the lock, its statistics stay enabled.
+   *
+   * @param name name of the lock
+   * @return whether the lock was registered
+   */
+  public static boolean unregister(String name) {
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(name));
+      return true;
+    } catch (InstanceNotFoundException e) {
+      return false;
+    } catch (JMException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @param name name of the lock
+   * @return name of the MBean of the lock
+   */
+  public static ObjectName objectName(String name) {
+    try {
+      return new ObjectName(DOMAIN + ":type=NumaLock,name=" + ObjectName.quote(name));
+    } catch (MalformedObjectNameException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package io.github.ricnorr.numa_locks;
+
+/**
+ * <p>Management interface of a lock registered by {@link NumaLockMBeans}.
+ * <p>Rates and ratios are computed over the last sampling interval, so they follow the current load.
+ * The interval ends on the first read after {@link #getSamplingIntervalMillis()} passed,
+ * no background thread is started. Counters are totals since registration or {@link #resetStats()}.
+ * <p>Tuning attributes are changed on the live lock, locks without the option return {@code -1}
+ * and throw {@link UnsupportedOperationException} on change.
+ */
+public interface NumaLockMXBean {
+
+  String getName();
+
+  String getLockClass();
+
+  long getAcquisitions();
+
+  long getLocalHandoffs();
+
+  long getRemoteHandoffs();
+
+  /**
+   * @return releases of the lock on another NUMA node than it was acquired on
+   */
+  long getMigrations();
+
+  /**
+   * @return acquisitions per second
+   */
+  double getThroughput();
+
+  double getFastPathRatio();
+
+  double getAverageWaitNanos();
+
+  /**
+   * @return share of handoffs inside a NUMA node or cluster
+   */
+  double getLocalHandoffRatio();
+
+  /**
+   * @return current approximate numbers of threads in the local queues by node
+   */
+  int[] getQueueLengths();
+
+  long getSamplingIntervalMillis();
+
+  void setSamplingIntervalMillis(long samplingIntervalMillis);
+
+  /**
+   * Zeroes the counters and starts a new sampling interval.
+   */
+  void resetStats();
+
+  /**
+   * @return cohort limit of {@link VNA} or the HMCS locks
+   */
+  int getCohortLimit();
+
+  void setCohortLimit(int cohortLimit);
+
+  /**
+   * @return spin budget of {@link VNA}
+   */
+  long getMaxSpinNanos();
+
+  void setMaxSpinNanos(long maxSpinNanos);
+}
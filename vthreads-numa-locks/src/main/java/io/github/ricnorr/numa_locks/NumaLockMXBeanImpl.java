@@ -0,0 +1,173 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link NumaLockMXBean} of a lock with enabled statistics. Sampling state is guarded by {@code this},
+ * the lock itself is not touched by monitoring except for reading its statistics.
+ */
+final class NumaLockMXBeanImpl implements NumaLockMXBean {
+
+  static final long DEFAULT_SAMPLING_INTERVAL_MILLIS = 1000;
+
+  private final String name;
+
+  private final ObservableNumaLock<?> lock;
+
+  private final LockStats stats;
+
+  private long samplingIntervalMillis = DEFAULT_SAMPLING_INTERVAL_MILLIS;
+
+  /**
+   * Start of the current sampling interval
+   */
+  private LockStats.Snapshot intervalStart;
+  private long intervalStartNanos;
+
+  /**
+   * Counters of the last completed sampling interval, of the current one until the first completes
+   */
+  private LockStats.Snapshot lastInterval;
+  private long lastIntervalNanos;
+  private boolean intervalCompleted;
+
+  NumaLockMXBeanImpl(String name, ObservableNumaLock<?> lock) {
+    this.name = name;
+    this.lock = lock;
+    this.stats = lock.enableStats();
+    startInterval();
+  }
+
+  private synchronized void startInterval() {
+    intervalStart = stats.snapshot();
+    intervalStartNanos = System.nanoTime();
+    intervalCompleted = false;
+  }
+
+  private synchronized LockStats.Snapshot lastInterval() {
+    long now = System.nanoTime();
+    long elapsed = now - intervalStartNanos;
+    boolean completes = elapsed >= TimeUnit.MILLISECONDS.toNanos(samplingIntervalMillis);
+    if (completes || !intervalCompleted) {
+      var current = stats.snapshot();
+      lastInterval = current.since(intervalStart);
+      lastIntervalNanos = elapsed;
+      if (completes) {
+        intervalStart = current;
+        intervalStartNanos = now;
+        intervalCompleted = true;
+      }
+    }
+    return lastInterval;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public String getLockClass() {
+    return lock.getClass().getName();
+  }
+
+  @Override
+  public long getAcquisitions() {
+    return stats.snapshot().acquisitions();
+  }
+
+  @Override
+  public long getLocalHandoffs() {
+    return stats.snapshot().localHandoffs();
+  }
+
+  @Override
+  public long getRemoteHandoffs() {
+    return stats.snapshot().remoteHandoffs();
+  }
+
+  @Override
+  public long getMigrations() {
+    return stats.snapshot().migrations();
+  }
+
+  @Override
+  public synchronized double getThroughput() {
+    var interval = lastInterval();
+    return lastIntervalNanos == 0 ? 0 : interval.acquisitions() * 1e9 / lastIntervalNanos;
+  }
+
+  @Override
+  public double getFastPathRatio() {
+    return lastInterval().fastPathRatio();
+  }
+
+  @Override
+  public double getAverageWaitNanos() {
+    return lastInterval().averageWaitNanos();
+  }
+
+  @Override
+  public double getLocalHandoffRatio() {
+    return lastInterval().localHandoffRatio();
+  }
+
+  @Override
+  public int[] getQueueLengths() {
+    return lock.getQueueLengths();
+  }
+
+  @Override
+  public synchronized long getSamplingIntervalMillis() {
+    return samplingIntervalMillis;
+  }
+
+  @Override
+  public synchronized void setSamplingIntervalMillis(long samplingIntervalMillis) {
+    if (samplingIntervalMillis <= 0) {
+      throw new IllegalArgumentException("Sampling interval must be positive: " + samplingIntervalMillis);
+    }
+    this.samplingIntervalMillis = samplingIntervalMillis;
+  }
+
+  @Override
+  public synchronized void resetStats() {
+    stats.reset();
+    startInterval();
+  }
+
+  @Override
+  public int getCohortLimit() {
+    if (lock instanceof VNA vna) {
+      return vna.getCohortLimit();
+    }
+    if (lock instanceof AbstractHMCS hmcs) {
+      return hmcs.getCohortLimit();
+    }
+    return -1;
+  }
+
+  @Override
+  public void setCohortLimit(int cohortLimit) {
+    if (lock instanceof VNA vna) {
+      vna.setCohortLimit(cohortLimit);
+    } else if (lock instanceof AbstractHMCS hmcs) {
+      hmcs.setCohortLimit(cohortLimit);
+    } else {
+      throw new UnsupportedOperationException(getLockClass() + " has no cohort limit");
+    }
+  }
+
+  @Override
+  public long getMaxSpinNanos() {
+    return lock instanceof VNA vna ? vna.getMaxSpinNanos() : -1;
+  }
+
+  @Override
+  public void setMaxSpinNanos(long maxSpinNanos) {
+    if (!(lock instanceof VNA vna)) {
+      throw new UnsupportedOperationException(getLockClass() + " has no spin budget");
+    }
+    vna.setMaxSpinNanos(maxSpinNanos);
+  }
+}
@@ -0,0 +1,283 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * <p>Factory of the NUMA-aware locks of the library.
+ * <p>Options not set explicitly get the defaults of the chosen algorithm. An option the algorithm does not support,
+ * e.g. the spin policy of {@link Algorithm#HCLH}, fails the build with {@link IllegalArgumentException}.
+ * <p>How to use:
+ * <pre> {@code
+ *   Lock lock = NumaLocks.builder()
+ *       .algorithm(NumaLocks.Algorithm.HMCS)
+ *       .levels(TopologyLevel.CLUSTER, TopologyLevel.NUMA_NODE)
+ *       .fastPath(true)
+ *       .buildLock();
+ * }</pre>
+ */
+public final class NumaLocks {
+
+  private NumaLocks() {
+  }
+
+  /**
+   * @return builder of a {@link Algorithm#VNA} lock with default options
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public enum Algorithm {
+
+    /**
+     * {@link VNA}: local queue per NUMA node and the global flag. Always takes the fast path, supports
+     * {@link SpinPolicy#ADAPTIVE} (default) and {@link SpinPolicy#PARK}, cohort limit
+     */
+    VNA,
+
+    /**
+     * {@link VNA_2_Q}: like {@link #VNA} with local queues of any single level, per package by default.
+     * Always takes the fast path, supports {@link SpinPolicy#PARK} only
+     */
+    VNA_2_Q,
+
+    /**
+     * {@link HMCS}: MCS queue per group of every level, per NUMA node by default.
+     * Supports {@link SpinPolicy#PARK} (default) and {@link SpinPolicy#SPIN}, cohort limit,
+     * the fast path is off by default
+     */
+    HMCS,
+
+    /**
+     * {@link CNA}: single MCS queue preferring successors from the same group of one level, NUMA node by default.
+     * Supports {@link SpinPolicy#PARK} (default) and {@link SpinPolicy#SPIN}, the fast path is off by default
+     */
+    CNA,
+
+    /**
+     * {@link HCLH}: CLH queue per group of one level, NUMA node by default, spliced into the global queue.
+     * Supports {@link SpinPolicy#SPIN} only and has no fast path. Can't be taken without waiting,
+     * so {@link Builder#buildLock()} is not supported
+     */
+    HCLH,
+
+    /**
+     * {@link HSPIN}: spin lock per group of one level, NUMA node by default, and the global spin lock.
+     * Supports {@link SpinPolicy#SPIN} only, the fast path is off by default
+     */
+    HSPIN,
+
+    /**
+     * {@link AdaptiveNumaLock}: switches between spinning on the global flag and local queues of one level,
+     * NUMA node by default, by the measured contention. Always takes the fast path, queued waiters park
+     */
+    ADAPTIVE
+  }
+
+  public static final class Builder {
+
+    private Algorithm algorithm = Algorithm.VNA;
+
+    private List<TopologyLevel> levels;
+
+    private SpinPolicy spinPolicy;
+
+    private Boolean fastPath;
+
+    private int cohortLimit = -1;
+
+    private String jmxName;
+
+    private Builder() {
+    }
+
+    public Builder algorithm(Algorithm algorithm) {
+      this.algorithm = algorithm;
+      return this;
+    }
+
+    /**
+     * @param levels levels of the hierarchy from the finest to the coarsest, several levels only for
+     *               {@link Algorithm#HMCS}
+     * @return this builder
+     */
+    public Builder levels(TopologyLevel... levels) {
+      this.levels = List.of(levels);
+      return this;
+    }
+
+    public Builder spinPolicy(SpinPolicy spinPolicy) {
+      this.spinPolicy = spinPolicy;
+      return this;
+    }
+
+    /**
+     * @param fastPath whether to try to take the global flag before enqueueing, so an uncontended lock
+     *                 costs a single CAS, but a thread can overtake the waiters
+     * @return this builder
+     */
+    public Builder fastPath(boolean fastPath) {
+      this.fastPath = fastPath;
+      return this;
+    }
+
+    /**
+     * @param cohortLimit how many times in a row the lock can be passed inside a NUMA node,
+     *                    for {@link Algorithm#VNA}, see {@link VNA#VNA(boolean, int)}, and {@link Algorithm#HMCS},
+     *                    see {@link AbstractHMCS#setCohortLimit(int)}
+     * @return this builder
+     */
+    public Builder cohortLimit(int cohortLimit) {
+      if (cohortLimit < 0) {
+        throw new IllegalArgumentException("Negative cohort limit: " + cohortLimit);
+      }
+      this.cohortLimit = cohortLimit;
+      return this;
+    }
+
+    /**
+     * @param jmxName name to register the lock with in the platform MBean server, only for {@link Algorithm#VNA},
+     *                {@link Algorithm#HMCS} and {@link Algorithm#CNA}, see {@link NumaLockMBeans}
+     * @return this builder
+     */
+    public Builder jmxName(String jmxName) {
+      this.jmxName = jmxName;
+      return this;
+    }
+
+    /**
+     * @return new lock
+     * @throws IllegalArgumentException if the algorithm does not support the options
+     */
+    public VthreadNumaLock<?> build() {
+      var lock = create();
+      register(lock);
+      return lock;
+    }
+
+    private void register(VthreadNumaLock<?> lock) {
+      if (jmxName != null) {
+        check(lock instanceof ObservableNumaLock<?>, "jmxName");
+        NumaLockMBeans.register(jmxName, (ObservableNumaLock<?>) lock);
+      }
+    }
+
+    private VthreadNumaLock<?> create() {
+      return switch (algorithm) {
+        case VNA -> new VNA(false, cohortLimitOr(), checkVna());
+        case VNA_2_Q -> {
+          checkNoCohortLimit();
+          check(fastPathOr(true), "fastPath");
+          spinPolicyOr(SpinPolicy.PARK);
+          yield new VNA_2_Q(levelsOr(TopologyLevel.PACKAGE));
+        }
+        case HMCS -> {
+          check(cohortLimit != 0, "cohortLimit");
+          var spin = spinPolicyOr(SpinPolicy.PARK, SpinPolicy.SPIN);
+          var hmcs = new HMCS(levels == null ? List.of(TopologyLevel.NUMA_NODE) : levels, fastPathOr(false), spin);
+          if (cohortLimit != -1) {
+            hmcs.setCohortLimit(cohortLimit);
+          }
+          yield hmcs;
+        }
+        case CNA -> {
+          checkNoCohortLimit();
+          var level = levelsOr(TopologyLevel.NUMA_NODE);
+          var spin = spinPolicyOr(SpinPolicy.PARK, SpinPolicy.SPIN);
+          yield new CNA(level::getCachedId, fastPathOr(false), spin);
+        }
+        case HCLH -> {
+          checkNoCohortLimit();
+          check(!fastPathOr(false), "fastPath");
+          spinPolicyOr(SpinPolicy.SPIN);
+          var level = levelsOr(TopologyLevel.NUMA_NODE);
+          yield new HCLH(level::getCachedId, level.count());
+        }
+        case HSPIN -> {
+          checkNoCohortLimit();
+          spinPolicyOr(SpinPolicy.SPIN);
+          yield new HSPIN(levelsOr(TopologyLevel.NUMA_NODE), fastPathOr(false));
+        }
+        case ADAPTIVE -> {
+          checkNoCohortLimit();
+          check(fastPathOr(true), "fastPath");
+          spinPolicyOr(SpinPolicy.PARK);
+          yield new AdaptiveNumaLock(levelsOr(TopologyLevel.NUMA_NODE));
+        }
+      };
+    }
+
+    /**
+     * @return new lock, {@link VNALock} for {@link Algorithm#VNA}, otherwise a lock without
+     * {@link Lock#newCondition()} and with uninterruptible waiting
+     * @throws IllegalArgumentException if the algorithm does not support the options or can't be taken without
+     *                                  waiting for {@link Lock#tryLock()}, i.e. {@link Algorithm#HCLH}
+     */
+    public Lock buildLock() {
+      if (algorithm == Algorithm.VNA) {
+        var lock = new VNALock(false, cohortLimitOr(), checkVna());
+        if (jmxName != null) {
+          NumaLockMBeans.register(jmxName, lock.getVna());
+        }
+        return lock;
+      }
+      var lock = create();
+      if (!(lock instanceof TryNumaLock<?> tryLock)) {
+        throw new IllegalArgumentException(algorithm + " does not support tryLock of Lock, use build(): " + this);
+      }
+      register(lock);
+      return new NumaLockAdapter<>(tryLock);
+    }
+
+    /**
+     * @return spin policy of {@link VNA}
+     */
+    private SpinPolicy checkVna() {
+      check(levelsOr(TopologyLevel.NUMA_NODE) == TopologyLevel.NUMA_NODE, "levels");
+      check(fastPathOr(true), "fastPath");
+      return spinPolicyOr(SpinPolicy.ADAPTIVE, SpinPolicy.PARK);
+    }
+
+    private TopologyLevel levelsOr(TopologyLevel defaultLevel) {
+      if (levels == null) {
+        return defaultLevel;
+      }
+      check(levels.size() == 1, "levels");
+      return levels.get(0);
+    }
+
+    private SpinPolicy spinPolicyOr(SpinPolicy defaultPolicy, SpinPolicy... otherPolicies) {
+      if (spinPolicy == null || spinPolicy == defaultPolicy) {
+        return defaultPolicy;
+      }
+      check(List.of(otherPolicies).contains(spinPolicy), "spinPolicy");
+      return spinPolicy;
+    }
+
+    private boolean fastPathOr(boolean defaultFastPath) {
+      return fastPath == null ? defaultFastPath : fastPath;
+    }
+
+    private int cohortLimitOr() {
+      return cohortLimit == -1 ? VNA.DEFAULT_COHORT_LIMIT : cohortLimit;
+    }
+
+    private void checkNoCohortLimit() {
+      check(cohortLimit == -1, "cohortLimit");
+    }
+
+    private void check(boolean supported, String option) {
+      if (!supported) {
+        throw new IllegalArgumentException(algorithm + " does not support " + option + " option: " + this);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "Builder{algorithm=%s, levels=%s, spinPolicy=%s, fastPath=%s, cohortLimit=%d, jmxName=%s}",
+          algorithm, levels, spinPolicy, fastPath, cohortLimit, jmxName);
+    }
+  }
+}
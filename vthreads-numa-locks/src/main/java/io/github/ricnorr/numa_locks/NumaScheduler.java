@@ -0,0 +1,210 @@
+package io.github.ricnorr.numa_locks;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Scheduler of virtual threads with a pool of carrier threads per NUMA node.
+ * <p>Carriers of a node are pinned to the CPUs of the node and steal work only from each other, so a virtual thread
+ * started on a node runs on it until it terminates: cached NUMA ids of locks stay correct and local queues
+ * of {@link VNA} stay local. Pinning is best effort, carriers are not pinned if {@code sched_setaffinity}
+ * is not available.
+ * <p>Carriers of {@link NumaCarrierPool} may also steal from other nodes after an idle delay, see
+ * {@link #NumaScheduler(NumaCarrierPool)}.
+ * <p>The JDK has no public API for custom schedulers of virtual threads, the scheduler is set through the internal
+ * builder and requires {@code --add-opens java.base/java.lang=ALL-UNNAMED}, like {@link LockUtils}.
+ * <p>How to use:
+ * <pre> {@code
+ *   try (var scheduler = new NumaScheduler()) {
+ *     Thread thread = scheduler.startVirtualThread(0, task); // on NUMA node 0
+ *     ThreadFactory factory = scheduler.factory(); // spreads threads over nodes
+ *     // ...
+ *   }
+ * }</pre>
+ */
+public final class NumaScheduler implements AutoCloseable {
+
+  private static final Constructor<?> VIRTUAL_THREAD_BUILDER;
+
+  static {
+    try {
+      var builderClass = Class.forName("java.lang.ThreadBuilders$VirtualThreadBuilder");
+      VIRTUAL_THREAD_BUILDER = builderClass.getDeclaredConstructor(Executor.class);
+      VIRTUAL_THREAD_BUILDER.setAccessible(true);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final Executor[] executors;
+
+  /**
+   * Shuts the carriers down
+   */
+  private final Runnable closeCarriers;
+
+  private final AtomicInteger nextNode = new AtomicInteger();
+
+  /**
+   * Creates scheduler with a carrier per CPU of every NUMA node of {@link Topology}.
+   */
+  public NumaScheduler() {
+    this(0);
+  }
+
+  /**
+   * Creates scheduler.
+   *
+   * @param carriersPerNode carriers of every NUMA node, {@code 0} for a carrier per CPU of the node
+   */
+  public NumaScheduler(int carriersPerNode) {
+    if (carriersPerNode < 0) {
+      throw new IllegalArgumentException("Negative number of carriers: " + carriersPerNode);
+    }
+    var topology = Topology.get();
+    var pools = new ForkJoinPool[topology.getNumaNodesCnt()];
+    for (int node = 0; node < pools.length; node++) {
+      int[] cpus = topology.getCpusOfNumaNode(node);
+      int parallelism = carriersPerNode == 0 ? Math.max(1, cpus.length) : carriersPerNode;
+      pools[node] = new ForkJoinPool(parallelism, new CarrierFactory(node, cpus), null, true);
+    }
+    this.executors = pools;
+    this.closeCarriers = () -> close(pools);
+  }
+
+  /**
+   * Creates scheduler running virtual threads on the carriers of the pool. Threads start on their node,
+   * but may be stolen by carriers of other nodes idle for the remote steal delay of the pool.
+   *
+   * @param pool carriers, closed with the scheduler
+   */
+  public NumaScheduler(NumaCarrierPool pool) {
+    this.executors = new Executor[pool.getNodesCnt()];
+    for (int node = 0; node < executors.length; node++) {
+      executors[node] = pool.executor(node);
+    }
+    this.closeCarriers = pool::close;
+  }
+
+  /**
+   * @return number of NUMA nodes, ids of nodes are {@code 0 .. getNodesCnt() - 1}
+   */
+  public int getNodesCnt() {
+    return executors.length;
+  }
+
+  /**
+   * @param numaId NUMA node of the threads
+   * @return builder of virtual threads running on the node
+   */
+  public Thread.Builder.OfVirtual builder(int numaId) {
+    try {
+      return (Thread.Builder.OfVirtual) VIRTUAL_THREAD_BUILDER.newInstance(executors[numaId]);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Cannot create builder of virtual threads", e);
+    }
+  }
+
+  /**
+   * @param numaId NUMA node of the threads
+   * @return factory of virtual threads running on the node
+   */
+  public ThreadFactory factory(int numaId) {
+    return builder(numaId).factory();
+  }
+
+  /**
+   * @return factory of virtual threads assigned to NUMA nodes in round-robin order
+   */
+  public ThreadFactory factory() {
+    ThreadFactory[] factories = new ThreadFactory[executors.length];
+    for (int node = 0; node < factories.length; node++) {
+      factories[node] = factory(node);
+    }
+    return task -> factories[Math.floorMod(nextNode.getAndIncrement(), factories.length)].newThread(task);
+  }
+
+  /**
+   * @param numaId NUMA node of the thread
+   * @param task   body of the thread
+   * @return started virtual thread running on the node
+   */
+  public Thread startVirtualThread(int numaId, Runnable task) {
+    return builder(numaId).start(task);
+  }
+
+  /**
+   * Shuts the carriers down and waits for running virtual threads to unmount. Virtual threads of the scheduler
+   * should be terminated before, a parked thread can't be scheduled again after close.
+   */
+  @Override
+  public void close() {
+    closeCarriers.run();
+  }
+
+  private static void close(ForkJoinPool[] pools) {
+    for (ForkJoinPool pool : pools) {
+      pool.shutdown();
+    }
+    boolean interrupted = false;
+    for (ForkJoinPool pool : pools) {
+      while (true) {
+        try {
+          if (pool.awaitTermination(1, TimeUnit.DAYS)) {
+            break;
+          }
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static final class CarrierFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+    private final int numaId;
+
+    private final int[] cpus;
+
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    CarrierFactory(int numaId, int[] cpus) {
+      this.numaId = numaId;
+      this.cpus = cpus;
+    }
+
+    @Override
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+      var carrier = new Carrier(pool, cpus);
+      carrier.setName("numa-carrier-" + numaId + "-" + nextId.getAndIncrement());
+      carrier.setDaemon(true);
+      return carrier;
+    }
+  }
+
+  private static final class Carrier extends ForkJoinWorkerThread {
+
+    private final int[] cpus;
+
+    Carrier(ForkJoinPool pool, int[] cpus) {
+      super(null, pool, true);
+      this.cpus = cpus;
+    }
+
+    @Override
+    protected void onStart() {
+      super.onStart();
+      if (cpus.length > 0) {
+        CpuAffinity.pinCurrentThread(cpus);
+      }
+    }
+  }
+}
@@ -0,0 +1,417 @@
+package io.github.ricnorr.numa_locks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import jdk.internal.vm.annotation.Contended;
+
+/**
+ * <p>Counting semaphore for virtual threads with permits and waiters kept by NUMA node.
+ * <p>Every NUMA node has a cache of permits and an MCS queue of waiters, like the local queues of {@link VNA}.
+ * Permits above the cache limit of a node are kept in the global counter. Acquisition takes a permit from the cache
+ * of its node, then from the global counter and then from the caches of other nodes. Otherwise the thread joins
+ * the queue of its node, only the leader of the queue waits for permits, the others wait for the leadership.
+ * <p>Release passes the permit directly to the waiting leader of its node. If the node has no waiters, the permit
+ * goes to the waiting leader of another node, so cached permits can't starve other nodes, and to the cache
+ * of the node or the global counter when nobody waits. Acquisition and release of a pool used on one node touch
+ * only the state of the node then.
+ * <p>The semaphore is not fair: acquisition takes available permits before queued waiters.
+ * <p>How to use:
+ * <pre> {@code
+ *   NumaSemaphore connections = new NumaSemaphore(64);
+ *   // ...
+ *   connections.acquire();
+ *   try {
+ *     // ... use a connection
+ *   } finally {
+ *     connections.release();
+ *   }
+ * }</pre>
+ */
+public class NumaSemaphore {
+
+  private static final VarHandle GLOBAL_PERMITS;
+  private static final VarHandle CACHED_PERMITS;
+  private static final VarHandle STATUS;
+
+  /**
+   * Waiter statuses: waiting for the predecessor, leader of the local queue, left the queue by timeout
+   * or interrupt, leader got a permit by release, leader got a permit itself
+   */
+  private static final int WAITING = 0;
+  private static final int GRANTED = 1;
+  private static final int ABANDONED = 2;
+  private static final int PERMIT = 3;
+  private static final int ACQUIRED = 4;
+
+  private static final int SPINS_BEFORE_PARK = 256;
+
+  static {
+    try {
+      MethodHandles.Lookup l = MethodHandles.lookup();
+      GLOBAL_PERMITS = l.findVarHandle(NumaSemaphore.class, "globalPermits", Integer.TYPE);
+      CACHED_PERMITS = l.findVarHandle(NodeState.class, "cachedPermits", Integer.TYPE);
+      STATUS = l.findVarHandle(Waiter.class, "status", Integer.TYPE);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final NodeState[] nodes;
+
+  private final int cacheLimit;
+
+  private volatile int globalPermits;
+
+  /**
+   * Creates semaphore with the cache limit of a node equal to its share of permits.
+   *
+   * @param permits initial number of permits
+   */
+  public NumaSemaphore(int permits) {
+    this(permits, Math.max(1, permits / LockUtils.NUMA_NODES_CNT));
+  }
+
+  /**
+   * Creates semaphore.
+   *
+   * @param permits    initial number of permits, kept in the global counter until released
+   * @param cacheLimit permits kept in the cache of a NUMA node at most
+   */
+  public NumaSemaphore(int permits, int cacheLimit) {
+    if (permits < 0) {
+      throw new IllegalArgumentException("Negative number of permits: " + permits);
+    }
+    if (cacheLimit < 0) {
+      throw new IllegalArgumentException("Negative cache limit: " + cacheLimit);
+    }
+    this.globalPermits = permits;
+    this.cacheLimit = cacheLimit;
+    this.nodes = new NodeState[LockUtils.NUMA_NODES_CNT];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] = new NodeState();
+    }
+  }
+
+  /**
+   * Acquires a permit, waiting until one is available.
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public void acquire() throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    int numaId = getNumaId();
+    if (!tryTake(numaId)) {
+      acquireQueued(numaId, true, false, 0L);
+    }
+  }
+
+  /**
+   * Acquires a permit, waiting until one is available. Interrupt is preserved and does not stop waiting.
+   */
+  public void acquireUninterruptibly() {
+    int numaId = getNumaId();
+    if (!tryTake(numaId)) {
+      try {
+        acquireQueued(numaId, false, false, 0L);
+      } catch (InterruptedException e) {
+        throw new AssertionError(e);
+      }
+    }
+  }
+
+  /**
+   * @return whether a permit was available and acquired
+   */
+  public boolean tryAcquire() {
+    return tryTake(getNumaId());
+  }
+
+  /**
+   * Acquires a permit, waiting until one is available or the time passes.
+   *
+   * @param timeout maximum time to wait
+   * @param unit    unit of {@code timeout}
+   * @return whether a permit was acquired
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    int numaId = getNumaId();
+    if (tryTake(numaId)) {
+      return true;
+    }
+    long nanos = unit.toNanos(timeout);
+    if (nanos <= 0L) {
+      return false;
+    }
+    return acquireQueued(numaId, true, true, System.nanoTime() + nanos);
+  }
+
+  /**
+   * Releases a permit, it goes to a waiter of the current NUMA node first.
+   */
+  public void release() {
+    int numaId = getNumaId();
+    if (handOff(nodes[numaId])) {
+      return;
+    }
+    for (int i = 1; i < nodes.length; i++) {
+      if (handOff(nodes[(numaId + i) % nodes.length])) {
+        return;
+      }
+    }
+    store(numaId);
+  }
+
+  /**
+   * @return approximate number of available permits
+   */
+  public int availablePermits() {
+    int permits = globalPermits;
+    for (NodeState node : nodes) {
+      permits += node.cachedPermits;
+    }
+    return permits;
+  }
+
+  /**
+   * @return whether some threads may be waiting for permits
+   */
+  public boolean hasQueuedThreads() {
+    for (NodeState node : nodes) {
+      if (node.queue.get() != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean acquireQueued(int numaId, boolean interruptible, boolean timed, long deadline)
+      throws InterruptedException {
+    var node = nodes[numaId];
+    var waiter = new Waiter();
+    var pred = node.queue.getAndSet(waiter);
+    boolean interrupted = false;
+    if (pred == null) {
+      waiter.status = GRANTED;
+    } else {
+      pred.next.set(waiter);
+      int spins = 0;
+      while (waiter.status == WAITING) {
+        if (Thread.interrupted()) {
+          if (interruptible) {
+            abandonQueue(node, waiter);
+            throw new InterruptedException();
+          }
+          interrupted = true;
+        }
+        long now = timed ? System.nanoTime() : 0L;
+        if (timed && deadline - now <= 0L) {
+          abandonQueue(node, waiter);
+          return false;
+        }
+        if (++spins < SPINS_BEFORE_PARK) {
+          Thread.onSpinWait();
+        } else if (timed) {
+          LockSupport.parkNanos(this, deadline - now);
+        } else {
+          LockSupport.park(this);
+        }
+      }
+    }
+    // leader publishes itself before it looks for permits, release stores a permit before it looks for leaders
+    node.leader = waiter;
+    int spins = 0;
+    while (true) {
+      if (waiter.status == PERMIT) {
+        break;
+      }
+      if (tryTake(numaId)) {
+        if (!waiter.casStatus(GRANTED, ACQUIRED)) {
+          // a permit was passed concurrently too
+          store(numaId);
+        }
+        break;
+      }
+      boolean interruptedNow = Thread.interrupted();
+      long now = timed ? System.nanoTime() : 0L;
+      if ((interruptedNow && interruptible) || (timed && deadline - now <= 0L)) {
+        if (waiter.casStatus(GRANTED, ABANDONED)) {
+          node.leader = null;
+          passLeadership(node, waiter);
+          if (interruptedNow) {
+            throw new InterruptedException();
+          }
+          return false;
+        }
+        // a permit was passed concurrently, keep it
+        interrupted |= interruptedNow;
+        break;
+      }
+      interrupted |= interruptedNow;
+      if (++spins < SPINS_BEFORE_PARK) {
+        Thread.onSpinWait();
+      } else if (timed) {
+        LockSupport.parkNanos(this, deadline - now);
+      } else {
+        LockSupport.park(this);
+      }
+    }
+    node.leader = null;
+    passLeadership(node, waiter);
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return true;
+  }
+
+  /**
+   * Leaves the queue before the waiter became a leader or passes the leadership it got concurrently.
+   */
+  private void abandonQueue(NodeState node, Waiter waiter) {
+    if (!waiter.casStatus(WAITING, ABANDONED)) {
+      passLeadership(node, waiter);
+    }
+  }
+
+  /**
+   * Makes the first not abandoned successor a leader of the queue.
+   */
+  private static void passLeadership(NodeState node, Waiter waiter) {
+    while (true) {
+      var next = waiter.next.get();
+      if (next == null) {
+        if (node.queue.compareAndSet(waiter, null)) {
+          return;
+        }
+        while ((next = waiter.next.get()) == null) {
+          Thread.onSpinWait();
+        }
+      }
+      if (next.casStatus(WAITING, GRANTED)) {
+        LockSupport.unpark(next.thread);
+        return;
+      }
+      waiter = next;
+    }
+  }
+
+  /**
+   * @return whether the permit was passed to the waiting leader of the node
+   */
+  private static boolean handOff(NodeState node) {
+    var leader = node.leader;
+    if (leader != null && leader.casStatus(GRANTED, PERMIT)) {
+      LockSupport.unpark(leader.thread);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Stores a released permit in the cache of the node or the global counter and wakes up leaders
+   * which could miss it.
+   */
+  private void store(int numaId) {
+    var node = nodes[numaId];
+    while (true) {
+      int cached = node.cachedPermits;
+      if (cached >= cacheLimit) {
+        GLOBAL_PERMITS.getAndAdd(this, 1);
+        break;
+      }
+      if (CACHED_PERMITS.compareAndSet(node, cached, cached + 1)) {
+        break;
+      }
+    }
+    for (NodeState other : nodes) {
+      var leader = other.leader;
+      if (leader != null) {
+        LockSupport.unpark(leader.thread);
+      }
+    }
+  }
+
+  /**
+   * Takes a permit from the cache of the node, the global counter or caches of other nodes.
+   */
+  private boolean tryTake(int numaId) {
+    if (tryTake(nodes[numaId])) {
+      return true;
+    }
+    while (true) {
+      int permits = globalPermits;
+      if (permits == 0) {
+        break;
+      }
+      if (GLOBAL_PERMITS.compareAndSet(this, permits, permits - 1)) {
+        return true;
+      }
+    }
+    for (int i = 1; i < nodes.length; i++) {
+      if (tryTake(nodes[(numaId + i) % nodes.length])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean tryTake(NodeState node) {
+    while (true) {
+      int cached = node.cachedPermits;
+      if (cached == 0) {
+        return false;
+      }
+      if (CACHED_PERMITS.compareAndSet(node, cached, cached - 1)) {
+        return true;
+      }
+    }
+  }
+
+  int getNumaId() {
+    return LockUtils.getCachedNumaNodeId();
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "[Permits = " + availablePermits() + "]";
+  }
+
+  @Contended
+  private static final class NodeState {
+
+    volatile int cachedPermits;
+
+    /**
+     * Tail of the queue of waiters
+     */
+    final AtomicReference<Waiter> queue = new AtomicReference<>();
+
+    /**
+     * Leader of the queue waiting for a permit, {@code null} if none
+     */
+    volatile Waiter leader;
+  }
+
+  @Contended
+  private static final class Waiter {
+
+    final Thread thread = Thread.currentThread();
+
+    volatile int status = WAITING;
+
+    final AtomicReference<Waiter> next = new AtomicReference<>();
+
+    boolean casStatus(int expected, int newStatus) {
+      return STATUS.compareAndSet(this, expected, newStatus);
+    }
+  }
+}
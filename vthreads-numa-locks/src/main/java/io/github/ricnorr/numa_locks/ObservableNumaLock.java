@@ -0,0 +1,38 @@
+package io.github.ricnorr.numa_locks;
+
+/**
+ * NUMA-aware lock for Virtual Threads which can record contention statistics.
+ *
+ * <p>Statistics are off by default, recording costs a few atomic adds to cells of the current carrier
+ * and a {@link System#nanoTime()} call for every queued acquisition.
+ * <p>How to use:
+ * <pre> {@code
+ *   var stats = lock.enableStats();
+ *   // ...
+ *   var snapshot = stats.snapshot();
+ *   System.out.println(snapshot.fastPathRatio());
+ * }</pre>
+ *
+ * @param <T> info for unlocking
+ */
+public interface ObservableNumaLock<T> extends VthreadNumaLock<T> {
+
+  /**
+   * Starts recording statistics. Threads acquiring the lock concurrently may start recording a bit later.
+   *
+   * @return statistics of the lock, the same object if already enabled
+   */
+  LockStats enableStats();
+
+  /**
+   * @return statistics of the lock, {@code null} if not enabled
+   */
+  LockStats getStats();
+
+  /**
+   * @return approximate numbers of threads in the local queues, including the owner if it came through a queue,
+   * valid only while statistics are enabled
+   */
+  int[] getQueueLengths();
+
+}
@@ -0,0 +1,45 @@
+package io.github.ricnorr.numa_locks;
+
+/**
+ * NUMA-aware lock for Virtual Threads with optimistic reads.
+ *
+ * <p>Optimistic reader does not write to shared memory: it takes a stamp, reads the guarded data
+ * and validates the stamp. If the lock was acquired in between, the read values may be inconsistent
+ * and the reader should retry or read under the lock.
+ * <p>How to use:
+ * <pre> {@code
+ *   long stamp = lock.tryOptimisticRead();
+ *   var x = this.x;
+ *   var y = this.y;
+ *   if (!lock.validate(stamp)) {
+ *     var unlockInfo = lock.lock();
+ *     try {
+ *       x = this.x;
+ *       y = this.y;
+ *     } finally {
+ *       lock.unlock(unlockInfo);
+ *     }
+ *   }
+ * }</pre>
+ *
+ * @param <T> info for unlocking
+ */
+public interface OptimisticReadNumaLock<T> extends VthreadNumaLock<T> {
+
+  /**
+   * Returns a stamp that can later be validated, or zero if the lock is held.
+   *
+   * @return stamp for {@link #validate(long)}, zero if the lock is held
+   */
+  long tryOptimisticRead();
+
+  /**
+   * Returns {@code true} if the lock has not been acquired since the issuance of the given stamp.
+   * Always returns {@code false} for zero stamp.
+   *
+   * @param stamp stamp returned by {@link #tryOptimisticRead()}
+   * @return {@code true} if the data read after taking the stamp is consistent
+   */
+  boolean validate(long stamp);
+
+}
@@ -0,0 +1,190 @@
+package io.github.ricnorr.numa_locks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import jdk.internal.vm.annotation.Contended;
+
+/**
+ * <p>{@link VNA} that does not allocate.
+ * <p>Fast path returns a shared token and does not touch queue nodes. Queue node is the info for unlocking,
+ * nodes are taken from a free list of the carrier thread and are returned to the free list of the carrier
+ * where the lock is released. Node is reused only after its owner passed the leadership, nobody else holds
+ * a reference to it at that moment.
+ * <p>Only blocking acquisition is supported, abandoned nodes could not be recycled safely.
+ * <p>How to use:
+ * <pre> {@code
+ *   RecyclingVNA lock = new RecyclingVNA();
+ *   // ...
+ *   var unlockInfo = lock.lock();
+ *   try {
+ *     // ... method body
+ *   } finally {
+ *     lock.unlock(unlockInfo);
+ *   }
+ * }</pre>
+ */
+@Contended
+public class RecyclingVNA implements VthreadNumaLock<RecyclingVNA.Node> {
+    private static final VarHandle VALUE;
+
+    private static final int LEADER_SPINS_BEFORE_YIELD = 1024;
+
+    /**
+     * Free nodes kept by a carrier thread, the rest are left to GC
+     */
+    static final int MAX_FREE_NODES = 64;
+
+    /**
+     * Returned when the lock is acquired by the fast path
+     */
+    private static final Node FAST_PATH = new Node();
+
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            VALUE = l.findVarHandle(RecyclingVNA.class, "globalLock", Boolean.TYPE);
+        } catch (ReflectiveOperationException var1) {
+            throw new ExceptionInInitializerError(var1);
+        }
+    }
+
+    final List<AtomicReference<Node>> localQueues;
+    volatile boolean globalLock = false;
+
+    /**
+     * Creates lock.
+     */
+    public RecyclingVNA() {
+        this.localQueues = new ArrayList<>();
+        for (int i = 0; i < LockUtils.NUMA_NODES_CNT; i++) {
+            localQueues.add(new AtomicReference<>());
+        }
+    }
+
+    private boolean casGlobalLock(boolean expected, boolean newValue) {
+        return VALUE.compareAndSet(this, expected, newValue);
+    }
+
+    @Override
+    public Node lock() {
+        if (casGlobalLock(false, true)) {
+            return FAST_PATH;
+        }
+        var slot = CarrierSlot.current();
+        var numaId = slot.getNumaId();
+        var node = takeNode(slot, numaId);
+
+        var localQueue = localQueues.get(numaId);
+        var pred = localQueue.getAndSet(node);
+        if (pred != null) {
+            pred.next = node;
+            int iterations = 0;
+            while (!node.granted) {
+                iterations++;
+                if (iterations == 1024) {
+                    LockSupport.park();
+                    iterations = 0;
+                }
+            }
+        }
+        int iterations = 0;
+        while (!casGlobalLock(false, true)) {
+            iterations++;
+            if (iterations == LEADER_SPINS_BEFORE_YIELD) {
+                iterations = 0;
+                Thread.yield();
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Acquires the lock only if it is free at the time of invocation.
+     *
+     * @return info for releasing lock or {@code null} if the lock is held by another thread
+     */
+    public Node tryLock() {
+        if (!globalLock && casGlobalLock(false, true)) {
+            return FAST_PATH;
+        }
+        return null;
+    }
+
+    @Override
+    public void unlock(Node node) {
+        globalLock = false;
+        if (node == FAST_PATH) {
+            return;
+        }
+        var localQueue = localQueues.get(node.numaId);
+        var next = node.next;
+        if (next == null) {
+            if (localQueue.compareAndSet(node, null)) {
+                recycle(node);
+                return;
+            }
+            while ((next = node.next) == null) {
+                Thread.onSpinWait();
+            }
+        }
+        // successor may release and recycle its node as soon as it is granted
+        var thread = next.thread;
+        next.granted = true;
+        LockSupport.unpark(thread);
+        recycle(node);
+    }
+
+    private static Node takeNode(CarrierSlot slot, int numaId) {
+        var node = slot.freeNodes;
+        if (node == null) {
+            node = new Node();
+        } else {
+            slot.freeNodes = node.nextFree;
+            slot.freeNodesCnt--;
+            node.nextFree = null;
+        }
+        node.thread = Thread.currentThread();
+        node.numaId = numaId;
+        return node;
+    }
+
+    private static void recycle(Node node) {
+        var slot = CarrierSlot.current();
+        if (slot.freeNodesCnt == MAX_FREE_NODES) {
+            return;
+        }
+        node.thread = null;
+        node.next = null;
+        node.granted = false;
+        node.nextFree = slot.freeNodes;
+        slot.freeNodes = node;
+        slot.freeNodesCnt++;
+    }
+
+    @Contended
+    static final class Node {
+
+        Thread thread;
+
+        int numaId;
+
+        volatile boolean granted = false;
+
+        volatile Node next;
+
+        /**
+         * Link in the free list of the carrier, used only by threads running on the carrier
+         */
+        Node nextFree;
+
+        private Node() {
+        }
+    }
+}
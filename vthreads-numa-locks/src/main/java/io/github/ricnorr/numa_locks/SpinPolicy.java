@@ -0,0 +1,23 @@
+package io.github.ricnorr.numa_locks;
+
+/**
+ * How a waiter of a lock waits for its turn. Not every lock supports every policy, see {@link NumaLocks}.
+ */
+public enum SpinPolicy {
+
+  /**
+   * Busy-wait and yield the carrier thread from time to time, so the lock holder can be scheduled
+   */
+  SPIN,
+
+  /**
+   * Park right away and be unparked by the predecessor
+   */
+  PARK,
+
+  /**
+   * Spin while the lock is expected to come sooner than a park and unpark would take, park otherwise,
+   * see {@link VNA}
+   */
+  ADAPTIVE
+}
@@ -0,0 +1,106 @@
+package io.github.ricnorr.numa_locks;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+
+import jdk.internal.vm.annotation.Contended;
+
+/**
+ * <p>{@link VNA} with optimistic reads.
+ * <p>Lock owner makes the version odd on acquire and even again on release. Optimistic readers only read
+ * the version, so readers on different NUMA nodes share its cache line and do not invalidate it for each other.
+ * <p>How to use:
+ * <pre> {@code
+ *   StampedVNA lock = new StampedVNA();
+ *   // ...
+ *   long stamp = lock.tryOptimisticRead();
+ *   var value = this.value;
+ *   if (!lock.validate(stamp)) {
+ *     var unlockInfo = lock.lock();
+ *     try {
+ *       value = this.value;
+ *     } finally {
+ *       lock.unlock(unlockInfo);
+ *     }
+ *   }
+ * }</pre>
+ */
+public class StampedVNA extends VNA implements OptimisticReadNumaLock<VNA.UnlockInfo> {
+
+  /**
+   * Even versions are never zero, so zero stamp is never valid
+   */
+  private static final long ORIGIN = 2;
+
+  /**
+   * Odd while the lock is held, written only by the owner
+   */
+  @Contended
+  private volatile long version = ORIGIN;
+
+  /**
+   * Creates non-reentrant lock.
+   */
+  public StampedVNA() {
+    this(false);
+  }
+
+  /**
+   * Creates lock.
+   *
+   * @param reentrant whether the owner can acquire the lock again without releasing it
+   */
+  public StampedVNA(boolean reentrant) {
+    super(reentrant);
+  }
+
+  @Override
+  public long tryOptimisticRead() {
+    long stamp = version;
+    return (stamp & 1) == 0 ? stamp : 0L;
+  }
+
+  @Override
+  public boolean validate(long stamp) {
+    // reads of the guarded data must not be reordered with the version check
+    VarHandle.loadLoadFence();
+    return stamp != 0L && version == stamp;
+  }
+
+  @Override
+  public UnlockInfo lock() {
+    return startWrite(super.lock());
+  }
+
+  @Override
+  public UnlockInfo tryLock() {
+    return startWrite(super.tryLock());
+  }
+
+  @Override
+  public UnlockInfo tryLock(long time, TimeUnit unit) throws InterruptedException {
+    return startWrite(super.tryLock(time, unit));
+  }
+
+  @Override
+  public UnlockInfo lockInterruptibly() throws InterruptedException {
+    return startWrite(super.lockInterruptibly());
+  }
+
+  @Override
+  public void unlock(UnlockInfo unlockInfo) {
+    if (unlockInfo != REENTRANT_UNLOCK_INFO) {
+      version = version + 1;
+    }
+    super.unlock(unlockInfo);
+  }
+
+  private UnlockInfo startWrite(UnlockInfo unlockInfo) {
+    if (unlockInfo != null && unlockInfo != REENTRANT_UNLOCK_INFO) {
+      version = version + 1;
+      // writes under the lock must not become visible before the odd version
+      VarHandle.storeStoreFence();
+    }
+    return unlockInfo;
+  }
+}
@@ -0,0 +1,393 @@
+package io.github.ricnorr.numa_locks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import oshi.SystemInfo;
+import oshi.hardware.CentralProcessor;
+
+/**
+ * <p>CPU topology of the machine: CPU, core, cluster, NUMA node, package.
+ * <p>Cluster is a group of cores sharing a cache inside a NUMA node. It is the core cluster if the kernel reports
+ * one (CCL on Kunpeng-920), otherwise the domain of the last level cache (CCX on AMD). Cluster never spans NUMA nodes:
+ * e.g. with Intel SNC the last level cache of the package is split by NUMA nodes.
+ * <p>Ids of all levels are dense and numbered in the order of CPUs, so they can be used as array indexes.
+ * Offline CPUs belong to the first core, cluster, NUMA node and package.
+ * <p>Topology is read from {@code /sys/devices/system}. If it is not available, topology is taken from OSHI
+ * and clusters are NUMA nodes.
+ * <p>Topology can be emulated to exercise hierarchical locks on hosts with a single NUMA node,
+ * CPUs are split into equal ranges by id:
+ * <pre> {@code
+ *   -Dio.github.ricnorr.numa_locks.topology=nodes=4
+ *   -Dio.github.ricnorr.numa_locks.topology=packages=2,nodes=4,clusters=16
+ * }</pre>
+ * By default there is one package and one cluster per NUMA node. Cores are the real ones split by clusters.
+ * Clusters without CPUs are not counted, so there are at most as many emulated clusters as CPUs.
+ */
+public final class Topology {
+
+  /**
+   * System property with the emulated topology, see {@link Topology}
+   */
+  public static final String EMULATED_TOPOLOGY_PROPERTY = "io.github.ricnorr.numa_locks.topology";
+
+  private static final Path SYSFS = Path.of("/sys/devices/system");
+
+  private final int[] coreOfCpu;
+  private final int[] clusterOfCpu;
+  private final int[] numaNodeOfCpu;
+  private final int[] packageOfCpu;
+
+  private final int coresCnt;
+  private final int clustersCnt;
+  private final int numaNodesCnt;
+  private final int packagesCnt;
+
+  private final int[] numaNodeOfCluster;
+  private final int[] packageOfNumaNode;
+
+  private final boolean emulated;
+
+  /**
+   * Keys identify the core, cluster, NUMA node and package of every CPU, {@code -1} for offline CPUs
+   */
+  Topology(long[] coreKeys, long[] clusterKeys, long[] numaNodeKeys, long[] packageKeys) {
+    this(coreKeys, clusterKeys, numaNodeKeys, packageKeys, false);
+  }
+
+  private Topology(long[] coreKeys, long[] clusterKeys, long[] numaNodeKeys, long[] packageKeys, boolean emulated) {
+    this.coreOfCpu = densify(coreKeys);
+    this.clusterOfCpu = densify(clusterKeys);
+    this.numaNodeOfCpu = densify(numaNodeKeys);
+    this.packageOfCpu = densify(packageKeys);
+    this.coresCnt = count(coreOfCpu);
+    this.clustersCnt = count(clusterOfCpu);
+    this.numaNodesCnt = count(numaNodeOfCpu);
+    this.packagesCnt = count(packageOfCpu);
+    this.numaNodeOfCluster = parents(clusterOfCpu, clustersCnt, numaNodeOfCpu);
+    this.packageOfNumaNode = parents(numaNodeOfCpu, numaNodesCnt, packageOfCpu);
+    this.emulated = emulated;
+  }
+
+  /**
+   * @return topology of this machine
+   */
+  public static Topology get() {
+    return Holder.SYSTEM;
+  }
+
+  private static final class Holder {
+    static final Topology SYSTEM = emulateIfConfigured(read());
+  }
+
+  private static Topology emulateIfConfigured(Topology real) {
+    String spec = System.getProperty(EMULATED_TOPOLOGY_PROPERTY);
+    return spec == null || spec.isBlank() ? real : emulate(real, spec);
+  }
+
+  /**
+   * @param real topology of the host, its CPUs and cores are kept
+   * @param spec comma-separated {@code packages=P}, {@code nodes=N}, {@code clusters=C}, e.g. {@code nodes=4}
+   * @return topology with CPUs split into P packages, N NUMA nodes and C clusters by CPU id ranges
+   */
+  static Topology emulate(Topology real, String spec) {
+    int packages = 1;
+    // null if not given
+    Integer nodes = null;
+    Integer clusters = null;
+    for (String entry : spec.split(",")) {
+      String[] keyValue = entry.trim().split("=");
+      if (keyValue.length != 2) {
+        throw new IllegalArgumentException("Invalid emulated topology: " + spec);
+      }
+      int value = Integer.parseInt(keyValue[1].trim());
+      switch (keyValue[0].trim()) {
+        case "packages" -> packages = value;
+        case "nodes" -> nodes = value;
+        case "clusters" -> clusters = value;
+        default -> throw new IllegalArgumentException("Invalid emulated topology: " + spec);
+      }
+    }
+    if (nodes == null) {
+      nodes = packages;
+    }
+    if (clusters == null) {
+      clusters = nodes;
+    }
+    if (packages <= 0 || nodes <= 0 || clusters <= 0 || nodes % packages != 0 || clusters % nodes != 0) {
+      throw new IllegalArgumentException(
+          "Emulated topology must be a tree, nodes divisible by packages, clusters by nodes: " + spec);
+    }
+    int cpusCnt = real.getCpusCnt();
+    long[] coreKeys = new long[cpusCnt];
+    long[] clusterKeys = new long[cpusCnt];
+    long[] numaNodeKeys = new long[cpusCnt];
+    long[] packageKeys = new long[cpusCnt];
+    for (int cpu = 0; cpu < cpusCnt; cpu++) {
+      int cluster = (int) ((long) cpu * clusters / cpusCnt);
+      int node = cluster / (clusters / nodes);
+      clusterKeys[cpu] = cluster;
+      numaNodeKeys[cpu] = node;
+      packageKeys[cpu] = node / (nodes / packages);
+      // hyperthreads of a core may fall into different clusters
+      coreKeys[cpu] = ((long) cluster << 32) | real.getCoreId(cpu);
+    }
+    return new Topology(coreKeys, clusterKeys, numaNodeKeys, packageKeys, true);
+  }
+
+  private static Topology read() {
+    try {
+      return readSysfs(SYSFS);
+    } catch (IOException | RuntimeException e) {
+      return readOshi();
+    }
+  }
+
+  static Topology readSysfs(Path root) throws IOException {
+    Path cpuDir = root.resolve("cpu");
+    int[] online = parseCpuList(Files.readString(cpuDir.resolve("online")));
+    int cpusCnt = Arrays.stream(online).max().orElse(0) + 1;
+    long[] coreKeys = offline(cpusCnt);
+    long[] clusterKeys = offline(cpusCnt);
+    long[] numaNodeKeys = offline(cpusCnt);
+    long[] packageKeys = offline(cpusCnt);
+
+    for (int cpu : online) {
+      numaNodeKeys[cpu] = 0;
+    }
+    Path nodeDir = root.resolve("node");
+    if (Files.isDirectory(nodeDir)) {
+      try (Stream<Path> nodes = Files.list(nodeDir)) {
+        for (Path node : nodes.filter(it -> it.getFileName().toString().matches("node\\d+")).toList()) {
+          int nodeId = Integer.parseInt(node.getFileName().toString().substring("node".length()));
+          for (int cpu : parseCpuList(Files.readString(node.resolve("cpulist")))) {
+            if (cpu < cpusCnt && numaNodeKeys[cpu] != -1) {
+              numaNodeKeys[cpu] = nodeId;
+            }
+          }
+        }
+      }
+    }
+
+    for (int cpu : online) {
+      Path topology = cpuDir.resolve("cpu" + cpu).resolve("topology");
+      packageKeys[cpu] = readInt(topology.resolve("physical_package_id"), 0);
+      int[] coreCpus = readCpuList(topology.resolve("core_cpus_list"));
+      if (coreCpus == null) {
+        coreCpus = readCpuList(topology.resolve("thread_siblings_list"));
+      }
+      if (coreCpus == null) {
+        coreCpus = new int[] {cpu};
+      }
+      coreKeys[cpu] = Arrays.stream(coreCpus).min().getAsInt();
+      int[] clusterCpus = readCpuList(topology.resolve("cluster_cpus_list"));
+      if (clusterCpus == null || clusterCpus.length <= coreCpus.length) {
+        clusterCpus = readLastLevelCacheCpus(cpuDir.resolve("cpu" + cpu).resolve("cache"));
+      }
+      // the first CPU of the cluster on the same NUMA node
+      int first = cpu;
+      if (clusterCpus != null) {
+        for (int other : clusterCpus) {
+          if (other < first && numaNodeKeys[other] == numaNodeKeys[cpu]) {
+            first = other;
+          }
+        }
+      } else {
+        for (int other = 0; other < cpu; other++) {
+          if (numaNodeKeys[other] == numaNodeKeys[cpu]) {
+            first = other;
+            break;
+          }
+        }
+      }
+      clusterKeys[cpu] = first;
+    }
+    return new Topology(coreKeys, clusterKeys, numaNodeKeys, packageKeys);
+  }
+
+  private static int[] readLastLevelCacheCpus(Path cacheDir) throws IOException {
+    if (!Files.isDirectory(cacheDir)) {
+      return null;
+    }
+    int maxLevel = -1;
+    int[] cpus = null;
+    try (Stream<Path> caches = Files.list(cacheDir)) {
+      for (Path cache : caches.filter(it -> it.getFileName().toString().startsWith("index")).toList()) {
+        int level = readInt(cache.resolve("level"), -1);
+        int[] shared = readCpuList(cache.resolve("shared_cpu_list"));
+        if (level > maxLevel && shared != null) {
+          maxLevel = level;
+          cpus = shared;
+        }
+      }
+    }
+    return cpus;
+  }
+
+  private static Topology readOshi() {
+    var processors = new SystemInfo().getHardware().getProcessor().getLogicalProcessors();
+    int cpusCnt = processors.stream().mapToInt(CentralProcessor.LogicalProcessor::getProcessorNumber).max().orElse(0) + 1;
+    long[] coreKeys = offline(cpusCnt);
+    long[] numaNodeKeys = offline(cpusCnt);
+    long[] packageKeys = offline(cpusCnt);
+    for (var processor : processors) {
+      int cpu = processor.getProcessorNumber();
+      coreKeys[cpu] = ((long) processor.getPhysicalPackageNumber() << 32) | processor.getPhysicalProcessorNumber();
+      numaNodeKeys[cpu] = processor.getNumaNode();
+      packageKeys[cpu] = processor.getPhysicalPackageNumber();
+    }
+    return new Topology(coreKeys, numaNodeKeys, numaNodeKeys, packageKeys);
+  }
+
+  private static long[] offline(int cpusCnt) {
+    long[] keys = new long[cpusCnt];
+    Arrays.fill(keys, -1);
+    return keys;
+  }
+
+  private static int[] densify(long[] keys) {
+    Map<Long, Integer> ids = new HashMap<>();
+    int[] dense = new int[keys.length];
+    for (int cpu = 0; cpu < keys.length; cpu++) {
+      dense[cpu] = keys[cpu] == -1 ? -1 : ids.computeIfAbsent(keys[cpu], key -> ids.size());
+    }
+    for (int cpu = 0; cpu < keys.length; cpu++) {
+      if (dense[cpu] == -1) {
+        dense[cpu] = 0;
+      }
+    }
+    return dense;
+  }
+
+  private static int count(int[] dense) {
+    return Arrays.stream(dense).max().orElse(0) + 1;
+  }
+
+  private static int[] parents(int[] childOfCpu, int childrenCnt, int[] parentOfCpu) {
+    int[] parents = new int[childrenCnt];
+    Arrays.fill(parents, -1);
+    for (int cpu = 0; cpu < childOfCpu.length; cpu++) {
+      if (parents[childOfCpu[cpu]] == -1) {
+        parents[childOfCpu[cpu]] = parentOfCpu[cpu];
+      }
+    }
+    return parents;
+  }
+
+  private static int readInt(Path path, int defaultValue) throws IOException {
+    if (!Files.exists(path)) {
+      return defaultValue;
+    }
+    return Integer.parseInt(Files.readString(path).trim());
+  }
+
+  private static int[] readCpuList(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return null;
+    }
+    return parseCpuList(Files.readString(path));
+  }
+
+  /**
+   * Parses kernel CPU list, e.g. {@code 0-3,8-11}
+   */
+  static int[] parseCpuList(String list) {
+    return Arrays.stream(list.trim().split(","))
+        .filter(it -> !it.isEmpty())
+        .flatMapToInt(range -> {
+          int dash = range.indexOf('-');
+          if (dash < 0) {
+            return IntStream.of(Integer.parseInt(range));
+          }
+          return IntStream.rangeClosed(Integer.parseInt(range.substring(0, dash)),
+              Integer.parseInt(range.substring(dash + 1)));
+        })
+        .toArray();
+  }
+
+  private static int lookup(int[] ofCpu, int cpu) {
+    return cpu >= 0 && cpu < ofCpu.length ? ofCpu[cpu] : 0;
+  }
+
+  /**
+   * @return the number of CPUs, including offline ones below the maximal online id
+   */
+  public int getCpusCnt() {
+    return coreOfCpu.length;
+  }
+
+  public int getCoresCnt() {
+    return coresCnt;
+  }
+
+  public int getClustersCnt() {
+    return clustersCnt;
+  }
+
+  public int getNumaNodesCnt() {
+    return numaNodesCnt;
+  }
+
+  public int getPackagesCnt() {
+    return packagesCnt;
+  }
+
+  public int getCoreId(int cpu) {
+    return lookup(coreOfCpu, cpu);
+  }
+
+  public int getClusterId(int cpu) {
+    return lookup(clusterOfCpu, cpu);
+  }
+
+  public int getNumaNodeId(int cpu) {
+    return lookup(numaNodeOfCpu, cpu);
+  }
+
+  public int getPackageId(int cpu) {
+    return lookup(packageOfCpu, cpu);
+  }
+
+  /**
+   * @param numaNodeId id of NUMA node
+   * @return CPUs of the NUMA node in increasing order
+   */
+  public int[] getCpusOfNumaNode(int numaNodeId) {
+    return IntStream.range(0, getCpusCnt()).filter(cpu -> numaNodeOfCpu[cpu] == numaNodeId).toArray();
+  }
+
+  /**
+   * @param clusterId id of cluster
+   * @return id of NUMA node containing the cluster
+   */
+  public int getNumaNodeOfCluster(int clusterId) {
+    return numaNodeOfCluster[clusterId];
+  }
+
+  /**
+   * @param numaNodeId id of NUMA node
+   * @return id of package containing the NUMA node
+   */
+  public int getPackageOfNumaNode(int numaNodeId) {
+    return packageOfNumaNode[numaNodeId];
+  }
+
+  /**
+   * @return {@code true} if topology is emulated by {@link #EMULATED_TOPOLOGY_PROPERTY}
+   */
+  public boolean isEmulated() {
+    return emulated;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Topology{cpus=%d, cores=%d, clusters=%d, numaNodes=%d, packages=%d%s}",
+        getCpusCnt(), coresCnt, clustersCnt, numaNodesCnt, packagesCnt, emulated ? ", emulated" : "");
+  }
+}
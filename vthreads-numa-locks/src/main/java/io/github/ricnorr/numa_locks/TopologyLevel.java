@@ -0,0 +1,79 @@
+package io.github.ricnorr.numa_locks;
+
+/**
+ * <p>Level of {@link Topology} a hierarchical lock can group waiters by, from the finest to the coarsest.
+ * <p>Every level nests in the next one: a cluster belongs to one NUMA node and a NUMA node to one package.
+ */
+public enum TopologyLevel {
+
+  /**
+   * CPUs sharing the last-level cache or the cluster of cores, e.g. CCL of Kunpeng-920
+   */
+  CLUSTER {
+    @Override
+    public int count() {
+      return LockUtils.CLUSTERS_CNT;
+    }
+
+    @Override
+    public int getCachedId() {
+      return LockUtils.getCachedClusterId();
+    }
+  },
+
+  NUMA_NODE {
+    @Override
+    public int count() {
+      return LockUtils.NUMA_NODES_CNT;
+    }
+
+    @Override
+    public int getCachedId() {
+      return LockUtils.getCachedNumaNodeId();
+    }
+  },
+
+  /**
+   * Package (socket), may contain several NUMA nodes
+   */
+  PACKAGE {
+    @Override
+    public int count() {
+      return LockUtils.PACKAGES_CNT;
+    }
+
+    @Override
+    public int getCachedId() {
+      return LockUtils.getCachedPackageId();
+    }
+  };
+
+  /**
+   * @return the number of groups of this level, ids are in {@code [0, count())}
+   */
+  public abstract int count();
+
+  /**
+   * @return id of the group of the carrier thread, cached like {@link LockUtils#getCachedNumaNodeId()}
+   */
+  public abstract int getCachedId();
+
+  /**
+   * @param id     id of a group of this level
+   * @param parent coarser level
+   * @return id of the group of {@code parent} level containing the group
+   */
+  int getParentId(int id, TopologyLevel parent) {
+    if (parent.compareTo(this) <= 0) {
+      throw new IllegalArgumentException(parent + " is not coarser than " + this);
+    }
+    var topology = Topology.get();
+    if (this == CLUSTER) {
+      id = topology.getNumaNodeOfCluster(id);
+      if (parent == NUMA_NODE) {
+        return id;
+      }
+    }
+    return topology.getPackageOfNumaNode(id);
+  }
+}
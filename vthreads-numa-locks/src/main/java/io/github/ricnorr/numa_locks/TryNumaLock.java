@@ -0,0 +1,18 @@
+package io.github.ricnorr.numa_locks;
+
+/**
+ * NUMA-aware lock which can be taken without waiting: by a single CAS on the global flag, bypassing the queues,
+ * like the fast path of {@link #lock()}, or by enqueueing only into empty queues.
+ *
+ * @param <T> info for unlocking
+ */
+interface TryNumaLock<T> extends VthreadNumaLock<T> {
+
+  /**
+   * Acquires the lock only if it is free, without waiting.
+   *
+   * @return info for releasing lock, {@code null} if the lock is held
+   */
+  T tryLock();
+
+}
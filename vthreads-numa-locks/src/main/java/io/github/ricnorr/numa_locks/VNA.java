@@ -4,134 +4,734 @@ import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
 import jdk.internal.vm.annotation.Contended;
 
 /**
  * <p>Lock for virtual threads.
  * <p>Also supports platform threads, but it was for using with virtual threads.
+ * <p>In reentrant mode the owner and hold count are kept in the lock, nested acquisition by the owner
+ * only increments the hold count.
+ * <p>Waiters in local queues and leaders waiting for the global flag spin while the lock is expected to be released
+ * soon and park otherwise, see {@link AdaptiveSpin}. Parked leaders are unparked on release.
+ * <p>Release passes the lock directly to the successor in the local queue, without releasing the global flag,
+ * at most {@code cohortLimit} times in a row. Then the lock is passed to the waiting leader of the next NUMA node
+ * in round-robin order, so threads of one node can't keep the lock while other nodes wait.
+ * <p>Virtual thread may yield in the critical section and resume on another NUMA node. Then the data protected
+ * by the lock is in the caches of the new node, so release prefers the waiting leader of that node
+ * to the successor in the local queue the owner came from.
+ * <p>Short critical sections can be run by {@link #execute(Runnable)} and {@link #apply(Supplier)}: a combiner
+ * per NUMA node runs the operations of the node's threads in one batch, see {@link CombiningNumaLock}.
+ * <p>Statistics and contention events are kept by {@link VNAStats}.
  * <p>How to use:
  * <pre> {@code
- *   NumaMCS lock = new ReentrantLock();
+ *   VNA lock = new VNA();
  *   // ...
- *   lock.lock();
+ *   var unlockInfo = lock.lock();
  *   try {
  *     // ... method body
  *   } finally {
- *     lock.unlock();
+ *     lock.unlock(unlockInfo);
  *   }
  * }</pre>
  */
 @Contended
-public class VNA implements VthreadNumaLock<VNA.UnlockInfo> {
-    private static final VarHandle VALUE;
-
-    static {
-        try {
-            MethodHandles.Lookup l = MethodHandles.lookup();
-            VALUE = l.findVarHandle(VNA.class, "globalLock", Boolean.TYPE);
-        } catch (ReflectiveOperationException var1) {
-            throw new ExceptionInInitializerError(var1);
-        }
+public class VNA implements ObservableNumaLock<VNA.UnlockInfo>, CombiningNumaLock<VNA.UnlockInfo> {
+  private static final VarHandle VALUE;
+  private static final VarHandle STATUS;
+  private static final VarHandle PARKED_LEADERS_CNT;
+
+  /**
+   * Node statuses: waiting for the predecessor, leader of the local queue, left the queue by timeout or interrupt
+   */
+  private static final int WAITING = 0;
+  private static final int GRANTED = 1;
+  private static final int ABANDONED = 2;
+  /**
+   * The lock is passed to the node with the global flag set
+   */
+  private static final int OWNER = 3;
+
+  /**
+   * Default number of direct handoffs inside a local queue in a row
+   */
+  public static final int DEFAULT_COHORT_LIMIT = 64;
+
+  /**
+   * Spin budget is checked once per this number of spins
+   */
+  private static final int SPINS_PER_CLOCK_CHECK = 64;
+
+  /**
+   * Returned by nested acquisitions in reentrant mode
+   */
+  static final UnlockInfo REENTRANT_UNLOCK_INFO = new UnlockInfo(true, -1, null);
+
+  static {
+    try {
+      MethodHandles.Lookup l = MethodHandles.lookup();
+      VALUE = l.findVarHandle(VNA.class, "globalLock", Boolean.TYPE);
+      STATUS = l.findVarHandle(Node.class, "status", Integer.TYPE);
+      PARKED_LEADERS_CNT = l.findVarHandle(VNA.class, "parkedLeadersCnt", Integer.TYPE);
+    } catch (ReflectiveOperationException var1) {
+      throw new ExceptionInInitializerError(var1);
     }
+  }
 
-    final List<AtomicReference<Node>> localQueues;
-    ThreadLocal<Integer> numaNodeThreadLocal = ThreadLocal.withInitial(LockUtils::getNumaNodeId);
-    ThreadLocal<Integer> lockAcquiresThreadLocal = ThreadLocal.withInitial(() -> 0);
-    volatile boolean globalLock = false;
+  final List<AtomicReference<Node>> localQueues;
+  volatile boolean globalLock = false;
 
-    /**
-     * Creates NUMA_MCS lock.
-     */
-    public VNA() {
-        this.localQueues = new ArrayList<>();
-        for (int i = 0; i < LockUtils.NUMA_NODES_CNT; i++) {
-            localQueues.add(new AtomicReference<>());
-        }
+  /**
+   * Leaders of local queues waiting for the global flag, by NUMA node
+   */
+  private final AtomicReferenceArray<Node> leaders;
+
+  volatile int parkedLeadersCnt = 0;
+
+  /**
+   * Whether the owner may resume on another NUMA node than the one it acquired the lock on
+   */
+  private final boolean multiNode = LockUtils.NUMA_NODES_CNT > 1;
+
+  private final AdaptiveSpin spin = new AdaptiveSpin();
+
+  private final boolean adaptiveSpin;
+
+  private final boolean reentrant;
+
+  /**
+   * Read by the owner on release, may be changed at runtime
+   */
+  private volatile int cohortLimit;
+
+  /**
+   * Written by the owner under the lock
+   */
+  Thread owner;
+  int holds;
+  private int localHandoffs;
+
+  private final VNAStats stats;
+
+  private final FlatCombiner<UnlockInfo> combiner;
+
+  /**
+   * Creates non-reentrant NUMA_MCS lock.
+   */
+  public VNA() {
+    this(false);
+  }
+
+  /**
+   * Creates NUMA_MCS lock.
+   *
+   * @param reentrant whether the owner can acquire the lock again without releasing it
+   */
+  public VNA(boolean reentrant) {
+    this(reentrant, DEFAULT_COHORT_LIMIT);
+  }
+
+  /**
+   * Creates NUMA_MCS lock.
+   *
+   * @param reentrant   whether the owner can acquire the lock again without releasing it
+   * @param cohortLimit how many times in a row the lock can be passed inside a local queue,
+   *                    {@code 0} to release the global flag on every unlock
+   */
+  public VNA(boolean reentrant, int cohortLimit) {
+    this(reentrant, cohortLimit, SpinPolicy.ADAPTIVE);
+  }
+
+  /**
+   * Creates NUMA_MCS lock.
+   *
+   * @param reentrant   whether the owner can acquire the lock again without releasing it
+   * @param cohortLimit how many times in a row the lock can be passed inside a local queue,
+   *                    {@code 0} to release the global flag on every unlock
+   * @param spinPolicy  {@link SpinPolicy#ADAPTIVE} or {@link SpinPolicy#PARK} to park without spinning
+   */
+  public VNA(boolean reentrant, int cohortLimit, SpinPolicy spinPolicy) {
+    checkCohortLimit(cohortLimit);
+    if (spinPolicy == SpinPolicy.SPIN) {
+      throw new IllegalArgumentException("Unsupported spin policy: " + spinPolicy);
+    }
+    this.reentrant = reentrant;
+    this.cohortLimit = cohortLimit;
+    this.adaptiveSpin = spinPolicy == SpinPolicy.ADAPTIVE;
+    this.localQueues = new ArrayList<>();
+    for (int i = 0; i < LockUtils.NUMA_NODES_CNT; i++) {
+      localQueues.add(new AtomicReference<>());
     }
+    this.leaders = new AtomicReferenceArray<>(LockUtils.NUMA_NODES_CNT);
+    this.stats = new VNAStats(LockUtils.NUMA_NODES_CNT);
+    this.combiner = new FlatCombiner<>(this, LockUtils.NUMA_NODES_CNT);
+  }
 
+  private static void checkCohortLimit(int cohortLimit) {
+    if (cohortLimit < 0) {
+      throw new IllegalArgumentException("Negative cohort limit: " + cohortLimit);
+    }
+  }
+
+  private boolean casGlobalLock(boolean expected, boolean newValue) {
+    return VALUE.compareAndSet(this, expected, newValue);
+  }
 
-    private boolean casGlobalLock(boolean expected, boolean newValue) {
-        return VALUE.compareAndSet(this, expected, newValue);
+  @Override
+  public UnlockInfo lock() {
+    var current = Thread.currentThread();
+    if (reentrant && owner == current) {
+      holds++;
+      return REENTRANT_UNLOCK_INFO;
     }
+    return onAcquire(acquire(), current);
+  }
 
-    @Override
-    public UnlockInfo lock() {
-        var node = new Node();
-        var numaId = LockUtils.getByThreadFromThreadLocal(numaNodeThreadLocal, LockUtils.getCurrentCarrierThread());
-        var lockAcquires =
-                LockUtils.getByThreadFromThreadLocal(lockAcquiresThreadLocal, LockUtils.getCurrentCarrierThread());
-        lockAcquires++;
-        if (lockAcquires >= 10_000) {
-            lockAcquires = 1;
-            LockUtils.setByThreadToThreadLocal(numaNodeThreadLocal, LockUtils.getCurrentCarrierThread(),
-                    LockUtils.getNumaNodeId());
-        }
-        LockUtils.setByThreadToThreadLocal(lockAcquiresThreadLocal, LockUtils.getCurrentCarrierThread(), lockAcquires);
+  @Override
+  public <R> R apply(Supplier<R> op) {
+    return combiner.apply(op, getNumaId());
+  }
+
+  private UnlockInfo acquire() {
+    var node = new Node();
+    var numaId = getNumaId();
+
+    if (casGlobalLock(false, true)) {
+      return new UnlockInfo(true, numaId, node);
+    }
+    var event = LockEvents.beginContendedAcquisition();
+    var unlockInfo = acquireQueued(node, numaId);
+    if (event != null) {
+      event.finish(this, numaId, node.queueDepth);
+    }
+    return unlockInfo;
+  }
 
-        if (casGlobalLock(false, true)) {
-            return new UnlockInfo(true, numaId, node);
+  private UnlockInfo acquireQueued(Node node, int numaId) {
+    var localQueue = localQueues.get(numaId);
+    var pred = localQueue.getAndSet(node);
+    stats.onEnqueue(node, pred, numaId);
+    if (pred == null) {
+      node.status = GRANTED;
+    } else {
+      pred.next.set(node);
+      long spinNanos = spinNanos();
+      long spinEnd = 0L;
+      int iterations = 0;
+      boolean parked = false;
+      boolean interrupted = false;
+      while (node.status == WAITING) {
+        iterations++;
+        if (iterations % SPINS_PER_CLOCK_CHECK != 0) {
+          Thread.onSpinWait();
+          continue;
         }
-        var localQueue = localQueues.get(numaId);
-        var pred = localQueue.getAndSet(node);
-        if (pred == null) {
-            while (!casGlobalLock(false, true)) {
-                Thread.onSpinWait();
-            }
-            return new UnlockInfo(false, numaId, node);
+        long now = System.nanoTime();
+        if (spinEnd == 0L) {
+          spinEnd = now + spinNanos;
+        } else if (now - spinEnd >= 0L) {
+          LockSupport.park(this);
+          parked = true;
+          // park returns at once while interrupted, waiter would keep the carrier busy
+          interrupted |= Thread.interrupted();
         }
-        pred.next.set(node);
-        int iterations = 0;
-        while (node.spin) {
-            iterations++;
-            if (iterations == 1024) {
-                LockSupport.park();
-                iterations = 0;
-            }
+      }
+      if (node.status == OWNER) {
+        spin.onHandoff(parked);
+        return selfInterruptIf(interrupted, new UnlockInfo(false, numaId, node));
+      }
+      spin.onHandoff(waitGlobalLock(node, numaId));
+      return selfInterruptIf(interrupted, new UnlockInfo(false, numaId, node));
+    }
+    spin.onHandoff(waitGlobalLock(node, numaId));
+    return new UnlockInfo(false, numaId, node);
+  }
+
+  private long spinNanos() {
+    return adaptiveSpin ? spin.spinNanos() : 0L;
+  }
+
+  private static UnlockInfo selfInterruptIf(boolean interrupted, UnlockInfo unlockInfo) {
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return unlockInfo;
+  }
+
+  /**
+   * Waits for the global lock as a leader of the local queue. After the spin budget the leader parks
+   * and gives the carrier thread away, otherwise the lock holder may never be scheduled again
+   * if it yielded or was unparked on the same carrier.
+   *
+   * <p>Leader is registered while waiting, so the owner of the lock can pass the lock to it directly.
+   *
+   * @return whether the leader parked
+   */
+  private boolean waitGlobalLock(Node node, int numaId) {
+    leaders.set(numaId, node);
+    var spinEvent = LockEvents.beginGlobalSpin();
+    var handoffEvent = LockEvents.beginCrossNodeHandoff();
+    long spinNanos = spinNanos();
+    long spinEnd = 0L;
+    int iterations = 0;
+    boolean parked = false;
+    boolean interrupted = false;
+    while (node.status != OWNER && (globalLock || !casGlobalLock(false, true))) {
+      iterations++;
+      if (iterations % SPINS_PER_CLOCK_CHECK != 0) {
+        Thread.onSpinWait();
+        continue;
+      }
+      long now = System.nanoTime();
+      if (spinEnd == 0L) {
+        spinEnd = now + spinNanos;
+      } else if (now - spinEnd >= 0L) {
+        parkLeader(node, false, 0L);
+        parked = true;
+        interrupted |= Thread.interrupted();
+      }
+    }
+    leaders.set(numaId, null);
+    VNAStats.finishLeaderEvents(this, spinEvent, handoffEvent, node, numaId, node.status == OWNER, parked);
+    selfInterruptIf(interrupted, null);
+    return parked;
+  }
+
+  /**
+   * Parks the leader until the global lock is released or passed to it. Leader is counted before the flag
+   * is checked and releaser checks the count after the flag is cleared, so the wakeup is not lost.
+   */
+  private void parkLeader(Node node, boolean timed, long nanos) {
+    PARKED_LEADERS_CNT.getAndAdd(this, 1);
+    if (globalLock && node.status != OWNER) {
+      if (timed) {
+        LockSupport.parkNanos(this, nanos);
+      } else {
+        LockSupport.park(this);
+      }
+    }
+    PARKED_LEADERS_CNT.getAndAdd(this, -1);
+  }
+
+  private void releaseGlobalLock() {
+    globalLock = false;
+    if (parkedLeadersCnt == 0) {
+      return;
+    }
+    for (int i = 0; i < leaders.length(); i++) {
+      var leader = leaders.get(i);
+      if (leader != null) {
+        LockSupport.unpark(leader.thread);
+      }
+    }
+  }
+
+  /**
+   * Passes the lock to the waiting leader of the next NUMA node after the given one.
+   * Called by the owner, so registered leaders can't get the global flag concurrently.
+   *
+   * @return whether the lock was passed
+   */
+  private boolean passToRemoteLeader(int numaId) {
+    int nodesCnt = leaders.length();
+    for (int i = 1; i < nodesCnt; i++) {
+      if (passToLeader((numaId + i) % nodesCnt, numaId)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Passes the lock to the waiting leader of the given NUMA node, called by the owner.
+   *
+   * @param fromNumaId NUMA node the lock data is passed from
+   * @return whether the lock was passed
+   */
+  private boolean passToLeader(int numaId, int fromNumaId) {
+    var leader = leaders.get(numaId);
+    if (leader == null) {
+      return false;
+    }
+    // read by the leader after the status, only the owner writes it
+    leader.handoffFrom = fromNumaId;
+    if (leader.casStatus(GRANTED, OWNER)) {
+      LockSupport.unpark(leader.thread);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Acquires the lock only if it is free at the time of invocation.
+   *
+   * @return info for releasing lock or {@code null} if the lock is held by another thread
+   */
+  public UnlockInfo tryLock() {
+    var current = Thread.currentThread();
+    if (reentrant && owner == current) {
+      holds++;
+      return REENTRANT_UNLOCK_INFO;
+    }
+    if (!globalLock && casGlobalLock(false, true)) {
+      return onAcquire(new UnlockInfo(true, getNumaId(), null), current);
+    }
+    return null;
+  }
+
+  /**
+   * Acquires the lock if it becomes free within the given waiting time.
+   *
+   * <p>Waiter that is timed out or interrupted leaves the local queue, its successor is not blocked by it.
+   *
+   * @param time the maximum time to wait for the lock
+   * @param unit the time unit of the {@code time} argument
+   * @return info for releasing lock or {@code null} if the waiting time elapsed
+   * @throws InterruptedException if the current thread is interrupted while acquiring the lock
+   */
+  public UnlockInfo tryLock(long time, TimeUnit unit) throws InterruptedException {
+    return lockAbortably(true, unit.toNanos(time));
+  }
+
+  /**
+   * Acquires the lock unless the current thread is interrupted.
+   *
+   * <p>Interrupted waiter leaves the local queue, its successor is not blocked by it.
+   *
+   * @return info for releasing lock
+   * @throws InterruptedException if the current thread is interrupted while acquiring the lock
+   */
+  public UnlockInfo lockInterruptibly() throws InterruptedException {
+    return lockAbortably(false, 0L);
+  }
+
+  private UnlockInfo lockAbortably(boolean timed, long nanos) throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    var current = Thread.currentThread();
+    if (reentrant && owner == current) {
+      holds++;
+      return REENTRANT_UNLOCK_INFO;
+    }
+    return onAcquire(acquireAbortably(timed, nanos), current);
+  }
+
+  private UnlockInfo acquireAbortably(boolean timed, long nanos) throws InterruptedException {
+    final long deadline = timed ? System.nanoTime() + nanos : 0L;
+    var node = new Node();
+    var numaId = getNumaId();
+
+    if (casGlobalLock(false, true)) {
+      return new UnlockInfo(true, numaId, node);
+    }
+    var event = LockEvents.beginContendedAcquisition();
+    var unlockInfo = acquireQueuedAbortably(node, numaId, timed, deadline);
+    if (event != null && unlockInfo != null) {
+      event.finish(this, numaId, node.queueDepth);
+    }
+    return unlockInfo;
+  }
+
+  private UnlockInfo acquireQueuedAbortably(Node node, int numaId, boolean timed, long deadline)
+      throws InterruptedException {
+    var localQueue = localQueues.get(numaId);
+    var pred = localQueue.getAndSet(node);
+    stats.onEnqueue(node, pred, numaId);
+    long spinNanos = spinNanos();
+    if (pred == null) {
+      node.status = GRANTED;
+    } else {
+      pred.next.set(node);
+      long spinEnd = 0L;
+      int iterations = 0;
+      boolean parked = false;
+      while (node.status == WAITING) {
+        boolean interrupted = Thread.interrupted();
+        long now = System.nanoTime();
+        if (interrupted || (timed && deadline - now <= 0L)) {
+          if (node.casStatus(WAITING, ABANDONED)) {
+            return abortResult(interrupted);
+          }
+          if (node.status == OWNER) {
+            // the lock was passed concurrently
+            return acquiredOnAbort(interrupted, numaId, node);
+          }
+          // leadership was granted concurrently, give it to the successor
+          passLocalLeadership(node, localQueue, GRANTED);
+          return abortResult(interrupted);
         }
-        while (!casGlobalLock(false, true)) {
-            Thread.onSpinWait();
+        iterations++;
+        if (iterations % SPINS_PER_CLOCK_CHECK != 0) {
+          Thread.onSpinWait();
+        } else if (spinEnd == 0L) {
+          spinEnd = now + spinNanos;
+        } else if (now - spinEnd >= 0L) {
+          if (timed) {
+            LockSupport.parkNanos(this, deadline - now);
+          } else {
+            LockSupport.park(this);
+          }
+          parked = true;
         }
+      }
+      if (node.status == OWNER) {
+        spin.onHandoff(parked);
         return new UnlockInfo(false, numaId, node);
+      }
+    }
+    leaders.set(numaId, node);
+    var spinEvent = LockEvents.beginGlobalSpin();
+    var handoffEvent = LockEvents.beginCrossNodeHandoff();
+    long spinEnd = 0L;
+    int iterations = 0;
+    boolean parked = false;
+    while (node.status != OWNER && (globalLock || !casGlobalLock(false, true))) {
+      boolean interrupted = Thread.interrupted();
+      long now = System.nanoTime();
+      if (interrupted || (timed && deadline - now <= 0L)) {
+        if (node.casStatus(GRANTED, ABANDONED)) {
+          leaders.set(numaId, null);
+          passLocalLeadership(node, localQueue, GRANTED);
+          return abortResult(interrupted);
+        }
+        // the lock was passed concurrently
+        leaders.set(numaId, null);
+        return acquiredOnAbort(interrupted, numaId, node);
+      }
+      iterations++;
+      if (iterations % SPINS_PER_CLOCK_CHECK != 0) {
+        Thread.onSpinWait();
+      } else if (spinEnd == 0L) {
+        spinEnd = now + spinNanos;
+      } else if (now - spinEnd >= 0L) {
+        parkLeader(node, timed, deadline - now);
+        parked = true;
+      }
+    }
+    leaders.set(numaId, null);
+    VNAStats.finishLeaderEvents(this, spinEvent, handoffEvent, node, numaId, node.status == OWNER, parked);
+    spin.onHandoff(parked);
+    return new UnlockInfo(false, numaId, node);
+  }
+
+  private static UnlockInfo abortResult(boolean interrupted) throws InterruptedException {
+    if (interrupted) {
+      throw new InterruptedException();
+    }
+    return null;
+  }
+
+  /**
+   * The lock was passed to the waiter while it was leaving, keep it and preserve the interrupt
+   */
+  private static UnlockInfo acquiredOnAbort(boolean interrupted, int numaId, Node node) {
+    return selfInterruptIf(interrupted, new UnlockInfo(false, numaId, node));
+  }
+
+  private UnlockInfo onAcquire(UnlockInfo unlockInfo, Thread current) {
+    if (unlockInfo != null) {
+      owner = current;
+      holds = 1;
+      spin.onAcquire(unlockInfo.fastPath);
+      stats.onAcquire(unlockInfo);
+    }
+    return unlockInfo;
+  }
+
+  @Override
+  public LockStats enableStats() {
+    return stats.enable();
+  }
+
+  @Override
+  public LockStats getStats() {
+    return stats.get();
+  }
+
+  /**
+   * @return approximate numbers of threads in the local queues by NUMA node, including the leaders
+   * and the owner, valid only while statistics are enabled
+   */
+  @Override
+  public int[] getQueueLengths() {
+    int[] lengths = new int[localQueues.size()];
+    for (int i = 0; i < lengths.length; i++) {
+      lengths[i] = stats.queueLength(i, localQueues.get(i).get());
     }
+    return lengths;
+  }
+
+  public int getCohortLimit() {
+    return cohortLimit;
+  }
+
+  /**
+   * Changes the cohort limit at runtime, the owner sees the new limit on one of the next releases.
+   *
+   * @param cohortLimit how many times in a row the lock can be passed inside a local queue,
+   *                    {@code 0} to release the global flag on every unlock
+   */
+  public void setCohortLimit(int cohortLimit) {
+    checkCohortLimit(cohortLimit);
+    this.cohortLimit = cohortLimit;
+  }
+
+  /**
+   * @return how long waiters may spin before parking, see {@link AdaptiveSpin}
+   */
+  public long getMaxSpinNanos() {
+    return spin.getMaxSpinNanos();
+  }
+
+  /**
+   * Changes the spin budget at runtime, has no effect with {@link SpinPolicy#PARK}.
+   *
+   * @param maxSpinNanos how long waiters may spin before parking, {@code 0} to park right away
+   */
+  public void setMaxSpinNanos(long maxSpinNanos) {
+    spin.setMaxSpinNanos(maxSpinNanos);
+  }
+
+  /**
+   * @return whether the current thread holds the lock
+   */
+  public boolean isHeldByCurrentThread() {
+    return owner == Thread.currentThread();
+  }
 
-    @Override
-    public void unlock(UnlockInfo unlockInfo) {
-        globalLock = false;
-        if (unlockInfo.fastPath) {
-            return;
+  /**
+   * @return number of holds on the lock by the current thread, zero if it does not hold the lock
+   */
+  public int getHoldCount() {
+    return isHeldByCurrentThread() ? holds : 0;
+  }
+
+  @Override
+  public void unlock(UnlockInfo unlockInfo) {
+    if (unlockInfo == REENTRANT_UNLOCK_INFO) {
+      holds--;
+      return;
+    }
+    owner = null;
+    holds = 0;
+    spin.onRelease();
+    int cohortLimit = this.cohortLimit;
+    boolean handsOff = !unlockInfo.fastPath && cohortLimit != 0;
+    // the carrier is looked up again only if the node of the owner matters for the release
+    int currentNumaId = multiNode && (handsOff || stats.isEnabled()) ? getNumaId() : unlockInfo.numaId;
+    boolean migrated = currentNumaId != unlockInfo.numaId;
+    if (migrated) {
+      stats.recordMigration();
+    }
+    if (unlockInfo.fastPath) {
+      localHandoffs = 0;
+      releaseGlobalLock();
+      return;
+    }
+    var node = unlockInfo.node;
+    var localQueue = localQueues.get(unlockInfo.numaId);
+    if (cohortLimit == 0) {
+      releaseGlobalLock();
+      passLocalLeadership(node, localQueue, GRANTED);
+      return;
+    }
+    if (migrated) {
+      // the owner migrated in the critical section, the leader of its current node is next to the data
+      if (passToLeader(currentNumaId, currentNumaId)) {
+        localHandoffs = 0;
+        stats.recordHandoff(true);
+        passLocalLeadership(node, localQueue, GRANTED);
+        return;
+      }
+    }
+    if (localHandoffs >= cohortLimit) {
+      // if no other node waits, the local queue gets a new budget
+      localHandoffs = 0;
+      if (passToRemoteLeader(unlockInfo.numaId)) {
+        stats.recordHandoff(false);
+        passLocalLeadership(node, localQueue, GRANTED);
+        return;
+      }
+    }
+    localHandoffs++;
+    if (passLocalLeadership(node, localQueue, OWNER)) {
+      stats.recordHandoff(true);
+    } else {
+      localHandoffs = 0;
+      releaseGlobalLock();
+    }
+  }
+
+  /**
+   * Passes leadership of the local queue or the lock itself to the first waiting successor of the node.
+   * Successors that abandoned the queue are skipped.
+   *
+   * @param status {@link #GRANTED} to make the successor a leader, {@link #OWNER} to pass the lock
+   * @return {@code false} if there are no successors, the node was removed from the queue
+   */
+  private boolean passLocalLeadership(Node node, AtomicReference<Node> localQueue, int status) {
+    while (true) {
+      var next = node.next.get();
+      if (next == null) {
+        if (localQueue.compareAndSet(node, null)) {
+          return false;
         }
-        var localQueue = localQueues.get(unlockInfo.numaId);
-        if (unlockInfo.node.next.get() == null) {
-            if (localQueue.compareAndSet(unlockInfo.node, null)) {
-                return;
-            }
-            while (unlockInfo.node.next.get() == null) {
-
-            }
+        while ((next = node.next.get()) == null) {
+          Thread.onSpinWait();
         }
-        unlockInfo.node.next.get().spin = false;
-        LockSupport.unpark(unlockInfo.node.next.get().thread);
+      }
+      if (next.casStatus(WAITING, status)) {
+        LockSupport.unpark(next.thread);
+        return true;
+      }
+      node = next;
     }
+  }
 
-    record UnlockInfo(
-            boolean fastPath,
-            int numaId,
+  int getNumaId() {
+    return LockUtils.getCachedNumaNodeId();
+  }
 
-            Node node
-    ) {
-    }
+  /**
+   * @param numaId NUMA node of the carrier resolved once on acquisition, release reuses it
+   */
+  record UnlockInfo(
+      boolean fastPath,
+      int numaId,
+
+      Node node
+  ) {
+  }
+
+  @Contended
+  static class Node {
 
-    @Contended
-    private static class Node {
+    Thread thread = Thread.currentThread();
 
-        Thread thread = Thread.currentThread();
+    volatile int status = WAITING;
 
-        volatile boolean spin = true;
+    AtomicReference<Node> next = new AtomicReference<>();
 
-        AtomicReference<Node> next = new AtomicReference<>();
+    /**
+     * Statistics of the acquisition, set only if statistics or contention events are enabled, see {@link VNAStats}
+     */
+    int ticket;
+    int queueDepth;
+    long enqueueNanos;
+
+    /**
+     * NUMA node of the owner which passed the lock to this leader
+     */
+    int handoffFrom;
 
+    boolean casStatus(int expected, int newValue) {
+      return STATUS.compareAndSet(this, expected, newValue);
     }
+  }
 }
@@ -0,0 +1,210 @@
+package io.github.ricnorr.numa_locks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Condition of {@link VNALock}.
+ * <p>Waiting threads are kept in a queue of NUMA node where they called {@code await}.
+ * {@link #signal()} prefers waiters of the signalling thread's NUMA node, other nodes are visited in order
+ * when local queue is empty or after {@link #LOCAL_SIGNALS_LIMIT} local signals in a row.
+ * <p>Signalled thread acquires the lock again as a regular {@link VNA} waiter,
+ * so it joins the local queue of its NUMA node.
+ */
+class VNACondition implements Condition {
+  private static final VarHandle STATUS;
+
+  /**
+   * Waiter statuses: waiting for signal, signalled, left by timeout or interrupt
+   */
+  private static final int WAITING = 0;
+  private static final int SIGNALLED = 1;
+  private static final int CANCELLED = 2;
+
+  private static final int LOCAL_SIGNALS_LIMIT = 64;
+
+  static {
+    try {
+      STATUS = MethodHandles.lookup().findVarHandle(Waiter.class, "status", Integer.TYPE);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final VNALock lock;
+
+  /**
+   * Queues are modified only by the thread holding {@link #lock}
+   */
+  private final List<ArrayDeque<Waiter>> waitQueues;
+
+  private int localSignalsInRow = 0;
+
+  VNACondition(VNALock lock) {
+    this.lock = lock;
+    this.waitQueues = new ArrayList<>();
+    for (int i = 0; i < LockUtils.NUMA_NODES_CNT; i++) {
+      waitQueues.add(new ArrayDeque<>());
+    }
+  }
+
+  @Override
+  public void await() throws InterruptedException {
+    awaitInterruptibly(false, 0L);
+  }
+
+  @Override
+  public void awaitUninterruptibly() {
+    checkOwner();
+    var waiter = enqueue();
+    int holds = lock.releaseForAwait();
+    boolean interrupted = false;
+    while (waiter.status == WAITING) {
+      LockSupport.park(this);
+      interrupted |= Thread.interrupted();
+    }
+    lock.reacquireAfterAwait(holds);
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public long awaitNanos(long nanosTimeout) throws InterruptedException {
+    long deadline = System.nanoTime() + nanosTimeout;
+    awaitInterruptibly(true, deadline);
+    return deadline - System.nanoTime();
+  }
+
+  @Override
+  public boolean await(long time, TimeUnit unit) throws InterruptedException {
+    return awaitInterruptibly(true, System.nanoTime() + unit.toNanos(time));
+  }
+
+  @Override
+  public boolean awaitUntil(Date deadline) throws InterruptedException {
+    long nanos = TimeUnit.MILLISECONDS.toNanos(deadline.getTime() - System.currentTimeMillis());
+    return awaitInterruptibly(true, System.nanoTime() + nanos);
+  }
+
+  @Override
+  public void signal() {
+    checkOwner();
+    int home = lock.getOwnerNumaId();
+    int start = home;
+    if (localSignalsInRow >= LOCAL_SIGNALS_LIMIT) {
+      localSignalsInRow = 0;
+      start = home + 1;
+    }
+    for (int i = 0; i < waitQueues.size(); i++) {
+      int numaId = (start + i) % waitQueues.size();
+      Waiter waiter;
+      while ((waiter = waitQueues.get(numaId).poll()) != null) {
+        if (waiter.casStatus(WAITING, SIGNALLED)) {
+          localSignalsInRow = numaId == home ? localSignalsInRow + 1 : 0;
+          LockSupport.unpark(waiter.thread);
+          return;
+        }
+      }
+    }
+  }
+
+  @Override
+  public void signalAll() {
+    checkOwner();
+    localSignalsInRow = 0;
+    for (ArrayDeque<Waiter> waitQueue : waitQueues) {
+      Waiter waiter;
+      while ((waiter = waitQueue.poll()) != null) {
+        if (waiter.casStatus(WAITING, SIGNALLED)) {
+          LockSupport.unpark(waiter.thread);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param deadline {@link System#nanoTime()} to stop waiting at, if timed
+   * @return {@code false} if the waiting time elapsed before the waiter was signalled
+   */
+  private boolean awaitInterruptibly(boolean timed, long deadline) throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    checkOwner();
+    var waiter = enqueue();
+    int holds = lock.releaseForAwait();
+
+    boolean interrupted = false;
+    boolean cancelled = false;
+    while (waiter.status == WAITING) {
+      long remaining = deadline - System.nanoTime();
+      if (timed && remaining <= 0L) {
+        cancelled = waiter.casStatus(WAITING, CANCELLED);
+        break;
+      }
+      if (timed) {
+        LockSupport.parkNanos(this, remaining);
+      } else {
+        LockSupport.park(this);
+      }
+      if (Thread.interrupted()) {
+        interrupted = true;
+        cancelled = waiter.casStatus(WAITING, CANCELLED);
+        break;
+      }
+    }
+
+    lock.reacquireAfterAwait(holds);
+    if (cancelled) {
+      waitQueues.get(waiter.numaId).remove(waiter);
+    }
+    if (interrupted) {
+      if (cancelled) {
+        throw new InterruptedException();
+      }
+      // signalled concurrently, the signal is not lost
+      Thread.currentThread().interrupt();
+    }
+    return !cancelled;
+  }
+
+  private Waiter enqueue() {
+    var waiter = new Waiter(lock.getOwnerNumaId());
+    waitQueues.get(waiter.numaId).add(waiter);
+    return waiter;
+  }
+
+  private void checkOwner() {
+    if (!lock.isHeldByCurrentThread()) {
+      throw new IllegalMonitorStateException();
+    }
+  }
+
+  private static class Waiter {
+
+    final Thread thread = Thread.currentThread();
+
+    /**
+     * Wait queue of the waiter
+     */
+    final int numaId;
+
+    volatile int status = WAITING;
+
+    Waiter(int numaId) {
+      this.numaId = numaId;
+    }
+
+    boolean casStatus(int expected, int newValue) {
+      return STATUS.compareAndSet(this, expected, newValue);
+    }
+  }
+}
@@ -0,0 +1,173 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * <p>{@link Lock} on top of {@link VNA}.
+ * <p>Info for unlocking is kept inside the lock, so it can be used wherever {@link Lock} is expected.
+ * <p>The lock is reentrant if created with {@code new VNALock(true)}, the owner and hold count are kept in
+ * {@link VNA}, so nested acquisitions do not touch queues and the global flag.
+ * <p>Conditions created by {@link #newCondition()} keep waiters in per NUMA node queues, see {@link VNACondition}.
+ * <p>How to use:
+ * <pre> {@code
+ *   Lock lock = new VNALock();
+ *   // ...
+ *   lock.lock();
+ *   try {
+ *     // ... method body
+ *   } finally {
+ *     lock.unlock();
+ *   }
+ * }</pre>
+ */
+public class VNALock implements Lock {
+
+  private final VNA vna;
+
+  /**
+   * Info of the outermost acquisition, written and read only by the thread holding {@link #vna}
+   */
+  private VNA.UnlockInfo unlockInfo;
+
+  /**
+   * Creates non-reentrant lock.
+   */
+  public VNALock() {
+    this(false);
+  }
+
+  /**
+   * Creates lock.
+   *
+   * @param reentrant whether the owner can acquire the lock again without releasing it
+   */
+  public VNALock(boolean reentrant) {
+    this(reentrant, VNA.DEFAULT_COHORT_LIMIT);
+  }
+
+  /**
+   * Creates lock.
+   *
+   * @param reentrant   whether the owner can acquire the lock again without releasing it
+   * @param cohortLimit how many times in a row the lock can be passed inside a NUMA node, see {@link VNA}
+   */
+  public VNALock(boolean reentrant, int cohortLimit) {
+    this(reentrant, cohortLimit, SpinPolicy.ADAPTIVE);
+  }
+
+  /**
+   * Creates lock.
+   *
+   * @param reentrant   whether the owner can acquire the lock again without releasing it
+   * @param cohortLimit how many times in a row the lock can be passed inside a NUMA node, see {@link VNA}
+   * @param spinPolicy  {@link SpinPolicy#ADAPTIVE} or {@link SpinPolicy#PARK}
+   */
+  public VNALock(boolean reentrant, int cohortLimit, SpinPolicy spinPolicy) {
+    this.vna = new VNA(reentrant, cohortLimit, spinPolicy);
+  }
+
+  VNA getVna() {
+    return vna;
+  }
+
+  @Override
+  public void lock() {
+    onAcquire(vna.lock());
+  }
+
+  @Override
+  public void lockInterruptibly() throws InterruptedException {
+    onAcquire(vna.lockInterruptibly());
+  }
+
+  @Override
+  public boolean tryLock() {
+    var info = vna.tryLock();
+    if (info == null) {
+      return false;
+    }
+    onAcquire(info);
+    return true;
+  }
+
+  @Override
+  public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+    var info = vna.tryLock(time, unit);
+    if (info == null) {
+      return false;
+    }
+    onAcquire(info);
+    return true;
+  }
+
+  @Override
+  public void unlock() {
+    if (!vna.isHeldByCurrentThread()) {
+      throw new IllegalMonitorStateException();
+    }
+    if (vna.holds > 1) {
+      vna.unlock(VNA.REENTRANT_UNLOCK_INFO);
+      return;
+    }
+    var info = unlockInfo;
+    unlockInfo = null;
+    vna.unlock(info);
+  }
+
+  /**
+   * @return whether the current thread holds the lock
+   */
+  public boolean isHeldByCurrentThread() {
+    return vna.isHeldByCurrentThread();
+  }
+
+  /**
+   * @return number of holds on the lock by the current thread, zero if it does not hold the lock
+   */
+  public int getHoldCount() {
+    return vna.getHoldCount();
+  }
+
+  @Override
+  public Condition newCondition() {
+    return new VNACondition(this);
+  }
+
+  /**
+   * @return NUMA node of the thread at the moment of the lock acquisition
+   */
+  int getOwnerNumaId() {
+    return unlockInfo.numaId();
+  }
+
+  /**
+   * Fully releases the lock before waiting on condition.
+   *
+   * @return hold count to restore after waiting
+   */
+  int releaseForAwait() {
+    int holds = vna.holds;
+    vna.holds = 1;
+    unlock();
+    return holds;
+  }
+
+  /**
+   * Acquires the lock after waiting on condition.
+   * The thread joins the local queue of NUMA node it is running on now.
+   *
+   * @param holds hold count returned by {@link #releaseForAwait()}
+   */
+  void reacquireAfterAwait(int holds) {
+    lock();
+    vna.holds = holds;
+  }
+
+  private void onAcquire(VNA.UnlockInfo info) {
+    if (info != VNA.REENTRANT_UNLOCK_INFO) {
+      unlockInfo = info;
+    }
+  }
+}
@@ -0,0 +1,386 @@
+package io.github.ricnorr.numa_locks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import jdk.internal.vm.annotation.Contended;
+
+/**
+ * <p>NUMA-aware reader-writer lock for virtual threads.
+ * <p>Readers announce themselves in the counter of their NUMA node, every counter is on its own cache line,
+ * so readers from different NUMA nodes do not write to the same cache line.
+ * <p>Writers are serialized by {@link VNA}, so they are batched by NUMA node in its local queues.
+ * <p>Writers have preference: when a writer is active new readers wait until it releases the lock,
+ * so writers are not starved by a stream of readers.
+ * <p>Waiting readers and writers spin for a while and park then, like the waiters of {@link VNA}. Release
+ * of the write lock unparks the waiting readers, the last reader unparks the waiting writer.
+ * <p>Neither read nor write lock is reentrant, conditions are not supported. Unlock by a thread which does not hold
+ * the lock throws {@link IllegalMonitorStateException}, like {@link java.util.concurrent.locks.ReentrantReadWriteLock}.
+ * <p>How to use:
+ * <pre> {@code
+ *   ReadWriteLock lock = new VNAReadWriteLock();
+ *   // ...
+ *   lock.readLock().lock();
+ *   try {
+ *     // ... read
+ *   } finally {
+ *     lock.readLock().unlock();
+ *   }
+ * }</pre>
+ */
+public class VNAReadWriteLock implements ReadWriteLock {
+
+  private static final int SPINS_BEFORE_PARK = 1024;
+
+  /**
+   * Results of waiting: the thread can proceed, the waiting time elapsed, the thread was interrupted
+   */
+  private static final int DONE = 0;
+  private static final int TIMED_OUT = 1;
+  private static final int INTERRUPTED = 2;
+
+  private final VNA writersLock = new VNA();
+
+  private final ReadersCounter[] readersCounters;
+
+  @Contended
+  private volatile boolean writerActive = false;
+
+  /**
+   * Writer parked until readers drain, {@code null} if none
+   */
+  private volatile Thread parkedWriter;
+
+  /**
+   * Readers parked until the active writer releases the lock, by NUMA node
+   */
+  private final List<ConcurrentLinkedQueue<Thread>> parkedReaders;
+
+  /**
+   * Info of the writer holding {@link #writersLock}
+   */
+  private VNA.UnlockInfo writerUnlockInfo;
+
+  /**
+   * Read holds of the thread, the counters of NUMA nodes can't tell which threads hold the read lock
+   */
+  private final ThreadLocal<HoldCount> readHolds = ThreadLocal.withInitial(HoldCount::new);
+
+  private final ReadLock readLock = new ReadLock();
+
+  private final WriteLock writeLock = new WriteLock();
+
+  /**
+   * Creates reader-writer lock.
+   */
+  public VNAReadWriteLock() {
+    this.readersCounters = new ReadersCounter[LockUtils.NUMA_NODES_CNT];
+    this.parkedReaders = new ArrayList<>();
+    for (int i = 0; i < readersCounters.length; i++) {
+      readersCounters[i] = new ReadersCounter();
+      parkedReaders.add(new ConcurrentLinkedQueue<>());
+    }
+  }
+
+  @Override
+  public Lock readLock() {
+    return readLock;
+  }
+
+  @Override
+  public Lock writeLock() {
+    return writeLock;
+  }
+
+  private boolean tryAcquireRead() {
+    var counter = readersCounters[writersLock.getNumaId()];
+    counter.add(1);
+    if (!writerActive) {
+      onReadAcquired(counter);
+      return true;
+    }
+    releaseRead(counter);
+    return false;
+  }
+
+  /**
+   * Counts the hold of the thread. Reader may be unlocked on another NUMA node, only the sum of counters
+   * is meaningful, so the counter resolved on acquisition is reused on release without looking up the carrier.
+   */
+  private void onReadAcquired(ReadersCounter counter) {
+    var holds = readHolds.get();
+    holds.count++;
+    holds.counter = counter;
+  }
+
+  /**
+   * Leaves the counter and wakes up the writer waiting for readers to drain.
+   */
+  private void releaseRead(ReadersCounter counter) {
+    counter.add(-1);
+    // writer publishes itself before it checks the counters
+    if (writerActive) {
+      var writer = parkedWriter;
+      if (writer != null) {
+        LockSupport.unpark(writer);
+      }
+    }
+  }
+
+  private boolean hasReaders() {
+    long readers = 0;
+    for (ReadersCounter counter : readersCounters) {
+      readers += counter.count;
+    }
+    return readers != 0;
+  }
+
+  /**
+   * @return {@link #DONE}, {@link #TIMED_OUT} or {@link #INTERRUPTED}
+   */
+  private int acquireRead(boolean interruptible, boolean timed, long nanos) {
+    final long deadline = timed ? System.nanoTime() + nanos : 0L;
+    while (!tryAcquireRead()) {
+      int result = awaitWhile(() -> writerActive, false, interruptible, timed, deadline);
+      if (result != DONE) {
+        return result;
+      }
+    }
+    return DONE;
+  }
+
+  /**
+   * Waits for readers to drain while holding {@link #writersLock}, releases it if the wait is stopped.
+   *
+   * @return {@link #DONE}, {@link #TIMED_OUT} or {@link #INTERRUPTED}
+   */
+  private int awaitReaders(VNA.UnlockInfo info, boolean interruptible, boolean timed, long deadline) {
+    writerActive = true;
+    int result = awaitWhile(this::hasReaders, true, interruptible, timed, deadline);
+    if (result == DONE) {
+      writerUnlockInfo = info;
+    } else {
+      releaseWrite(info);
+    }
+    return result;
+  }
+
+  private void releaseWrite(VNA.UnlockInfo info) {
+    writerActive = false;
+    writersLock.unlock(info);
+    // readers publish themselves before they check the flag
+    for (ConcurrentLinkedQueue<Thread> readers : parkedReaders) {
+      for (Thread reader : readers) {
+        LockSupport.unpark(reader);
+      }
+    }
+  }
+
+  /**
+   * Spins while the condition holds and parks after a while, the thread changing the condition unparks it.
+   * Interrupt is preserved if it does not stop waiting.
+   *
+   * @param writer whether the thread waits for readers, otherwise for the writer
+   * @return {@link #DONE}, {@link #TIMED_OUT} or {@link #INTERRUPTED}
+   */
+  private int awaitWhile(SpinCondition condition, boolean writer, boolean interruptible, boolean timed,
+                         long deadline) {
+    int spins = 0;
+    boolean interrupted = false;
+    int result = DONE;
+    while (condition.holds()) {
+      if (Thread.interrupted()) {
+        if (interruptible) {
+          result = INTERRUPTED;
+          break;
+        }
+        interrupted = true;
+      }
+      long now = timed ? System.nanoTime() : 0L;
+      if (timed && deadline - now <= 0L) {
+        result = TIMED_OUT;
+        break;
+      }
+      if (++spins < SPINS_BEFORE_PARK) {
+        Thread.onSpinWait();
+      } else {
+        park(condition, writer, timed, deadline - now);
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return result;
+  }
+
+  private void park(SpinCondition condition, boolean writer, boolean timed, long nanos) {
+    var current = Thread.currentThread();
+    ConcurrentLinkedQueue<Thread> readers = null;
+    if (writer) {
+      parkedWriter = current;
+    } else {
+      readers = parkedReaders.get(writersLock.getNumaId());
+      readers.add(current);
+    }
+    if (condition.holds()) {
+      if (timed) {
+        LockSupport.parkNanos(this, nanos);
+      } else {
+        LockSupport.park(this);
+      }
+    }
+    if (writer) {
+      parkedWriter = null;
+    } else {
+      readers.remove(current);
+    }
+  }
+
+  @FunctionalInterface
+  private interface SpinCondition {
+    boolean holds();
+  }
+
+  private class ReadLock implements Lock {
+
+    @Override
+    public void lock() {
+      acquireRead(false, false, 0L);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+      if (Thread.interrupted() || acquireRead(true, false, 0L) == INTERRUPTED) {
+        throw new InterruptedException();
+      }
+    }
+
+    @Override
+    public boolean tryLock() {
+      return tryAcquireRead();
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      int result = acquireRead(true, true, unit.toNanos(time));
+      if (result == INTERRUPTED) {
+        throw new InterruptedException();
+      }
+      return result == DONE;
+    }
+
+    @Override
+    public void unlock() {
+      var holds = readHolds.get();
+      if (holds.count == 0) {
+        throw new IllegalMonitorStateException();
+      }
+      holds.count--;
+      releaseRead(holds.counter);
+    }
+
+    @Override
+    public Condition newCondition() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private class WriteLock implements Lock {
+
+    @Override
+    public void lock() {
+      awaitReaders(writersLock.lock(), false, false, 0L);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+      if (awaitReaders(writersLock.lockInterruptibly(), true, false, 0L) == INTERRUPTED) {
+        throw new InterruptedException();
+      }
+    }
+
+    @Override
+    public boolean tryLock() {
+      var info = writersLock.tryLock();
+      if (info == null) {
+        return false;
+      }
+      writerActive = true;
+      if (hasReaders()) {
+        releaseWrite(info);
+        return false;
+      }
+      writerUnlockInfo = info;
+      return true;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+      long nanos = unit.toNanos(time);
+      final long deadline = System.nanoTime() + nanos;
+      var info = writersLock.tryLock(nanos, TimeUnit.NANOSECONDS);
+      if (info == null) {
+        return false;
+      }
+      int result = awaitReaders(info, true, true, deadline);
+      if (result == INTERRUPTED) {
+        throw new InterruptedException();
+      }
+      return result == DONE;
+    }
+
+    @Override
+    public void unlock() {
+      if (!writersLock.isHeldByCurrentThread()) {
+        throw new IllegalMonitorStateException();
+      }
+      var info = writerUnlockInfo;
+      writerUnlockInfo = null;
+      releaseWrite(info);
+    }
+
+    @Override
+    public Condition newCondition() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static final class HoldCount {
+    int count;
+
+    /**
+     * Counter of the last read acquisition
+     */
+    ReadersCounter counter;
+  }
+
+  @Contended
+  private static class ReadersCounter {
+    private static final VarHandle COUNT;
+
+    static {
+      try {
+        COUNT = MethodHandles.lookup().findVarHandle(ReadersCounter.class, "count", Long.TYPE);
+      } catch (ReflectiveOperationException e) {
+        throw new ExceptionInInitializerError(e);
+      }
+    }
+
+    volatile long count = 0;
+
+    void add(long delta) {
+      COUNT.getAndAdd(this, delta);
+    }
+  }
+}
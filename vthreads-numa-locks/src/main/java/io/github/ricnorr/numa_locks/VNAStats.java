@@ -0,0 +1,124 @@
+package io.github.ricnorr.numa_locks;
+
+/**
+ * <p>Statistics and contention events of {@link VNA}.
+ * <p>Nodes are numbered in their local queue while statistics or {@link LockEvents.ContendedAcquisition} are enabled.
+ * The ticket of the last node of each local queue which got the lock gives the queue depth of new waiters
+ * and the lengths of the queues.
+ * <p>Apart from the numbering of a new node, which the waiter does, methods are called by the owner.
+ */
+final class VNAStats {
+
+  /**
+   * {@code null} until {@link #enable()}
+   */
+  private LockStats stats;
+
+  /**
+   * Ticket of the last node of each local queue which got the lock
+   */
+  private final int[] headTickets;
+
+  VNAStats(int queuesCnt) {
+    this.headTickets = new int[queuesCnt];
+  }
+
+  synchronized LockStats enable() {
+    if (stats == null) {
+      stats = new LockStats();
+    }
+    return stats;
+  }
+
+  boolean isEnabled() {
+    return stats != null;
+  }
+
+  /**
+   * @return statistics or {@code null} if not enabled
+   */
+  LockStats get() {
+    return stats;
+  }
+
+  /**
+   * Numbers the node in its local queue for the queue depth in the statistics
+   * and the queue position in {@link LockEvents.ContendedAcquisition}
+   *
+   * @param pred predecessor in the local queue, {@code null} if the queue was empty
+   */
+  void onEnqueue(VNA.Node node, VNA.Node pred, int numaId) {
+    if (stats != null) {
+      node.enqueueNanos = System.nanoTime();
+    } else if (!LockEvents.isContendedAcquisitionEnabled()) {
+      return;
+    }
+    if (pred != null) {
+      node.ticket = pred.ticket + 1;
+      // the queue may have been empty since the head got the lock, but the predecessor is ahead anyway
+      node.queueDepth = Math.max(1, node.ticket - headTickets[numaId]);
+    }
+  }
+
+  void onAcquire(VNA.UnlockInfo unlockInfo) {
+    var stats = this.stats;
+    if (stats != null) {
+      recordAcquire(stats, unlockInfo);
+    } else if (!unlockInfo.fastPath() && LockEvents.isContendedAcquisitionEnabled()) {
+      headTickets[unlockInfo.numaId()] = unlockInfo.node().ticket;
+    }
+  }
+
+  private void recordAcquire(LockStats stats, VNA.UnlockInfo unlockInfo) {
+    if (unlockInfo.fastPath()) {
+      stats.recordFastPath();
+      return;
+    }
+    var node = unlockInfo.node();
+    headTickets[unlockInfo.numaId()] = node.ticket;
+    // zero if the node was enqueued before stats were enabled
+    if (node.enqueueNanos != 0L) {
+      stats.recordQueued(node.queueDepth, System.nanoTime() - node.enqueueNanos);
+    }
+  }
+
+  void recordHandoff(boolean local) {
+    var stats = this.stats;
+    if (stats != null) {
+      stats.recordHandoff(local);
+    }
+  }
+
+  void recordMigration() {
+    var stats = this.stats;
+    if (stats != null) {
+      stats.recordMigration();
+    }
+  }
+
+  /**
+   * @param tail tail of the local queue, {@code null} if it is empty
+   * @return approximate number of threads in the local queue, including the leader and the owner
+   */
+  int queueLength(int numaId, VNA.Node tail) {
+    return tail == null ? 0 : Math.max(1, tail.ticket - headTickets[numaId] + 1);
+  }
+
+  /**
+   * Commits the event of the leader which got the lock: passed from another NUMA node
+   * or taken by the leader itself. The lock passed by the owner which migrated to the node of the leader
+   * is not a cross-node handoff. Events are {@code null} if disabled.
+   *
+   * @param passed whether the lock was passed to the leader by the owner
+   */
+  static void finishLeaderEvents(VNA lock, LockEvents.GlobalSpin spinEvent, LockEvents.CrossNodeHandoff handoffEvent,
+                                 VNA.Node node, int numaId, boolean passed, boolean parked) {
+    if (passed && node.handoffFrom != numaId) {
+      if (handoffEvent != null) {
+        handoffEvent.finish(lock, node.handoffFrom, numaId, parked);
+      }
+    } else if (spinEvent != null) {
+      spinEvent.finish(lock, numaId, parked);
+    }
+  }
+}
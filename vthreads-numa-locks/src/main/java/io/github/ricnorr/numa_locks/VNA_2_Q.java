@@ -10,7 +10,7 @@ import java.util.concurrent.locks.LockSupport;
 import jdk.internal.vm.annotation.Contended;
 
 @Contended
-public class VNA_2_Q implements VthreadNumaLock<VNA_2_Q.UnlockInfo> {
+public class VNA_2_Q implements TryNumaLock<VNA_2_Q.UnlockInfo> {
     private static final VarHandle VALUE;
 
     static {
@@ -23,16 +23,26 @@ public class VNA_2_Q implements VthreadNumaLock<VNA_2_Q.UnlockInfo> {
     }
 
     final List<AtomicReference<Node>> localQueues;
-    ThreadLocal<Integer> numaNodeThreadLocal = ThreadLocal.withInitial(LockUtils::getNumaNodeId);
-    ThreadLocal<Integer> lockAcquiresThreadLocal = ThreadLocal.withInitial(() -> 0);
     volatile boolean globalLock = false;
 
+    private final TopologyLevel level;
+
     /**
-     * Creates NUMA_MCS lock.
+     * Creates NUMA_MCS lock with a local queue per package.
      */
     public VNA_2_Q() {
+        this(TopologyLevel.PACKAGE);
+    }
+
+    /**
+     * Creates NUMA_MCS lock.
+     *
+     * @param level level of the local queues
+     */
+    public VNA_2_Q(TopologyLevel level) {
+        this.level = level;
         this.localQueues = new ArrayList<>();
-        for (int i = 0; i < LockUtils.NUMA_NODES_CNT; i++) {
+        for (int i = 0; i < level.count(); i++) {
             localQueues.add(new AtomicReference<>());
         }
     }
@@ -45,17 +55,7 @@ public class VNA_2_Q implements VthreadNumaLock<VNA_2_Q.UnlockInfo> {
     @Override
     public UnlockInfo lock() {
         var node = new Node();
-        var superNumaId = LockUtils.getByThreadFromThreadLocal(numaNodeThreadLocal,
-                LockUtils.getCurrentCarrierThread()) / 2;
-        var lockAcquires =
-                LockUtils.getByThreadFromThreadLocal(lockAcquiresThreadLocal, LockUtils.getCurrentCarrierThread());
-        lockAcquires++;
-        if (lockAcquires >= 10_000) {
-            lockAcquires = 1;
-            LockUtils.setByThreadToThreadLocal(numaNodeThreadLocal, LockUtils.getCurrentCarrierThread(),
-                    LockUtils.getNumaNodeId());
-        }
-        LockUtils.setByThreadToThreadLocal(lockAcquiresThreadLocal, LockUtils.getCurrentCarrierThread(), lockAcquires);
+        var superNumaId = level.getCachedId();
 
         if (casGlobalLock(false, true)) {
             return new UnlockInfo(true, superNumaId, node);
@@ -83,6 +83,14 @@ public class VNA_2_Q implements VthreadNumaLock<VNA_2_Q.UnlockInfo> {
         return new UnlockInfo(false, superNumaId, node);
     }
 
+    @Override
+    public UnlockInfo tryLock() {
+        if (casGlobalLock(false, true)) {
+            return new UnlockInfo(true, level.getCachedId(), null);
+        }
+        return null;
+    }
+
     @Override
     public void unlock(UnlockInfo unlockInfo) {
         globalLock = false;
@@ -0,0 +1,61 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Switching of {@link AdaptiveNumaLock} between modes by the failed fast path rate and the queue depth.
+ */
+@Timeout(60)
+class AdaptiveNumaLockTest extends ConcurrentTestSupport {
+
+  @Test
+  void queuesUnderContentionAndSpinsAgainWithout() throws Exception {
+    var lock = new AdaptiveNumaLock();
+    runContended(lock, 16, 1_000);
+    assertTrue(lock.getModeSwitchesCnt() >= 1, "switched to queueing");
+
+    for (int i = 0; i < 1_000; i++) {
+      lock.unlock(lock.lock());
+    }
+    assertEquals(AdaptiveNumaLock.Mode.TTAS, lock.getMode());
+  }
+
+  @Test
+  void pairTakingTurnsKeepsSpinning() throws Exception {
+    var lock = new AdaptiveNumaLock();
+    runContended(lock, 2, 5_000);
+    assertEquals(0, lock.getModeSwitchesCnt());
+    assertEquals(AdaptiveNumaLock.Mode.TTAS, lock.getMode());
+  }
+
+  /**
+   * Threads yield inside and outside the critical section, so the lock is found held by every other thread
+   */
+  private void runContended(AdaptiveNumaLock lock, int threadsCnt, int iterations) throws InterruptedException {
+    var inside = new AtomicInteger();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < threadsCnt; t++) {
+      threads.add(start(() -> {
+        for (int i = 0; i < iterations; i++) {
+          Thread.yield();
+          var unlockInfo = lock.lock();
+          assertEquals(1, inside.incrementAndGet());
+          for (int j = 0; j < 4; j++) {
+            Thread.yield();
+          }
+          inside.decrementAndGet();
+          lock.unlock(unlockInfo);
+        }
+      }));
+    }
+    joinAll(threads);
+  }
+}
@@ -0,0 +1,66 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.jupiter.api.AfterEach;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Base of tests running virtual threads: failures of the threads are collected and fail the test after it ends,
+ * an assertion failed in a thread would be lost otherwise.
+ */
+abstract class ConcurrentTestSupport {
+
+  private final Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+  @AfterEach
+  void noFailures() {
+    failures.forEach(Throwable::printStackTrace);
+    assertTrue(failures.isEmpty(), "threads failed: " + failures);
+  }
+
+  /**
+   * Starts a virtual thread, its failure fails the test
+   */
+  Thread start(Action action) {
+    return Thread.ofVirtual().start(() -> {
+      try {
+        action.run();
+      } catch (Throwable e) {
+        failures.add(e);
+      }
+    });
+  }
+
+  static void joinAll(Thread... threads) throws InterruptedException {
+    for (Thread thread : threads) {
+      thread.join();
+    }
+  }
+
+  static void joinAll(Collection<Thread> threads) throws InterruptedException {
+    for (Thread thread : threads) {
+      thread.join();
+    }
+  }
+
+  static void spin(long nanos) {
+    long end = System.nanoTime() + nanos;
+    while (System.nanoTime() - end < 0) {
+      Thread.onSpinWait();
+    }
+  }
+
+  static void awaitParked(Thread thread) throws InterruptedException {
+    while (thread.getState() != Thread.State.WAITING) {
+      Thread.sleep(1);
+    }
+  }
+
+  interface Action {
+    void run() throws Exception;
+  }
+}
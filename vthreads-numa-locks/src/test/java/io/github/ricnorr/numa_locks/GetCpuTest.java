@@ -0,0 +1,58 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * {@link GetCpu} implementations report the same CPU and the same dense NUMA node id of {@link Topology}.
+ */
+@Timeout(60)
+class GetCpuTest {
+
+  @Test
+  void implementationsAgreeOnEveryCpu() throws Exception {
+    var jna = GetCpu.jna();
+    var foreign = GetCpu.foreign();
+    var topology = Topology.get();
+    var pinned = new AtomicInteger();
+    for (int cpu = 0; cpu < topology.getCpusCnt(); cpu++) {
+      int pinnedCpu = cpu;
+      var failure = new AtomicReference<Throwable>();
+      // a pinned platform thread can't migrate between the calls
+      var thread = Thread.ofPlatform().start(() -> {
+        try {
+          if (!CpuAffinity.pinCurrentThread(new int[] {pinnedCpu})) {
+            return;
+          }
+          pinned.incrementAndGet();
+          assertEquals(pinnedCpu, jna.getCpuId());
+          assertEquals(pinnedCpu, foreign.getCpuId());
+          int node = topology.getNumaNodeId(pinnedCpu);
+          assertEquals(node, jna.getNumaNodeId());
+          assertEquals(node, foreign.getNumaNodeId());
+          assertTrue(node >= 0 && node < topology.getNumaNodesCnt());
+        } catch (Throwable e) {
+          failure.set(e);
+        }
+      });
+      thread.join();
+      assertNull(failure.get(), () -> "CPU " + pinnedCpu + ": " + failure.get());
+    }
+    assumeTrue(pinned.get() > 0, "threads can't be pinned on this host");
+  }
+
+  @Test
+  void numaNodeIsDenseOnVirtualThreads() throws Exception {
+    var result = new AtomicReference<Integer>();
+    Thread.ofVirtual().start(() -> result.set(GetCpu.foreign().getNumaNodeId())).join();
+    assertTrue(result.get() >= 0 && result.get() < Topology.get().getNumaNodesCnt());
+  }
+}
@@ -0,0 +1,106 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Phases of {@link NumaBarrier} with arrivals combined by the tree of an emulated topology
+ * with 2 packages, 4 NUMA nodes and 8 clusters.
+ */
+@Timeout(60)
+class NumaBarrierTest extends ConcurrentTestSupport {
+
+  /**
+   * 8 CPUs, a core and a NUMA node each
+   */
+  private static final Topology TOPOLOGY = Topology.emulate(new Topology(
+      new long[] {0, 1, 2, 3, 4, 5, 6, 7},
+      new long[] {0, 1, 2, 3, 4, 5, 6, 7},
+      new long[] {0, 0, 0, 0, 0, 0, 0, 0},
+      new long[] {0, 0, 0, 0, 0, 0, 0, 0}), "packages=2,nodes=4,clusters=8");
+
+  private static final int PHASES = 500;
+
+  /**
+   * Cluster of the thread in {@link #TOPOLOGY}
+   */
+  private static final ThreadLocal<Integer> CLUSTER = ThreadLocal.withInitial(() -> 0);
+
+  @Test
+  void partiesOfAllClustersAdvanceTogether() throws Exception {
+    int parties = 19;
+    var barrier = newBarrier(parties);
+    var arrivals = new AtomicInteger();
+    var threads = new Thread[parties];
+    for (int t = 0; t < parties; t++) {
+      int cluster = t % TOPOLOGY.getClustersCnt();
+      threads[t] = start(() -> {
+        CLUSTER.set(cluster);
+        for (int phase = 0; phase < PHASES; phase++) {
+          arrivals.incrementAndGet();
+          assertEquals(phase, barrier.arriveAndAwaitAdvance());
+          assertTrue(arrivals.get() >= (phase + 1) * parties, "advanced before all parties arrived");
+          assertTrue(barrier.getPhase() > phase);
+        }
+      });
+    }
+    joinAll(threads);
+    assertEquals(PHASES, barrier.getPhase());
+    assertEquals(PHASES * parties, arrivals.get());
+  }
+
+  @Test
+  void arriveAndAwaitAdvanceSeparately() throws Exception {
+    int parties = 8;
+    var barrier = newBarrier(parties);
+    var arrivals = new AtomicInteger();
+    var threads = new Thread[parties - 1];
+    for (int t = 0; t < threads.length; t++) {
+      // clusters 1..7, the test thread arrives from cluster 0
+      int cluster = t + 1;
+      threads[t] = start(() -> {
+        CLUSTER.set(cluster);
+        for (int phase = 0; phase < PHASES; phase++) {
+          arrivals.incrementAndGet();
+          int arrived = barrier.arrive();
+          assertEquals(phase, arrived);
+          assertEquals(phase + 1, barrier.awaitAdvance(arrived));
+          assertTrue(arrivals.get() >= (phase + 1) * parties, "advanced before all parties arrived");
+        }
+      });
+    }
+    for (int phase = 0; phase < PHASES; phase++) {
+      arrivals.incrementAndGet();
+      int arrived = barrier.arrive();
+      assertEquals(phase, arrived);
+      assertEquals(phase + 1, barrier.awaitAdvance(arrived));
+      // waiting for a completed phase returns immediately
+      assertEquals(phase + 1, barrier.awaitAdvance(arrived));
+    }
+    joinAll(threads);
+    assertEquals(PHASES, barrier.getPhase());
+  }
+
+  @Test
+  void singlePartyAdvancesOnHostTopology() {
+    var barrier = new NumaBarrier(1);
+    for (int phase = 0; phase < PHASES; phase++) {
+      assertEquals(phase, barrier.arriveAndAwaitAdvance());
+      assertEquals(phase + 1, barrier.getPhase());
+    }
+  }
+
+  private static NumaBarrier newBarrier(int parties) {
+    return new NumaBarrier(parties, TOPOLOGY) {
+      @Override
+      int getClusterId() {
+        return CLUSTER.get();
+      }
+    };
+  }
+}
@@ -0,0 +1,200 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link Lock#tryLock()} of the locks built by {@link NumaLocks.Builder#buildLock()}, on top of a global flag
+ * or empty queues, and waiting of queue heads for the global flag.
+ */
+@Timeout(60)
+class NumaLockAdapterTest extends ConcurrentTestSupport {
+
+  @ParameterizedTest
+  @EnumSource(value = NumaLocks.Algorithm.class, names = {"HMCS", "CNA", "VNA_2_Q", "HSPIN", "ADAPTIVE"})
+  void tryLockFailsWhileHeld(NumaLocks.Algorithm algorithm) throws Exception {
+    var lock = build(algorithm);
+    assertTrue(lock.tryLock());
+    var result = new AtomicReference<Boolean>();
+    Thread.ofVirtual().start(() -> result.set(lock.tryLock())).join();
+    assertEquals(false, result.get());
+    lock.unlock();
+    assertTrue(lock.tryLock());
+    lock.unlock();
+  }
+
+  @ParameterizedTest
+  @EnumSource(value = NumaLocks.Algorithm.class, names = {"HMCS", "CNA", "VNA_2_Q", "HSPIN", "ADAPTIVE"})
+  void timedTryLockWaitsForRelease(NumaLocks.Algorithm algorithm) throws Exception {
+    var lock = build(algorithm);
+    lock.lock();
+    var timedOut = new AtomicReference<Boolean>();
+    start(() -> timedOut.set(!lock.tryLock(10, TimeUnit.MILLISECONDS))).join();
+    assertEquals(true, timedOut.get());
+
+    var started = new AtomicBoolean();
+    var acquired = new AtomicReference<Boolean>();
+    var waiter = start(() -> {
+      started.set(true);
+      acquired.set(lock.tryLock(10, TimeUnit.SECONDS));
+      lock.unlock();
+    });
+    while (!started.get()) {
+      Thread.onSpinWait();
+    }
+    Thread.sleep(20);
+    lock.unlock();
+    waiter.join();
+    assertEquals(true, acquired.get());
+  }
+
+  @Test
+  void timedTryLockIsInterruptible() throws Exception {
+    var lock = build(NumaLocks.Algorithm.HMCS);
+    lock.lock();
+    var interrupted = new AtomicReference<Boolean>();
+    var waiter = Thread.ofVirtual().start(() -> {
+      try {
+        lock.tryLock(1, TimeUnit.MINUTES);
+        interrupted.set(false);
+      } catch (InterruptedException e) {
+        interrupted.set(true);
+      }
+    });
+    Thread.sleep(20);
+    waiter.interrupt();
+    waiter.join();
+    assertEquals(true, interrupted.get());
+    lock.unlock();
+    assertTrue(lock.tryLock());
+    lock.unlock();
+  }
+
+  @ParameterizedTest
+  @EnumSource(value = NumaLocks.Algorithm.class, names = {"HMCS", "CNA"})
+  void queueHeadParksWhileFlagIsHeld(NumaLocks.Algorithm algorithm) throws Exception {
+    var lock = NumaLocks.builder().algorithm(algorithm).fastPath(true).spinPolicy(SpinPolicy.PARK).buildLock();
+    // fast path, the waiter becomes the head of the empty queue and waits for the flag
+    assertTrue(lock.tryLock());
+    var acquired = new AtomicBoolean();
+    var waiter = start(() -> {
+      lock.lock();
+      acquired.set(true);
+      lock.unlock();
+    });
+    awaitParked(waiter);
+    assertFalse(acquired.get());
+    lock.unlock();
+    waiter.join();
+    assertTrue(acquired.get());
+  }
+
+  @ParameterizedTest
+  @EnumSource(value = NumaLocks.Algorithm.class, names = {"HMCS", "CNA"})
+  void fastPathAndQueueHeadExcludeEachOther(NumaLocks.Algorithm algorithm) throws Exception {
+    var lock = NumaLocks.builder().algorithm(algorithm).fastPath(true).spinPolicy(SpinPolicy.PARK).buildLock();
+    var inside = new AtomicInteger();
+    var threads = new Thread[16];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = start(() -> {
+        for (int i = 0; i < 2_000; i++) {
+          lock.lock();
+          assertEquals(1, inside.incrementAndGet(), "one owner");
+          if (i % 16 == 0) {
+            Thread.yield();
+          }
+          inside.decrementAndGet();
+          lock.unlock();
+        }
+      });
+    }
+    joinAll(threads);
+  }
+
+  @ParameterizedTest
+  @EnumSource(value = NumaLocks.Algorithm.class, names = {"HMCS", "CNA"})
+  void tryLockWithoutFastPathTakesEmptyQueues(NumaLocks.Algorithm algorithm) throws Exception {
+    var builder = NumaLocks.builder().algorithm(algorithm).fastPath(false);
+    if (algorithm == NumaLocks.Algorithm.HMCS) {
+      builder.levels(TopologyLevel.CLUSTER, TopologyLevel.NUMA_NODE);
+    }
+    var lock = builder.buildLock();
+    assertTrue(lock.tryLock());
+    var result = new AtomicReference<Boolean>();
+    Thread.ofVirtual().start(() -> result.set(lock.tryLock())).join();
+    assertEquals(false, result.get());
+    var acquired = new AtomicBoolean();
+    var waiter = Thread.ofVirtual().start(() -> {
+      lock.lock();
+      acquired.set(true);
+      lock.unlock();
+    });
+    Thread.sleep(20);
+    assertFalse(acquired.get());
+    lock.unlock();
+    waiter.join();
+    assertTrue(acquired.get());
+    assertTrue(lock.tryLock());
+    lock.unlock();
+  }
+
+  @ParameterizedTest
+  @EnumSource(value = NumaLocks.Algorithm.class, names = {"HMCS", "CNA"})
+  void tryLockWithoutFastPathExcludesQueuedOwners(NumaLocks.Algorithm algorithm) throws Exception {
+    var lock = NumaLocks.builder().algorithm(algorithm).fastPath(false).buildLock();
+    var inside = new AtomicInteger();
+    var threads = new Thread[16];
+    for (int t = 0; t < threads.length; t++) {
+      boolean tries = t % 2 == 0;
+      threads[t] = start(() -> {
+        for (int i = 0; i < 2_000; i++) {
+          if (tries) {
+            if (!lock.tryLock()) {
+              continue;
+            }
+          } else {
+            lock.lock();
+          }
+          assertEquals(1, inside.incrementAndGet(), "one owner");
+          if (i % 16 == 0) {
+            Thread.yield();
+          }
+          inside.decrementAndGet();
+          lock.unlock();
+        }
+      });
+    }
+    joinAll(threads);
+    assertTrue(lock.tryLock());
+    lock.unlock();
+  }
+
+  @Test
+  void lockWhichCantBeTakenWithoutWaitingIsRejected() {
+    var builder = NumaLocks.builder().algorithm(NumaLocks.Algorithm.HCLH);
+    assertThrows(IllegalArgumentException.class, builder::buildLock);
+    assertInstanceOf(HCLH.class, builder.build());
+  }
+
+  private static Lock build(NumaLocks.Algorithm algorithm) {
+    var builder = NumaLocks.builder().algorithm(algorithm);
+    if (algorithm == NumaLocks.Algorithm.HMCS || algorithm == NumaLocks.Algorithm.CNA) {
+      builder.fastPath(true);
+    }
+    return builder.buildLock();
+  }
+}
@@ -0,0 +1,140 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Waiters of {@link NumaSemaphore} leaving by timeout or interrupt must neither lose nor duplicate permits
+ * and must not strand the waiters queued after them.
+ */
+@Timeout(60)
+class NumaSemaphoreTest extends ConcurrentTestSupport {
+
+  @Test
+  void timedOutLeaderPassesLeadership() throws Exception {
+    var semaphore = newSemaphore(0);
+    var result = new AtomicReference<Boolean>();
+    var timedOut = start(() -> result.set(semaphore.tryAcquire(20, TimeUnit.MILLISECONDS)));
+    awaitQueued(semaphore);
+    var successor = start(() -> {
+      semaphore.acquire();
+      semaphore.release();
+    });
+    timedOut.join();
+    assertEquals(false, result.get());
+    semaphore.release();
+    successor.join();
+    assertReleased(semaphore, 1);
+  }
+
+  @Test
+  void handOffRacingAbandonedLeaderDoesNotStrandWaiters() throws Exception {
+    var semaphore = newSemaphore(0);
+    int acquired = 0;
+    for (int i = 0; i < 2_000; i++) {
+      long timeoutNanos = ThreadLocalRandom.current().nextLong(100_000);
+      var result = new AtomicReference<Boolean>();
+      var leader = start(() -> {
+        boolean permit = semaphore.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+        if (permit) {
+          semaphore.release();
+        }
+        result.set(permit);
+      });
+      var successor = start(() -> {
+        semaphore.acquireUninterruptibly();
+        semaphore.release();
+      });
+      spin(ThreadLocalRandom.current().nextLong(100_000));
+      semaphore.release();
+      joinAll(leader, successor);
+      if (result.get()) {
+        acquired++;
+      }
+      assertReleased(semaphore, 1);
+      assertTrue(semaphore.tryAcquire());
+    }
+    // both outcomes are expected to occur, otherwise the race is not exercised
+    assertTrue(acquired > 0, "no leader acquired a permit");
+    assertTrue(acquired < 2_000, "no leader timed out");
+  }
+
+  @Test
+  void permitsConservedUnderTimeoutsAndInterrupts() throws Exception {
+    int permits = 4;
+    var semaphore = new NumaSemaphore(permits, 1);
+    var holders = new AtomicInteger();
+    var workers = new Thread[16];
+    for (int t = 0; t < workers.length; t++) {
+      int id = t;
+      workers[t] = start(() -> {
+        for (int i = 0; i < 2_000; i++) {
+          try {
+            switch (id % 3) {
+              case 0 -> semaphore.acquire();
+              case 1 -> semaphore.acquireUninterruptibly();
+              default -> {
+                if (!semaphore.tryAcquire(ThreadLocalRandom.current().nextLong(20_000), TimeUnit.NANOSECONDS)) {
+                  continue;
+                }
+              }
+            }
+          } catch (InterruptedException e) {
+            continue;
+          }
+          assertTrue(holders.incrementAndGet() <= permits);
+          if (i % 16 == 0) {
+            Thread.yield();
+          }
+          holders.decrementAndGet();
+          semaphore.release();
+        }
+        Thread.interrupted();
+      });
+    }
+    var stop = new AtomicBoolean();
+    var interrupter = start(() -> {
+      while (!stop.get()) {
+        workers[ThreadLocalRandom.current().nextInt(workers.length)].interrupt();
+        Thread.yield();
+      }
+    });
+    joinAll(workers);
+    stop.set(true);
+    interrupter.join();
+    assertReleased(semaphore, permits);
+  }
+
+  /**
+   * All threads use the queue of NUMA node 0, so the queue order does not depend on the host
+   */
+  private static NumaSemaphore newSemaphore(int permits) {
+    return new NumaSemaphore(permits) {
+      @Override
+      int getNumaId() {
+        return 0;
+      }
+    };
+  }
+
+  private static void awaitQueued(NumaSemaphore semaphore) {
+    while (!semaphore.hasQueuedThreads()) {
+      Thread.onSpinWait();
+    }
+  }
+
+  private static void assertReleased(NumaSemaphore semaphore, int permits) {
+    assertFalse(semaphore.hasQueuedThreads(), "no waiters are queued");
+    assertEquals(permits, semaphore.availablePermits());
+  }
+}
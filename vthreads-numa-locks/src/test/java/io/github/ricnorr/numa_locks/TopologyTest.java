@@ -0,0 +1,48 @@
+package io.github.ricnorr.numa_locks;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Emulated topology built from the {@link Topology#EMULATED_TOPOLOGY_PROPERTY} spec.
+ */
+class TopologyTest {
+
+  /**
+   * 8 CPUs, a core and a NUMA node each
+   */
+  private static final Topology REAL = new Topology(
+      new long[] {0, 1, 2, 3, 4, 5, 6, 7},
+      new long[] {0, 1, 2, 3, 4, 5, 6, 7},
+      new long[] {0, 0, 0, 0, 0, 0, 0, 0},
+      new long[] {0, 0, 0, 0, 0, 0, 0, 0});
+
+  @Test
+  void emulatedTree() {
+    var topology = Topology.emulate(REAL, "packages=2,nodes=4,clusters=8");
+    assertEquals(2, topology.getPackagesCnt());
+    assertEquals(4, topology.getNumaNodesCnt());
+    assertEquals(8, topology.getClustersCnt());
+    assertEquals(1, topology.getNumaNodeId(3));
+    assertEquals(1, topology.getPackageId(4));
+  }
+
+  @Test
+  void missingLevelsDefaultToParent() {
+    var topology = Topology.emulate(REAL, "packages=2");
+    assertEquals(2, topology.getNumaNodesCnt());
+    assertEquals(2, topology.getClustersCnt());
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+      "nodes=0", "clusters=0", "packages=0", "nodes=-1", "nodes=-2", "nodes=-4,clusters=-8",
+      "packages=2,nodes=3", "nodes=2,clusters=3", "nodes", "sockets=2"})
+  void invalidSpecIsRejected(String spec) {
+    assertThrows(IllegalArgumentException.class, () -> Topology.emulate(REAL, spec));
+  }
+}
@@ -0,0 +1,97 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Results of timed and uninterruptible waiting on {@link VNACondition}.
+ */
+@Timeout(60)
+class VNAConditionTest {
+
+  @Test
+  void signalledWaiterReportsSignalAfterSlowReacquisition() throws Exception {
+    var lock = new VNALock();
+    var condition = lock.newCondition();
+    var waiting = new AtomicBoolean();
+    var result = new AtomicReference<Boolean>();
+    var waiter = Thread.ofVirtual().start(() -> {
+      lock.lock();
+      try {
+        waiting.set(true);
+        result.set(condition.await(50, TimeUnit.MILLISECONDS));
+      } catch (InterruptedException e) {
+        throw new AssertionError(e);
+      } finally {
+        lock.unlock();
+      }
+    });
+    awaitTrue(waiting);
+    lock.lock();
+    try {
+      condition.signal();
+      // the waiter gets the lock back after its waiting time
+      Thread.sleep(100);
+    } finally {
+      lock.unlock();
+    }
+    waiter.join();
+    assertEquals(true, result.get());
+  }
+
+  @Test
+  void timedOutWaiterReportsTimeout() throws Exception {
+    var lock = new VNALock();
+    var condition = lock.newCondition();
+    lock.lock();
+    try {
+      assertFalse(condition.await(10, TimeUnit.MILLISECONDS));
+      assertTrue(condition.awaitNanos(TimeUnit.MILLISECONDS.toNanos(10)) <= 0L);
+      assertTrue(lock.isHeldByCurrentThread());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Test
+  void uninterruptibleWaiterKeepsInterrupt() throws Exception {
+    var lock = new VNALock();
+    var condition = lock.newCondition();
+    var waiting = new AtomicBoolean();
+    var interrupted = new AtomicReference<Boolean>();
+    var waiter = Thread.ofVirtual().start(() -> {
+      lock.lock();
+      try {
+        waiting.set(true);
+        condition.awaitUninterruptibly();
+        interrupted.set(Thread.currentThread().isInterrupted());
+      } finally {
+        lock.unlock();
+      }
+    });
+    awaitTrue(waiting);
+    lock.lock();
+    try {
+      waiter.interrupt();
+      condition.signal();
+    } finally {
+      lock.unlock();
+    }
+    waiter.join();
+    assertEquals(true, interrupted.get());
+  }
+
+  private static void awaitTrue(AtomicBoolean flag) {
+    while (!flag.get()) {
+      Thread.onSpinWait();
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Waiting of {@link VNAReadWriteLock}: blocked readers and writers park and are woken up on release.
+ */
+@Timeout(60)
+class VNAReadWriteLockTest extends ConcurrentTestSupport {
+
+  @Test
+  void readersParkBehindWriter() throws Exception {
+    var lock = new VNAReadWriteLock();
+    var reads = new AtomicInteger();
+    lock.writeLock().lock();
+    List<Thread> readers = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      readers.add(start(() -> {
+        lock.readLock().lock();
+        reads.incrementAndGet();
+        lock.readLock().unlock();
+      }));
+    }
+    for (Thread reader : readers) {
+      awaitParked(reader);
+    }
+    assertEquals(0, reads.get());
+    lock.writeLock().unlock();
+    joinAll(readers);
+    assertEquals(8, reads.get());
+  }
+
+  @Test
+  void writerParksUntilLastReaderLeaves() throws Exception {
+    var lock = new VNAReadWriteLock();
+    var written = new AtomicInteger();
+    var held = new CountDownLatch(1);
+    var leave = new CountDownLatch(1);
+    lock.readLock().lock();
+    var reader = start(() -> {
+      lock.readLock().lock();
+      held.countDown();
+      leave.await();
+      lock.readLock().unlock();
+    });
+    held.await();
+    var writer = start(() -> {
+      lock.writeLock().lock();
+      written.incrementAndGet();
+      lock.writeLock().unlock();
+    });
+    awaitParked(writer);
+    lock.readLock().unlock();
+    Thread.sleep(10);
+    assertEquals(0, written.get());
+    leave.countDown();
+    reader.join();
+    writer.join();
+    assertEquals(1, written.get());
+  }
+
+  @Test
+  void timedOutWriterLetsReadersIn() throws Exception {
+    var lock = new VNAReadWriteLock();
+    lock.readLock().lock();
+    var timedOut = start(() -> assertFalse(lock.writeLock().tryLock(20, TimeUnit.MILLISECONDS)));
+    timedOut.join();
+    var reader = start(() -> {
+      assertTrue(lock.readLock().tryLock(1, TimeUnit.SECONDS));
+      lock.readLock().unlock();
+    });
+    reader.join();
+    lock.readLock().unlock();
+    assertTrue(lock.writeLock().tryLock());
+    lock.writeLock().unlock();
+  }
+
+  @Test
+  void readersAndWritersExcludeEachOther() throws Exception {
+    var lock = new VNAReadWriteLock();
+    var readers = new AtomicInteger();
+    var writers = new AtomicInteger();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 16; t++) {
+      boolean writer = t % 4 == 0;
+      threads.add(start(() -> {
+        for (int i = 0; i < 2_000; i++) {
+          var l = writer ? lock.writeLock() : lock.readLock();
+          l.lock();
+          if (writer) {
+            assertEquals(1, writers.incrementAndGet());
+            assertEquals(0, readers.get());
+          } else {
+            readers.incrementAndGet();
+            assertEquals(0, writers.get());
+          }
+          if (i % 16 == 0) {
+            Thread.yield();
+          }
+          if (writer) {
+            writers.decrementAndGet();
+          } else {
+            readers.decrementAndGet();
+          }
+          l.unlock();
+        }
+      }));
+    }
+    joinAll(threads);
+    assertTrue(lock.writeLock().tryLock());
+    lock.writeLock().unlock();
+  }
+
+  @Test
+  void unlockWithoutReadHoldIsRejected() throws Exception {
+    var lock = new VNAReadWriteLock();
+    assertThrows(IllegalMonitorStateException.class, () -> lock.readLock().unlock());
+    lock.readLock().lock();
+    var other = start(() -> assertThrows(IllegalMonitorStateException.class, () -> lock.readLock().unlock()));
+    other.join();
+    // the reader is still counted, so the writer is kept out
+    var writer = start(() -> assertFalse(lock.writeLock().tryLock()));
+    writer.join();
+    lock.readLock().unlock();
+    assertThrows(IllegalMonitorStateException.class, () -> lock.readLock().unlock());
+    assertTrue(lock.writeLock().tryLock());
+    lock.writeLock().unlock();
+  }
+}
@@ -0,0 +1,262 @@
+package io.github.ricnorr.numa_locks;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Abortable acquisition of {@link VNA}: waiters leaving the local queue by timeout or interrupt
+ * must not block their successors or leave the lock held.
+ */
+@Timeout(60)
+class VNATest extends ConcurrentTestSupport {
+
+  @Test
+  void timeoutWhileQueuedSkipsAbandonedWaiter() throws Exception {
+    var lock = newLock();
+    var order = new ConcurrentLinkedQueue<String>();
+    var held = lock.lock();
+    var leader = start(() -> lockAndRecord(lock, order, "leader"));
+    var tail = awaitEnqueued(lock, null);
+    var result = new AtomicReference<Object>("not finished");
+    var timedOut = start(() -> result.set(lock.tryLock(20, TimeUnit.MILLISECONDS)));
+    tail = awaitEnqueued(lock, tail);
+    var first = start(() -> lockAndRecord(lock, order, "first"));
+    tail = awaitEnqueued(lock, tail);
+    var second = start(() -> lockAndRecord(lock, order, "second"));
+    awaitEnqueued(lock, tail);
+
+    timedOut.join();
+    assertNull(result.get());
+    lock.unlock(held);
+    joinAll(leader, first, second);
+
+    assertEquals(List.of("leader", "first", "second"), List.copyOf(order));
+    assertReleased(lock);
+  }
+
+  @Test
+  void timeoutOfLeaderPassesLeadership() throws Exception {
+    var lock = newLock();
+    var order = new ConcurrentLinkedQueue<String>();
+    var held = lock.lock();
+    var result = new AtomicReference<Object>("not finished");
+    var timedOut = start(() -> result.set(lock.tryLock(20, TimeUnit.MILLISECONDS)));
+    var tail = awaitEnqueued(lock, null);
+    var first = start(() -> lockAndRecord(lock, order, "first"));
+    tail = awaitEnqueued(lock, tail);
+    var second = start(() -> lockAndRecord(lock, order, "second"));
+    awaitEnqueued(lock, tail);
+
+    timedOut.join();
+    assertNull(result.get());
+    lock.unlock(held);
+    joinAll(first, second);
+
+    assertEquals(List.of("first", "second"), List.copyOf(order));
+    assertReleased(lock);
+  }
+
+  @Test
+  void interruptOfQueuedWaiter() throws Exception {
+    var lock = newLock();
+    var order = new ConcurrentLinkedQueue<String>();
+    var held = lock.lock();
+    var leader = start(() -> lockAndRecord(lock, order, "leader"));
+    var tail = awaitEnqueued(lock, null);
+    var interrupted = new AtomicReference<Boolean>();
+    var waiter = start(() -> {
+      try {
+        var unlockInfo = lock.lockInterruptibly();
+        lock.unlock(unlockInfo);
+        interrupted.set(false);
+      } catch (InterruptedException e) {
+        interrupted.set(!Thread.currentThread().isInterrupted());
+      }
+    });
+    tail = awaitEnqueued(lock, tail);
+    var successor = start(() -> lockAndRecord(lock, order, "successor"));
+    awaitEnqueued(lock, tail);
+
+    waiter.interrupt();
+    waiter.join();
+    assertEquals(true, interrupted.get(), "InterruptedException with the interrupt status cleared");
+    lock.unlock(held);
+    joinAll(leader, successor);
+
+    assertEquals(List.of("leader", "successor"), List.copyOf(order));
+    assertReleased(lock);
+  }
+
+  @Test
+  void interruptOfLeader() throws Exception {
+    var lock = newLock();
+    var order = new ConcurrentLinkedQueue<String>();
+    var held = lock.lock();
+    var interrupted = new AtomicReference<Boolean>();
+    var waiter = start(() -> {
+      try {
+        var unlockInfo = lock.lockInterruptibly();
+        lock.unlock(unlockInfo);
+        interrupted.set(false);
+      } catch (InterruptedException e) {
+        interrupted.set(true);
+      }
+    });
+    var tail = awaitEnqueued(lock, null);
+    var successor = start(() -> lockAndRecord(lock, order, "successor"));
+    awaitEnqueued(lock, tail);
+
+    waiter.interrupt();
+    waiter.join();
+    assertEquals(true, interrupted.get());
+    lock.unlock(held);
+    successor.join();
+
+    assertEquals(List.of("successor"), List.copyOf(order));
+    assertReleased(lock);
+  }
+
+  @Test
+  void tailWaiterTimesOutConcurrentlyWithUnlock() throws Exception {
+    var lock = newLock();
+    var inside = new AtomicInteger();
+    int acquired = 0;
+    for (int i = 0; i < 2_000; i++) {
+      var held = lock.lock();
+      long timeoutNanos = ThreadLocalRandom.current().nextLong(100_000);
+      var result = new AtomicReference<Object>();
+      var waiter = start(() -> {
+        var unlockInfo = lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS);
+        if (unlockInfo != null) {
+          assertEquals(1, inside.incrementAndGet());
+          inside.decrementAndGet();
+          lock.unlock(unlockInfo);
+        }
+        result.set(unlockInfo);
+      });
+      spin(ThreadLocalRandom.current().nextLong(100_000));
+      lock.unlock(held);
+      waiter.join();
+      if (result.get() != null) {
+        acquired++;
+      }
+      assertReleased(lock);
+    }
+    // both outcomes are expected to occur, otherwise the race is not exercised
+    assertTrue(acquired > 0, "no waiter acquired the lock");
+    assertTrue(acquired < 2_000, "no waiter timed out");
+  }
+
+  @Test
+  void tailWaiterInterruptedConcurrentlyWithUnlock() throws Exception {
+    var lock = newLock();
+    for (int i = 0; i < 2_000; i++) {
+      var held = lock.lock();
+      var waiter = start(() -> {
+        try {
+          var unlockInfo = lock.lockInterruptibly();
+          lock.unlock(unlockInfo);
+        } catch (InterruptedException e) {
+          // expected if the interrupt came first
+        }
+      });
+      spin(ThreadLocalRandom.current().nextLong(50_000));
+      if (i % 2 == 0) {
+        waiter.interrupt();
+        lock.unlock(held);
+      } else {
+        lock.unlock(held);
+        waiter.interrupt();
+      }
+      waiter.join();
+      assertReleased(lock);
+    }
+  }
+
+  @Test
+  void abortedWaitersDoNotBreakMutualExclusion() throws Exception {
+    var lock = newLock();
+    var inside = new AtomicInteger();
+    var counter = new AtomicInteger();
+    var threads = new Thread[16];
+    for (int t = 0; t < threads.length; t++) {
+      int id = t;
+      threads[t] = start(() -> {
+        for (int i = 0; i < 2_000; i++) {
+          VNA.UnlockInfo unlockInfo;
+          if (id % 2 == 0) {
+            unlockInfo = lock.lock();
+          } else {
+            unlockInfo = lock.tryLock(ThreadLocalRandom.current().nextLong(20_000), TimeUnit.NANOSECONDS);
+            if (unlockInfo == null) {
+              continue;
+            }
+          }
+          assertEquals(1, inside.incrementAndGet());
+          counter.incrementAndGet();
+          if (i % 16 == 0) {
+            Thread.yield();
+          }
+          inside.decrementAndGet();
+          lock.unlock(unlockInfo);
+        }
+      });
+    }
+    joinAll(threads);
+    assertTrue(counter.get() >= threads.length / 2 * 2_000);
+    assertReleased(lock);
+  }
+
+  /**
+   * All threads use the local queue of NUMA node 0, so the queue order does not depend on the host
+   */
+  private static VNA newLock() {
+    return new VNA() {
+      @Override
+      int getNumaId() {
+        return 0;
+      }
+    };
+  }
+
+  private static void lockAndRecord(VNA lock, Queue<String> order, String name) {
+    var unlockInfo = lock.lock();
+    order.add(name);
+    lock.unlock(unlockInfo);
+  }
+
+  /**
+   * @return the new tail of the local queue, after a thread is added to it
+   */
+  private static Object awaitEnqueued(VNA lock, Object tail) {
+    while (true) {
+      Object current = lock.localQueues.get(0).get();
+      if (current != null && current != tail) {
+        return current;
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  private static void assertReleased(VNA lock) {
+    assertNull(lock.localQueues.get(0).get(), "local queue is empty");
+    assertFalse(lock.globalLock, "global flag is released");
+    var unlockInfo = lock.tryLock();
+    assertNotNull(unlockInfo);
+    lock.unlock(unlockInfo);
+  }
+}